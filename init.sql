@@ -15,7 +15,7 @@ CREATE TABLE IF NOT EXISTS orders (
     order_id VARCHAR(255) UNIQUE NOT NULL,
     symbol VARCHAR(255) NOT NULL,
     side VARCHAR(255) NOT NULL CHECK (side IN ('BUY', 'SELL')),
-    type VARCHAR(255) NOT NULL CHECK (type IN ('MARKET', 'LIMIT')),
+    type VARCHAR(255) NOT NULL CHECK (type IN ('MARKET', 'LIMIT', 'STOP', 'STOP_LIMIT')),
     quantity DECIMAL(19,4) NOT NULL CHECK (quantity > 0),
     price DECIMAL(19,4) CHECK (price > 0),
     status VARCHAR(255) NOT NULL DEFAULT 'PENDING' CHECK (status IN ('PENDING', 'PARTIALLY_FILLED', 'FILLED', 'CANCELLED', 'REJECTED', 'EXPIRED')),
@@ -25,9 +25,23 @@ CREATE TABLE IF NOT EXISTS orders (
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP,
     filled_at TIMESTAMP,
-    reason VARCHAR(255)
+    reason VARCHAR(255),
+    time_in_force VARCHAR(255) NOT NULL DEFAULT 'GTC' CHECK (time_in_force IN ('GTC', 'DAY', 'GTD', 'IOC', 'FOK')),
+    display_quantity DECIMAL(19,4) CHECK (display_quantity > 0),
+    stop_price DECIMAL(19,4) CHECK (stop_price > 0),
+    expires_at TIMESTAMP
 );
 
+-- Bring an orders table created by an earlier version of this script up to date
+-- (the script only runs on an empty volume; apply it by hand to an existing database)
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS time_in_force VARCHAR(255) NOT NULL DEFAULT 'GTC'
+    CHECK (time_in_force IN ('GTC', 'DAY', 'GTD', 'IOC', 'FOK'));
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS display_quantity DECIMAL(19,4) CHECK (display_quantity > 0);
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS stop_price DECIMAL(19,4) CHECK (stop_price > 0);
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS expires_at TIMESTAMP;
+ALTER TABLE orders DROP CONSTRAINT IF EXISTS orders_type_check;
+ALTER TABLE orders ADD CONSTRAINT orders_type_check CHECK (type IN ('MARKET', 'LIMIT', 'STOP', 'STOP_LIMIT'));
+
 -- Create the trades table (matching Java entity exactly)
 CREATE TABLE IF NOT EXISTS trades (
     id BIGINT PRIMARY KEY DEFAULT nextval('trade_id_seq'),
@@ -0,0 +1,68 @@
+package com.trading.controller;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.trading.entity.User;
+import com.trading.service.AuthService;
+import com.trading.service.ClientStreamService;
+
+/**
+ * Server-sent event streams driven by matching engine events.
+ * Each symbol starts with a "refresh" event holding its full depth and the sequence it
+ * is consistent with; "book" events then carry level changes (absolute sizes, latest
+ * per level, with sequences after the refresh), "trades" carries executions and
+ * "orders" the authenticated user's order updates. A "lag" event reports trades
+ * dropped because the client fell behind.
+ */
+@RestController
+@RequestMapping("/api/marketdata")
+@CrossOrigin(origins = "*")
+public class MarketDataController {
+    
+    @Autowired
+    private ClientStreamService clientStreamService;
+    
+    @Autowired
+    private AuthService authService;
+    
+    @GetMapping(value = "/l2/{symbol}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamL2(@PathVariable String symbol) {
+        return clientStreamService.open(Set.of(symbol), null);
+    }
+    
+    /**
+     * Book, trade and order stream for a set of symbols. EventSource cannot send
+     * headers, so the session token is accepted as a query parameter; without it the
+     * stream carries public data only.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam String symbols,
+                             @RequestParam(required = false) String token) {
+        Set<String> symbolSet = Arrays.stream(symbols.split(","))
+            .map(String::trim)
+            .filter(symbol -> !symbol.isEmpty())
+            .map(String::toUpperCase)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+        
+        String username = null;
+        if (token != null && !token.trim().isEmpty()) {
+            Optional<User> user = authService.validateToken(token.replace("Bearer ", ""));
+            username = user.map(User::getUsername).orElse(null);
+        }
+        return clientStreamService.open(symbolSet, username);
+    }
+}
@@ -24,6 +24,9 @@ import org.springframework.web.bind.annotation.RestController;
 import com.trading.domain.OrderStatus;
 import com.trading.dto.OrderRequest;
 import com.trading.dto.OrderResponse;
+import com.trading.engine.DepthSnapshot;
+import com.trading.engine.IndicativeUncross;
+import com.trading.engine.TopOfBook;
 import com.trading.service.MatchingEngine;
 import com.trading.service.OrderService;
 import com.trading.service.AuthService;
@@ -154,7 +157,8 @@ public class OrderController {
     public ResponseEntity<OrderResponse> cancelOrder(@PathVariable String orderId) {
         try {
             OrderResponse response = orderService.cancelOrder(orderId);
-            return ResponseEntity.ok(response);
+            // Accepted: the engine applies the cancel and reports it on the order's update stream
+            return ResponseEntity.accepted().body(response);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.notFound().build();
         } catch (IllegalStateException e) {
@@ -181,7 +185,7 @@ public class OrderController {
             }
             
             OrderResponse response = orderService.updateOrder(orderId, newPrice, newQuantity);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.accepted().body(response);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         } catch (Exception e) {
@@ -208,36 +212,65 @@ public class OrderController {
     }
     
     
+    @GetMapping("/orderbook/{symbol}/top")
+    public ResponseEntity<Map<String, Object>> getTopOfBook(@PathVariable String symbol) {
+        // Served from the engine's published snapshot; never waits on the matching thread
+        TopOfBook topOfBook = matchingEngine.getTopOfBook(symbol);
+        
+        Map<String, Object> data = new HashMap<>();
+        data.put("symbol", symbol);
+        data.put("bestBid", topOfBook != null ? topOfBook.getBidPrice() : null);
+        data.put("bidSize", topOfBook != null ? topOfBook.getBidSize() : BigDecimal.ZERO);
+        data.put("bestAsk", topOfBook != null ? topOfBook.getAskPrice() : null);
+        data.put("askSize", topOfBook != null ? topOfBook.getAskSize() : BigDecimal.ZERO);
+        data.put("spread", topOfBook != null ? topOfBook.getSpread() : null);
+        data.put("sequence", topOfBook != null ? topOfBook.getSequence() : 0L);
+        data.put("timestamp", topOfBook != null ? topOfBook.getTimestamp() : null);
+        return ResponseEntity.ok(data);
+    }
+    
+    @GetMapping("/orderbook/{symbol}/auction")
+    public ResponseEntity<Map<String, Object>> getIndicativeUncross(@PathVariable String symbol) {
+        // Published by the matching thread while the symbol is in its call auction phase
+        IndicativeUncross uncross = matchingEngine.getIndicativeUncross(symbol);
+        
+        Map<String, Object> data = new HashMap<>();
+        data.put("symbol", symbol);
+        data.put("inAuction", uncross != null);
+        data.put("indicativePrice", uncross != null ? uncross.getPrice() : null);
+        data.put("indicativeVolume", uncross != null ? uncross.getVolume() : BigDecimal.ZERO);
+        data.put("imbalance", uncross != null ? uncross.getImbalance() : BigDecimal.ZERO);
+        data.put("imbalanceSide", uncross != null ? uncross.getImbalanceSide() : null);
+        data.put("sequence", uncross != null ? uncross.getSequence() : 0L);
+        data.put("timestamp", uncross != null ? uncross.getTimestamp() : null);
+        return ResponseEntity.ok(data);
+    }
+    
     @GetMapping("/orderbook/{symbol}")
-    public ResponseEntity<Map<String, Object>> getOrderBook(@PathVariable String symbol) {
+    public ResponseEntity<Map<String, Object>> getOrderBook(@PathVariable String symbol,
+                                                            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         try {
-            var orderBook = matchingEngine.getOrderBook(symbol);
+            // Served from the engine's conflated depth view; pollers of an unchanged book get a 304
+            DepthSnapshot snapshot = matchingEngine.getDepthSnapshot(symbol);
             
-            if (orderBook == null) {
+            if (snapshot == null) {
                 // Return empty order book structure instead of 404
-                Map<String, Object> emptyOrderBook = new HashMap<>();
-                emptyOrderBook.put("symbol", symbol);
-                emptyOrderBook.put("bestBid", null);
-                emptyOrderBook.put("bestAsk", null);
-                emptyOrderBook.put("spread", null);
-                emptyOrderBook.put("bidLevels", new HashMap<>());
-                emptyOrderBook.put("askLevels", new HashMap<>());
-                emptyOrderBook.put("totalBidOrders", 0);
-                emptyOrderBook.put("totalAskOrders", 0);
-                return ResponseEntity.ok(emptyOrderBook);
+                Map<String, Object> data = new HashMap<>();
+                data.put("symbol", symbol);
+                data.put("bestBid", null);
+                data.put("bestAsk", null);
+                data.put("spread", null);
+                data.put("bidLevels", new HashMap<>());
+                data.put("askLevels", new HashMap<>());
+                data.put("totalBidOrders", 0);
+                data.put("totalAskOrders", 0);
+                return ResponseEntity.ok(data);
             }
             
-            Map<String, Object> orderBookData = new HashMap<>();
-            orderBookData.put("symbol", orderBook.getSymbol());
-            orderBookData.put("bestBid", orderBook.getBestBid());
-            orderBookData.put("bestAsk", orderBook.getBestAsk());
-            orderBookData.put("spread", orderBook.getSpread());
-            orderBookData.put("bidLevels", orderBook.getBidLevels(10));
-            orderBookData.put("askLevels", orderBook.getAskLevels(10));
-            orderBookData.put("totalBidOrders", orderBook.getTotalBidOrders());
-            orderBookData.put("totalAskOrders", orderBook.getTotalAskOrders());
-            
-            return ResponseEntity.ok(orderBookData);
+            if (snapshot.matches(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.getEtag()).build();
+            }
+            return ResponseEntity.ok().eTag(snapshot.getEtag()).body(snapshot.getData());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
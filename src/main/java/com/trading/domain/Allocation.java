@@ -0,0 +1,13 @@
+package com.trading.domain;
+
+/**
+ * How an incoming order's quantity is shared among the resting orders of a price level.
+ */
+public enum Allocation {
+    // Price-time priority: the oldest order at the level fills first
+    FIFO,
+    // Each order takes a share in proportion to its displayed size
+    PRO_RATA,
+    // The oldest order fills first up to its displayed size, the rest is shared pro rata
+    FIFO_TOP_PRO_RATA
+}
@@ -0,0 +1,197 @@
+package com.trading.domain;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+
+/**
+ * Ladder over an array indexed by tick offset, for liquid symbols that trade in a
+ * narrow band. Levels are addressed by rank, the distance from the best possible
+ * price (the price for asks, its negation for bids). The window covers
+ * {@code capacity} consecutive ranks and an occupancy bitset finds the best and next
+ * non-empty level with a few word scans instead of a tree walk.
+ * Levels too far behind the window live in an overflow map; they are always worse
+ * than every level in the window, so priority order is the window, then the overflow.
+ * The window re-centres when a price arrives ahead of it, when the book has drifted
+ * towards its back, or when it empties: the best level is placed a quarter of the
+ * window from the front, leaving room for prices to improve.
+ */
+final class ArrayLadder implements PriceLadder {
+    
+    private final boolean descending;
+    private final LongFunction<PriceLevel> newLevel;
+    private final int capacity;
+    private final int lead;
+    private final PriceLevel[] levels;
+    private final PriceLevel[] moving;
+    private final long[] occupied;
+    private final TreeMap<Long, PriceLevel> overflow = new TreeMap<>();
+    private long base;
+    private int count;
+    
+    ArrayLadder(boolean descending, int capacity, LongFunction<PriceLevel> newLevel) {
+        if (capacity <= 0 || capacity % Long.SIZE != 0) {
+            throw new IllegalArgumentException("Ladder capacity must be a positive multiple of 64 ticks: " + capacity);
+        }
+        this.descending = descending;
+        this.newLevel = newLevel;
+        this.capacity = capacity;
+        this.lead = capacity / 4;
+        this.levels = new PriceLevel[capacity];
+        this.moving = new PriceLevel[capacity];
+        this.occupied = new long[capacity / Long.SIZE];
+    }
+    
+    @Override
+    public PriceLevel get(long price) {
+        long rank = rank(price);
+        if (inWindow(rank)) {
+            return levels[(int) (rank - base)];
+        }
+        return overflow.isEmpty() ? null : overflow.get(rank);
+    }
+    
+    @Override
+    public PriceLevel getOrCreate(long price) {
+        long rank = rank(price);
+        if (!inWindow(rank)) {
+            if (count == 0) {
+                rebase((overflow.isEmpty() ? rank : Math.min(rank, overflow.firstKey())) - lead);
+            } else if (rank < base) {
+                rebase(rank - lead);
+            } else if (rank - bestRank() < capacity - lead) {
+                rebase(bestRank() - lead);
+            }
+        }
+        
+        if (inWindow(rank)) {
+            int index = (int) (rank - base);
+            if (levels[index] == null) {
+                levels[index] = newLevel.apply(price);
+                occupied[index >>> 6] |= 1L << index;
+                count++;
+            }
+            return levels[index];
+        }
+        PriceLevel level = overflow.get(rank);
+        if (level == null) {
+            level = newLevel.apply(price);
+            overflow.put(rank, level);
+        }
+        return level;
+    }
+    
+    @Override
+    public void remove(long price) {
+        long rank = rank(price);
+        if (inWindow(rank)) {
+            int index = (int) (rank - base);
+            if (levels[index] != null) {
+                levels[index] = null;
+                occupied[index >>> 6] &= ~(1L << index);
+                count--;
+            }
+        } else {
+            overflow.remove(rank);
+        }
+        if (count == 0 && !overflow.isEmpty()) {
+            rebase(overflow.firstKey() - lead);
+        }
+    }
+    
+    @Override
+    public PriceLevel best() {
+        if (count > 0) {
+            return levels[nextOccupied(0)];
+        }
+        return overflow.isEmpty() ? null : overflow.firstEntry().getValue();
+    }
+    
+    @Override
+    public PriceLevel after(long price) {
+        long rank = rank(price);
+        if (count > 0 && rank + 1 < base + capacity) {
+            int index = nextOccupied((int) Math.max(rank + 1 - base, 0L));
+            if (index >= 0) {
+                return levels[index];
+            }
+        }
+        if (overflow.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, PriceLevel> entry = overflow.higherEntry(rank);
+        return entry != null ? entry.getValue() : null;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return count == 0 && overflow.isEmpty();
+    }
+    
+    private long rank(long price) {
+        return descending ? -price : price;
+    }
+    
+    private boolean inWindow(long rank) {
+        return rank >= base && rank - base < capacity;
+    }
+    
+    private long bestRank() {
+        return base + nextOccupied(0);
+    }
+    
+    private int nextOccupied(int from) {
+        int word = from >>> 6;
+        if (word >= occupied.length) {
+            return -1;
+        }
+        long bits = occupied[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == occupied.length) {
+                return -1;
+            }
+            bits = occupied[word];
+        }
+    }
+    
+    /**
+     * Moves the window to start at {@code newBase}, which must not be behind the best
+     * level. Window levels pushed out of the back go to the overflow and overflow
+     * levels now inside come in, so the overflow stays behind the window.
+     */
+    private void rebase(long newBase) {
+        System.arraycopy(levels, 0, moving, 0, capacity);
+        Arrays.fill(levels, null);
+        Arrays.fill(occupied, 0L);
+        count = 0;
+        base = newBase;
+        for (int i = 0; i < capacity; i++) {
+            if (moving[i] != null) {
+                place(moving[i]);
+                moving[i] = null;
+            }
+        }
+        while (!overflow.isEmpty() && overflow.firstKey() - base < capacity) {
+            place(overflow.pollFirstEntry().getValue());
+        }
+    }
+    
+    private void place(PriceLevel level) {
+        long rank = rank(level.getPrice());
+        if (rank < base) {
+            throw new IllegalStateException("Ladder window moved past level " + level.getPrice());
+        }
+        if (rank - base < capacity) {
+            int index = (int) (rank - base);
+            levels[index] = level;
+            occupied[index >>> 6] |= 1L << index;
+            count++;
+        } else {
+            overflow.put(rank, level);
+        }
+    }
+}
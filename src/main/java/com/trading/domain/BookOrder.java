@@ -0,0 +1,280 @@
+package com.trading.domain;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Engine-side entry for a resting or incoming order: primitives only.
+ * Price is held in ticks and quantities in scaled units (see {@link TickScale}), and
+ * the symbol, account and owning user are engine-wide int ids. The JPA {@link Order}
+ * is not referenced; fills reach the persistent row by order id at the persistence edge.
+ * While resting, the order is also the node of its {@link PriceLevel} queue. An
+ * off-heap book copies resting orders into its {@link OffHeapOrderStore} instead and
+ * hands out a reusable view of the record.
+ * An iceberg order shows at most its display quantity; the rest of its open quantity
+ * is a hidden reserve that refills the displayed slice as it is traded away.
+ * A stop or stop-limit order waits in its book's {@link StopBook} until triggered,
+ * when it becomes the market or limit order it was holding.
+ * Instances are recycled through a {@link BookOrderPool} once they leave the book.
+ */
+public class BookOrder {
+    
+    private String orderId;
+    private OrderSide side;
+    private OrderType type;
+    private long price;
+    private long quantity;
+    private long filledQuantity;
+    private long createdAt;
+    private long expiresAt;
+    private long displayQuantity;
+    private long hiddenQuantity;
+    private long stopPrice;
+    private TimeInForce timeInForce;
+    private SelfTradePrevention selfTradePrevention;
+    private boolean selfTradeCancelled;
+    private int symbolId;
+    private int accountId;
+    private int ownerId;
+    
+    // Intrusive price level links, maintained by PriceLevel
+    PriceLevel level;
+    BookOrder prev;
+    BookOrder next;
+    
+    // Collision chain of the book's OrderIndex
+    BookOrder hashNext;
+    
+    // Off-heap record this entry is currently a view of
+    int slot = OffHeapOrderStore.NONE;
+    
+    public BookOrder(String orderId, OrderSide side, OrderType type, long price, long quantity, long filledQuantity) {
+        init(orderId, side, type, price, quantity, filledQuantity);
+    }
+    
+    private BookOrder() {
+    }
+    
+    void init(String orderId, OrderSide side, OrderType type, long price, long quantity, long filledQuantity) {
+        this.orderId = orderId;
+        this.side = side;
+        this.type = type;
+        this.price = price;
+        this.quantity = quantity;
+        this.filledQuantity = filledQuantity;
+        this.createdAt = 0L;
+        this.expiresAt = 0L;
+        this.displayQuantity = 0L;
+        this.hiddenQuantity = 0L;
+        this.stopPrice = 0L;
+        this.timeInForce = TimeInForce.GTC;
+        this.selfTradePrevention = SelfTradePrevention.NONE;
+        this.selfTradeCancelled = false;
+        this.symbolId = 0;
+        this.accountId = 0;
+        this.ownerId = 0;
+    }
+    
+    void clear() {
+        this.orderId = null;
+    }
+    
+    /**
+     * Converts the entity's price and quantities; ids are left at 0 for the caller to set.
+     */
+    public static BookOrder from(Order order, TickScale tickScale) {
+        BookOrder bookOrder = new BookOrder();
+        bookOrder.init(order, tickScale);
+        return bookOrder;
+    }
+    
+    // The conversion behind from(), also applied to entries reused by BookOrderPool
+    void init(Order order, TickScale tickScale) {
+        init(order.getOrderId(), order.getSide(), order.getType(),
+             order.getPrice() != null ? tickScale.toTicks(order.getPrice()) : 0L,
+             tickScale.toUnits(order.getQuantity()), tickScale.toUnits(order.getFilledQuantity()));
+        setCreatedAt(epochMillis(order.getCreatedAt()));
+        setExpiresAt(deadlineMillis(order.getExpiresAt()));
+        setDisplayQuantity(order.getDisplayQuantity() != null ? tickScale.toUnits(order.getDisplayQuantity()) : 0L);
+        setStopPrice(order.getStopPrice() != null ? tickScale.toTicks(order.getStopPrice()) : 0L);
+        setTimeInForce(order.getTimeInForce());
+    }
+    
+    public void setIds(int symbolId, int accountId, int ownerId) {
+        this.symbolId = symbolId;
+        this.accountId = accountId;
+        this.ownerId = ownerId;
+    }
+    
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public void setExpiresAt(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
+    /**
+     * Makes the order an iceberg showing {@code displayQuantity} at a time; 0 shows it all.
+     * The slice is cut when the order rests.
+     */
+    public void setDisplayQuantity(long displayQuantity) {
+        this.displayQuantity = displayQuantity;
+    }
+    
+    // Restores a resting iceberg's reserve as captured, for a slice already partly traded
+    public void setHiddenQuantity(long hiddenQuantity) {
+        this.hiddenQuantity = hiddenQuantity;
+    }
+    
+    public void setStopPrice(long stopPrice) {
+        this.stopPrice = stopPrice;
+    }
+    
+    // Only read while the order is aggressing; a resting order's view reports GTC
+    public void setTimeInForce(TimeInForce timeInForce) {
+        this.timeInForce = timeInForce != null ? timeInForce : TimeInForce.GTC;
+    }
+    
+    // Set by the engine from the order's account before each match; a resting order's view reports NONE
+    public void setSelfTradePrevention(SelfTradePrevention selfTradePrevention) {
+        this.selfTradePrevention = selfTradePrevention;
+    }
+    
+    static long epochMillis(LocalDateTime createdAt) {
+        return createdAt != null ? createdAt.toInstant(ZoneOffset.UTC).toEpochMilli() : 0L;
+    }
+    
+    // Unlike createdAt, a deadline is compared with the clock, so it is read in the system zone
+    static long deadlineMillis(LocalDateTime expiresAt) {
+        return expiresAt != null ? expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0L;
+    }
+    
+    public String getOrderId() { return orderId; }
+    
+    public OrderSide getSide() { return side; }
+    
+    public OrderType getType() { return type; }
+    
+    public long getPrice() { return price; }
+    
+    public long getQuantity() { return quantity; }
+    
+    public long getFilledQuantity() { return filledQuantity; }
+    
+    // Epoch milliseconds (UTC) of the order's creation, 0 if unknown
+    public long getCreatedAt() { return createdAt; }
+    
+    // Epoch milliseconds at which the order expires from the book, 0 if it does not
+    public long getExpiresAt() { return expiresAt; }
+    
+    public long getDisplayQuantity() { return displayQuantity; }
+    
+    // Open quantity held back from the book; always 0 while the order is aggressing
+    public long getHiddenQuantity() { return hiddenQuantity; }
+    
+    public long getStopPrice() { return stopPrice; }
+    
+    public TimeInForce getTimeInForce() { return timeInForce; }
+    
+    public SelfTradePrevention getSelfTradePrevention() { return selfTradePrevention; }
+    
+    // The aggressor met its own account's order and must not match or rest any further
+    public boolean isSelfTradeCancelled() { return selfTradeCancelled; }
+    
+    public int getSymbolId() { return symbolId; }
+    
+    public int getAccountId() { return accountId; }
+    
+    public int getOwnerId() { return ownerId; }
+    
+    public long getRemainingQuantity() {
+        return quantity - filledQuantity;
+    }
+    
+    /**
+     * Open quantity shown in the book and available to the next match: all of it,
+     * except for an iceberg's hidden reserve.
+     */
+    public long getDisplayedQuantity() {
+        return quantity - filledQuantity - hiddenQuantity;
+    }
+    
+    public boolean isIceberg() {
+        return displayQuantity > 0;
+    }
+    
+    // Still waiting for its trigger; a triggered stop reports the type it became
+    public boolean isStop() {
+        return type == OrderType.STOP || type == OrderType.STOP_LIMIT;
+    }
+    
+    /**
+     * Whether a trade at {@code tradePrice} releases this stop: at or above its stop
+     * price for a buy, at or below it for a sell.
+     */
+    public boolean isTriggeredBy(long tradePrice) {
+        return side == OrderSide.BUY ? tradePrice >= stopPrice : tradePrice <= stopPrice;
+    }
+    
+    // A stop becomes a market order and a stop-limit a limit order at its price
+    void trigger() {
+        this.type = type == OrderType.STOP ? OrderType.MARKET : OrderType.LIMIT;
+    }
+    
+    public boolean isFullyFilled() {
+        return filledQuantity >= quantity;
+    }
+    
+    public void fill(long fillQuantity) {
+        this.filledQuantity += fillQuantity;
+    }
+    
+    /**
+     * Self-trade prevention on the aggressing order: either withdraws {@code quantity}
+     * of its open quantity, or with {@code cancel} stops it where it is.
+     */
+    public void preventSelfTrade(long quantity, boolean cancel) {
+        if (cancel) {
+            this.selfTradeCancelled = true;
+        } else {
+            this.quantity -= quantity;
+        }
+    }
+    
+    // Only while outside the ladders: a resting order's level aggregates would go stale
+    void amend(long price, long quantity) {
+        this.price = price;
+        this.quantity = quantity;
+    }
+    
+    // An iceberg gives up hidden reserve before displayed quantity
+    void reduceRemainingTo(long remainingQuantity) {
+        this.hiddenQuantity = Math.max(0L, hiddenQuantity - (getRemainingQuantity() - remainingQuantity));
+        this.quantity = filledQuantity + remainingQuantity;
+    }
+    
+    // Cuts an arriving iceberg's first slice; a restored reserve is left as it was
+    void showSlice() {
+        if (displayQuantity > 0 && hiddenQuantity == 0) {
+            this.hiddenQuantity = Math.max(0L, getRemainingQuantity() - displayQuantity);
+        }
+    }
+    
+    // Moves the next slice of an iceberg's reserve into view once the last one is gone
+    void refillSlice() {
+        this.hiddenQuantity -= Math.min(displayQuantity, hiddenQuantity);
+    }
+    
+    /**
+     * Next order in time priority at the same price, or null at the tail.
+     */
+    public BookOrder getNext() {
+        return next;
+    }
+    
+    public boolean isResting() {
+        return level != null;
+    }
+}
@@ -0,0 +1,62 @@
+package com.trading.domain;
+
+/**
+ * Free list of {@link BookOrder} entries for one book, so that orders passing through
+ * the book in steady state reuse entries instead of allocating new ones. Retains at
+ * most {@code capacity} released entries and allocates when empty.
+ * Confined to the book's owning thread, like the book itself.
+ */
+public final class BookOrderPool {
+    
+    public static final int DEFAULT_CAPACITY = 1024;
+    
+    private final BookOrder[] free;
+    private int available;
+    
+    public BookOrderPool(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Pool capacity must not be negative: " + capacity);
+        }
+        this.free = new BookOrder[capacity];
+    }
+    
+    public BookOrder acquire(String orderId, OrderSide side, OrderType type, long price, long quantity, long filledQuantity) {
+        if (available == 0) {
+            return new BookOrder(orderId, side, type, price, quantity, filledQuantity);
+        }
+        BookOrder bookOrder = free[--available];
+        free[available] = null;
+        bookOrder.init(orderId, side, type, price, quantity, filledQuantity);
+        return bookOrder;
+    }
+    
+    /**
+     * Converts the order as {@link BookOrder#from} does, reusing a free entry.
+     */
+    public BookOrder acquire(Order order, TickScale tickScale) {
+        if (available == 0) {
+            return BookOrder.from(order, tickScale);
+        }
+        BookOrder bookOrder = free[--available];
+        free[available] = null;
+        bookOrder.init(order, tickScale);
+        return bookOrder;
+    }
+    
+    /**
+     * Returns an entry that nothing references any more. It must no longer be in a book.
+     */
+    public void release(BookOrder bookOrder) {
+        if (bookOrder.isResting()) {
+            throw new IllegalStateException("Order is still resting: " + bookOrder.getOrderId());
+        }
+        bookOrder.clear();
+        if (available < free.length) {
+            free[available++] = bookOrder;
+        }
+    }
+    
+    public int getAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,12 @@
+package com.trading.domain;
+
+/**
+ * Told about every change to a price level's open quantity, including levels being
+ * created or removed. Called on the book's owning thread, possibly several times
+ * per level for one engine event; implementations collect and conflate.
+ */
+@FunctionalInterface
+public interface LevelListener {
+    
+    void onLevelChanged(OrderSide side, long price);
+}
@@ -0,0 +1,302 @@
+package com.trading.domain;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Resting-order records of one book kept outside the Java heap.
+ * Each record is a fixed-size slot in a direct {@link ByteBuffer} chunk, holding the
+ * entry's primitives, its level queue links and its order id as Latin-1 bytes. Free
+ * slots are chained through the slots themselves and the order id index is an int
+ * table chained the same way, so the heap holds no object per resting order and the
+ * GC has nothing to trace or copy as the book grows. Chunks are never returned; they
+ * are freed with the book.
+ * Callers see records through a single reusable {@link BookOrder} view, plus a second
+ * one for the rare caller that must hold orders of both sides at once.
+ * Confined to the book's owning thread, like the book itself.
+ */
+final class OffHeapOrderStore {
+    
+    static final int NONE = -1;
+    static final int MAX_ORDER_ID_LENGTH = 56;
+    
+    private static final int SLOT_SIZE = 144;
+    private static final int CHUNK_SHIFT = 15;
+    private static final int SLOTS_PER_CHUNK = 1 << CHUNK_SHIFT; // 4.5 MB chunks
+    private static final int INITIAL_BUCKETS = 1024;
+    
+    // Slot layout; NEXT doubles as the free list link
+    private static final int PRICE = 0;
+    private static final int QUANTITY = 8;
+    private static final int FILLED = 16;
+    private static final int CREATED_AT = 24;
+    private static final int SYMBOL_ID = 32;
+    private static final int ACCOUNT_ID = 36;
+    private static final int OWNER_ID = 40;
+    private static final int PREV = 44;
+    private static final int NEXT = 48;
+    private static final int HASH_NEXT = 52;
+    private static final int HASH = 56;
+    private static final int SIDE = 60;
+    private static final int TYPE = 61;
+    private static final int ID_LENGTH = 62;
+    private static final int EXPIRES_AT = 64;
+    private static final int DISPLAY_QUANTITY = 72;
+    private static final int HIDDEN_QUANTITY = 80;
+    private static final int ORDER_ID = 88;
+    
+    private static final OrderSide[] SIDES = OrderSide.values();
+    private static final OrderType[] TYPES = OrderType.values();
+    
+    private ByteBuffer[] chunks = new ByteBuffer[0];
+    private int slotsUsed;
+    private int freeHead = NONE;
+    private int[] buckets = newBuckets(INITIAL_BUCKETS);
+    private int size;
+    
+    private final BookOrder view = new BookOrder(null, null, null, 0L, 0L, 0L);
+    private final BookOrder pairedView = new BookOrder(null, null, null, 0L, 0L, 0L);
+    private final byte[] idBytes = new byte[MAX_ORDER_ID_LENGTH];
+    
+    /**
+     * Copies the entry into a free slot and indexes it by order id.
+     */
+    int store(BookOrder order) {
+        String orderId = order.getOrderId();
+        checkOrderId(orderId);
+        if (find(orderId) != NONE) {
+            throw new IllegalArgumentException("Order is already resting: " + orderId);
+        }
+        
+        int slot = allocate();
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        chunk.putLong(base + PRICE, order.getPrice());
+        chunk.putLong(base + QUANTITY, order.getQuantity());
+        chunk.putLong(base + FILLED, order.getFilledQuantity());
+        chunk.putLong(base + CREATED_AT, order.getCreatedAt());
+        chunk.putLong(base + EXPIRES_AT, order.getExpiresAt());
+        chunk.putLong(base + DISPLAY_QUANTITY, order.getDisplayQuantity());
+        chunk.putLong(base + HIDDEN_QUANTITY, order.getHiddenQuantity());
+        chunk.putInt(base + SYMBOL_ID, order.getSymbolId());
+        chunk.putInt(base + ACCOUNT_ID, order.getAccountId());
+        chunk.putInt(base + OWNER_ID, order.getOwnerId());
+        chunk.putInt(base + PREV, NONE);
+        chunk.putInt(base + NEXT, NONE);
+        chunk.put(base + SIDE, (byte) order.getSide().ordinal());
+        chunk.put(base + TYPE, (byte) order.getType().ordinal());
+        chunk.put(base + ID_LENGTH, (byte) orderId.length());
+        for (int i = 0; i < orderId.length(); i++) {
+            chunk.put(base + ORDER_ID + i, (byte) orderId.charAt(i));
+        }
+        
+        int hash = orderId.hashCode();
+        chunk.putInt(base + HASH, hash);
+        if (size >= buckets.length - (buckets.length >>> 2)) {
+            resize();
+        }
+        int bucket = bucketFor(hash, buckets.length);
+        chunk.putInt(base + HASH_NEXT, buckets[bucket]);
+        buckets[bucket] = slot;
+        size++;
+        return slot;
+    }
+    
+    /**
+     * Unindexes the record and returns its slot to the free list.
+     */
+    void release(int slot) {
+        int bucket = bucketFor(chunk(slot).getInt(offset(slot) + HASH), buckets.length);
+        int previous = NONE;
+        for (int current = buckets[bucket]; current != NONE; previous = current, current = hashNext(current)) {
+            if (current == slot) {
+                if (previous == NONE) {
+                    buckets[bucket] = hashNext(slot);
+                } else {
+                    chunk(previous).putInt(offset(previous) + HASH_NEXT, hashNext(slot));
+                }
+                size--;
+                break;
+            }
+        }
+        chunk(slot).putInt(offset(slot) + NEXT, freeHead);
+        freeHead = slot;
+    }
+    
+    int find(String orderId) {
+        int hash = orderId.hashCode();
+        for (int slot = buckets[bucketFor(hash, buckets.length)]; slot != NONE; slot = hashNext(slot)) {
+            if (chunk(slot).getInt(offset(slot) + HASH) == hash && idEquals(slot, orderId)) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+    
+    /**
+     * Loads the record into the shared view. The view stays valid until the next load.
+     */
+    BookOrder load(int slot, PriceLevel level) {
+        return load(slot, level, view);
+    }
+    
+    /**
+     * Loads the record into the second view, which a {@link #load(int, PriceLevel)} leaves alone.
+     */
+    BookOrder loadPaired(int slot, PriceLevel level) {
+        return load(slot, level, pairedView);
+    }
+    
+    /**
+     * Loads the record into whichever view {@code current} is not, so a walk can hold
+     * one order while reading the next.
+     */
+    BookOrder loadBeside(int slot, PriceLevel level, BookOrder current) {
+        return load(slot, level, current == view ? pairedView : view);
+    }
+    
+    private BookOrder load(int slot, PriceLevel level, BookOrder target) {
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        int length = chunk.get(base + ID_LENGTH);
+        for (int i = 0; i < length; i++) {
+            idBytes[i] = chunk.get(base + ORDER_ID + i);
+        }
+        target.init(new String(idBytes, 0, length, StandardCharsets.ISO_8859_1),
+                    SIDES[chunk.get(base + SIDE)], TYPES[chunk.get(base + TYPE)], chunk.getLong(base + PRICE),
+                    chunk.getLong(base + QUANTITY), chunk.getLong(base + FILLED));
+        target.setIds(chunk.getInt(base + SYMBOL_ID), chunk.getInt(base + ACCOUNT_ID), chunk.getInt(base + OWNER_ID));
+        target.setCreatedAt(chunk.getLong(base + CREATED_AT));
+        target.setExpiresAt(chunk.getLong(base + EXPIRES_AT));
+        target.setDisplayQuantity(chunk.getLong(base + DISPLAY_QUANTITY));
+        target.setHiddenQuantity(chunk.getLong(base + HIDDEN_QUANTITY));
+        target.slot = slot;
+        target.level = level;
+        return target;
+    }
+    
+    boolean isView(BookOrder order) {
+        return order == view || order == pairedView;
+    }
+    
+    long price(int slot) {
+        return chunk(slot).getLong(offset(slot) + PRICE);
+    }
+    
+    OrderSide side(int slot) {
+        return SIDES[chunk(slot).get(offset(slot) + SIDE)];
+    }
+    
+    void setQuantity(int slot, long quantity) {
+        chunk(slot).putLong(offset(slot) + QUANTITY, quantity);
+    }
+    
+    void setFilledQuantity(int slot, long filledQuantity) {
+        chunk(slot).putLong(offset(slot) + FILLED, filledQuantity);
+    }
+    
+    void setHiddenQuantity(int slot, long hiddenQuantity) {
+        chunk(slot).putLong(offset(slot) + HIDDEN_QUANTITY, hiddenQuantity);
+    }
+    
+    int prev(int slot) {
+        return chunk(slot).getInt(offset(slot) + PREV);
+    }
+    
+    int next(int slot) {
+        return chunk(slot).getInt(offset(slot) + NEXT);
+    }
+    
+    void setPrev(int slot, int prev) {
+        chunk(slot).putInt(offset(slot) + PREV, prev);
+    }
+    
+    void setNext(int slot, int next) {
+        chunk(slot).putInt(offset(slot) + NEXT, next);
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    long getReservedBytes() {
+        return (long) chunks.length * SLOTS_PER_CHUNK * SLOT_SIZE;
+    }
+    
+    private int allocate() {
+        if (freeHead != NONE) {
+            int slot = freeHead;
+            freeHead = next(slot);
+            return slot;
+        }
+        if (slotsUsed == chunks.length * SLOTS_PER_CHUNK) {
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = ByteBuffer.allocateDirect(SLOTS_PER_CHUNK * SLOT_SIZE).order(ByteOrder.nativeOrder());
+        }
+        return slotsUsed++;
+    }
+    
+    private void resize() {
+        int[] grown = newBuckets(buckets.length * 2);
+        for (int head : buckets) {
+            int slot = head;
+            while (slot != NONE) {
+                int next = hashNext(slot);
+                int bucket = bucketFor(chunk(slot).getInt(offset(slot) + HASH), grown.length);
+                chunk(slot).putInt(offset(slot) + HASH_NEXT, grown[bucket]);
+                grown[bucket] = slot;
+                slot = next;
+            }
+        }
+        buckets = grown;
+    }
+    
+    private boolean idEquals(int slot, String orderId) {
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        if (chunk.get(base + ID_LENGTH) != orderId.length()) {
+            return false;
+        }
+        for (int i = 0; i < orderId.length(); i++) {
+            if ((chunk.get(base + ORDER_ID + i) & 0xFF) != orderId.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private int hashNext(int slot) {
+        return chunk(slot).getInt(offset(slot) + HASH_NEXT);
+    }
+    
+    private ByteBuffer chunk(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT];
+    }
+    
+    private static int offset(int slot) {
+        return (slot & (SLOTS_PER_CHUNK - 1)) * SLOT_SIZE;
+    }
+    
+    private static void checkOrderId(String orderId) {
+        if (orderId == null || orderId.length() > MAX_ORDER_ID_LENGTH) {
+            throw new IllegalArgumentException("Order id must be at most " + MAX_ORDER_ID_LENGTH + " characters off-heap: " + orderId);
+        }
+        for (int i = 0; i < orderId.length(); i++) {
+            if (orderId.charAt(i) > 0xFF) {
+                throw new IllegalArgumentException("Order id is not Latin-1: " + orderId);
+            }
+        }
+    }
+    
+    private static int[] newBuckets(int length) {
+        int[] table = new int[length];
+        Arrays.fill(table, NONE);
+        return table;
+    }
+    
+    private static int bucketFor(int hash, int length) {
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+}
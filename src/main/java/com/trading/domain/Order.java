@@ -78,6 +78,22 @@ public class Order {
     @Column
     private String reason;
     
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TimeInForce timeInForce = TimeInForce.GTC;
+    
+    // Iceberg orders: the quantity shown in the book at a time; null shows the whole order
+    @Column(precision = 19, scale = 4)
+    private BigDecimal displayQuantity;
+    
+    // Stop and stop-limit orders: the trade price that releases the order to the book
+    @Column(precision = 19, scale = 4)
+    private BigDecimal stopPrice;
+    
+    // Set for DAY and GTD orders; the matching engine expires the order from the book at this time
+    @Column
+    private LocalDateTime expiresAt;
+    
     // Constructors
     public Order() {}
     
@@ -145,6 +161,18 @@ public class Order {
     public String getReason() { return reason; }
     public void setReason(String reason) { this.reason = reason; }
     
+    public TimeInForce getTimeInForce() { return timeInForce; }
+    public void setTimeInForce(TimeInForce timeInForce) { this.timeInForce = timeInForce; }
+    
+    public BigDecimal getDisplayQuantity() { return displayQuantity; }
+    public void setDisplayQuantity(BigDecimal displayQuantity) { this.displayQuantity = displayQuantity; }
+    
+    public BigDecimal getStopPrice() { return stopPrice; }
+    public void setStopPrice(BigDecimal stopPrice) { this.stopPrice = stopPrice; }
+    
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+    
     // Business methods
     public boolean isFullyFilled() {
         return filledQuantity.compareTo(quantity) >= 0;
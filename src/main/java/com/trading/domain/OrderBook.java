@@ -1,156 +1,684 @@
 package com.trading.domain;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 
+/**
+ * Price-time order book for a single symbol.
+ * Prices and quantities are fixed-point longs (see {@link TickScale}).
+ * Each price level is an intrusive FIFO queue and {@code orderIndex} holds the
+ * handle of every resting order, so cancel, fill and reduce are O(1) within a level.
+ * Level quantities and per-side order counts are maintained incrementally, so depth
+ * and count queries cost O(levels requested). Each side's levels sit in a
+ * {@link PriceLadder}: a sorted map by default, or a tick-indexed {@link ArrayLadder}
+ * for symbols that trade in a narrow band. Entries that leave the book can be
+ * recycled through its {@link BookOrderPool}.
+ * Iceberg orders rest with only their display slice counted in the level totals; when
+ * a slice is traded away the next one is cut from the hidden reserve and the order
+ * moves to the back of its level, all in place.
+ * How a fill is shared within a level is the book's {@link Allocation}; price-time by
+ * default. Each side also counts its resting orders per account, so self-trade
+ * prevention only compares accounts for an aggressor whose account rests opposite.
+ * Stop and stop-limit orders wait outside the ladders in a {@link StopBook}; every fill
+ * records the last trade price, and {@link #pollTriggeredStop()} hands out the stops
+ * it has reached.
+ * An off-heap book keeps its resting orders in an {@link OffHeapOrderStore} instead:
+ * levels and the id index link int slots, and orders read from the book are one shared
+ * view, valid until the next call into the book, that cannot walk its level through
+ * {@link BookOrder#getNext()}. It suits symbols deep enough for GC to become the problem.
+ * Not thread-safe: the matching engine guarantees a single writer per book.
+ */
 public class OrderBook {
     
     private final String symbol;
-    private final ConcurrentSkipListMap<BigDecimal, List<Order>> bids; // Price -> Orders (descending)
-    private final ConcurrentSkipListMap<BigDecimal, List<Order>> asks; // Price -> Orders (ascending)
-    private final Map<String, Order> orderMap;
+    private final TickScale tickScale;
+    private final PriceLadder bids; // Price ticks -> Orders (descending)
+    private final PriceLadder asks; // Price ticks -> Orders (ascending)
+    private final OrderIndex orderIndex;
+    private final BookOrderPool orderPool;
+    private final OffHeapOrderStore offHeapStore;
+    private final StopBook stops = new StopBook();
+    private Allocation allocation = Allocation.FIFO;
+    private long lotSize;
+    private long lastTradePrice;
+    private boolean inAuction;
+    private int bidOrderCount;
+    private int askOrderCount;
+    // Resting orders per side, indexed by account id
+    private int[] bidAccountOrders = new int[16];
+    private int[] askAccountOrders = new int[16];
+    private long lastSequence;
+    private long version;
+    private LevelListener levelListener;
     
     public OrderBook(String symbol) {
+        this(symbol, TickScale.DEFAULT);
+    }
+    
+    public OrderBook(String symbol, TickScale tickScale) {
+        this(symbol, tickScale, false);
+    }
+    
+    public OrderBook(String symbol, TickScale tickScale, boolean offHeap) {
+        this(symbol, tickScale, offHeap, 0);
+    }
+    
+    /**
+     * @param ladderTicks width in ticks of the array ladder window per side, a multiple
+     *                    of 64; 0 keeps each side in a sorted map
+     */
+    public OrderBook(String symbol, TickScale tickScale, boolean offHeap, int ladderTicks) {
         this.symbol = symbol;
-        this.bids = new ConcurrentSkipListMap<>(Collections.reverseOrder());
-        this.asks = new ConcurrentSkipListMap<>();
-        this.orderMap = new ConcurrentHashMap<>();
+        this.tickScale = tickScale;
+        this.lotSize = tickScale.toUnits(BigDecimal.ONE);
+        this.orderIndex = new OrderIndex();
+        this.orderPool = new BookOrderPool(BookOrderPool.DEFAULT_CAPACITY);
+        this.offHeapStore = offHeap ? new OffHeapOrderStore() : null;
+        LongFunction<PriceLevel> newLevel = offHeap ? price -> new PriceLevel(price, offHeapStore) : PriceLevel::new;
+        this.bids = ladderTicks > 0 ? new ArrayLadder(true, ladderTicks, newLevel) : new TreeLadder(true, newLevel);
+        this.asks = ladderTicks > 0 ? new ArrayLadder(false, ladderTicks, newLevel) : new TreeLadder(false, newLevel);
     }
     
-    public void addOrder(Order order) {
-        orderMap.put(order.getOrderId(), order);
+    /**
+     * Rests the order. An off-heap book copies it and returns the entry to the pool.
+     */
+    public void addOrder(BookOrder order) {
+        order.showSlice();
+        if (offHeapStore != null) {
+            addOffHeap(order);
+            return;
+        }
+        orderIndex.put(order);
+        version++;
         
         if (order.getSide() == OrderSide.BUY) {
             addToPriceLevel(bids, order);
+            bidOrderCount++;
         } else {
             addToPriceLevel(asks, order);
+            askOrderCount++;
         }
+        countAccountOrder(order, 1);
     }
     
-    public void removeOrder(String orderId) {
-        Order order = orderMap.remove(orderId);
+    public BookOrder removeOrder(String orderId) {
+        if (offHeapStore != null) {
+            BookOrder order = getOrder(orderId);
+            if (order != null) {
+                removeOffHeap(order);
+            }
+            return order;
+        }
+        BookOrder order = orderIndex.remove(orderId);
         if (order != null) {
+            version++;
             if (order.getSide() == OrderSide.BUY) {
                 removeFromPriceLevel(bids, order);
+                bidOrderCount--;
             } else {
                 removeFromPriceLevel(asks, order);
+                askOrderCount--;
             }
+            countAccountOrder(order, -1);
         }
+        return order;
     }
     
-    public void updateOrder(Order order) {
-        orderMap.put(order.getOrderId(), order);
-        
+    /**
+     * Takes out a resting order through the entry or view in hand rather than by id,
+     * so an off-heap book loads nothing and the other view stays valid.
+     */
+    public void removeResting(BookOrder order) {
+        if (order.slot != OffHeapOrderStore.NONE) {
+            removeOffHeap(order);
+        } else {
+            removeOrder(order.getOrderId());
+        }
+    }
+    
+    /**
+     * Applies a fill of at most its displayed quantity to a resting order and keeps its
+     * level total current. A fully filled order leaves the book; an iceberg whose slice
+     * is gone shows its next one.
+     */
+    public void fillOrder(BookOrder order, long quantity) {
+        order.fill(quantity);
+        lastTradePrice = order.getPrice();
+        version++;
+        if (order.level != null) {
+            order.level.reduceQuantity(quantity, 0L);
+            levelChanged(order);
+        }
+        if (order.slot != OffHeapOrderStore.NONE) {
+            offHeapStore.setFilledQuantity(order.slot, order.getFilledQuantity());
+            if (order.isFullyFilled()) {
+                removeOffHeap(order);
+            } else if (order.getDisplayedQuantity() == 0) {
+                refillOffHeap(order);
+            }
+        } else if (order.isFullyFilled()) {
+            removeOrder(order.getOrderId());
+        } else if (order.level != null && order.getDisplayedQuantity() == 0) {
+            refill(order);
+        }
+    }
+    
+    // The new slice joins the back of the level: time priority is lost, as for a new order
+    private void refill(BookOrder order) {
+        PriceLevel level = order.level;
+        level.remove(order);
+        order.refillSlice();
+        level.append(order);
+    }
+    
+    private void refillOffHeap(BookOrder order) {
+        PriceLevel level = order.level;
+        level.removeSlot(order.slot, 0L, order.getHiddenQuantity());
+        order.refillSlice();
+        offHeapStore.setHiddenQuantity(order.slot, order.getHiddenQuantity());
+        level.appendSlot(order.slot, order.getDisplayedQuantity(), order.getHiddenQuantity());
+    }
+    
+    /**
+     * Reduces a resting order's open quantity in place, keeping its time priority.
+     */
+    public boolean reduceOrder(String orderId, long remainingQuantity) {
+        BookOrder order = getOrder(orderId);
+        return order != null && reduceOrder(order, remainingQuantity);
+    }
+    
+    /**
+     * Like {@link #reduceOrder(String, long)}, through the resting entry or view in hand.
+     */
+    public boolean reduceOrder(BookOrder order, long remainingQuantity) {
+        if (remainingQuantity <= 0 || remainingQuantity > order.getRemainingQuantity()) {
+            return false;
+        }
+        long displayedQuantity = order.getDisplayedQuantity();
+        long hiddenQuantity = order.getHiddenQuantity();
+        order.reduceRemainingTo(remainingQuantity);
+        order.level.reduceQuantity(displayedQuantity - order.getDisplayedQuantity(), hiddenQuantity - order.getHiddenQuantity());
+        if (order.slot != OffHeapOrderStore.NONE) {
+            offHeapStore.setQuantity(order.slot, order.getQuantity());
+            offHeapStore.setHiddenQuantity(order.slot, order.getHiddenQuantity());
+        }
+        version++;
+        levelChanged(order);
+        return true;
+    }
+    
+    /**
+     * Parks a stop or stop-limit order until a trade reaches its stop price. A stop the
+     * last trade has already reached is triggered at once.
+     */
+    public void addStop(BookOrder order) {
+        if (!order.isStop()) {
+            throw new IllegalArgumentException("Not a stop order: " + order.getOrderId());
+        }
+        if (lastTradePrice != 0 && order.isTriggeredBy(lastTradePrice)) {
+            stops.addTriggered(order);
+        } else {
+            stops.add(order);
+        }
+    }
+    
+    /**
+     * Queues a stop that a snapshot captured after its trigger, behind those already triggered.
+     */
+    public void addTriggeredStop(BookOrder order) {
+        stops.addTriggered(order);
+    }
+    
+    /**
+     * A waiting stop, or one triggered but not yet handed out by {@link #pollTriggeredStop()}.
+     */
+    public BookOrder getStop(String orderId) {
+        return stops.get(orderId);
+    }
+    
+    /**
+     * Gives a waiting or triggered stop a new limit price and quantity in place, keeping
+     * its place in the stop queues; returns it, or null if it is not here.
+     */
+    public BookOrder amendStop(String orderId, long price, long quantity) {
+        BookOrder stop = stops.get(orderId);
+        if (stop != null) {
+            stop.amend(price, quantity);
+        }
+        return stop;
+    }
+    
+    public BookOrder removeStop(String orderId) {
+        return stops.remove(orderId);
+    }
+    
+    /**
+     * Next stop released by the trades so far, already converted to the market or limit
+     * order it holds, or null. Stops released by the same trade come out in the order a
+     * moving price would have reached them; matching one can release more.
+     */
+    public BookOrder pollTriggeredStop() {
+        if (lastTradePrice != 0) {
+            stops.release(lastTradePrice);
+        }
+        return stops.pollTriggered();
+    }
+    
+    /**
+     * Visits the waiting stops of both sides in trigger priority, then the triggered
+     * stops not yet handed out.
+     */
+    public void forEachStop(Consumer<BookOrder> action) {
+        stops.forEach(action);
+    }
+    
+    public int getStopCount() {
+        return stops.size();
+    }
+    
+    private void addToPriceLevel(PriceLadder priceLevels, BookOrder order) {
+        priceLevels.getOrCreate(order.getPrice()).append(order);
+        levelChanged(order);
+    }
+    
+    private void addOffHeap(BookOrder order) {
+        int slot = offHeapStore.store(order);
+        version++;
+        if (order.getSide() == OrderSide.BUY) {
+            bids.getOrCreate(order.getPrice()).appendSlot(slot, order.getDisplayedQuantity(), order.getHiddenQuantity());
+            bidOrderCount++;
+        } else {
+            asks.getOrCreate(order.getPrice()).appendSlot(slot, order.getDisplayedQuantity(), order.getHiddenQuantity());
+            askOrderCount++;
+        }
+        countAccountOrder(order, 1);
+        levelChanged(order);
+        releaseOrder(order);
+    }
+    
+    // Removes the record behind a view; the view keeps its values for the caller
+    private void removeOffHeap(BookOrder order) {
+        PriceLevel level = order.level;
+        level.removeSlot(order.slot, order.getDisplayedQuantity(), order.getHiddenQuantity());
+        offHeapStore.release(order.slot);
+        order.slot = OffHeapOrderStore.NONE;
+        order.level = null;
+        version++;
         if (order.getSide() == OrderSide.BUY) {
-            updatePriceLevel(bids, order);
+            bidOrderCount--;
         } else {
-            updatePriceLevel(asks, order);
+            askOrderCount--;
+        }
+        countAccountOrder(order, -1);
+        if (level.isEmpty()) {
+            (order.getSide() == OrderSide.BUY ? bids : asks).remove(level.getPrice());
+        }
+        levelChanged(order);
+    }
+    
+    private void removeFromPriceLevel(PriceLadder priceLevels, BookOrder order) {
+        PriceLevel level = order.level;
+        if (level != null) {
+            level.remove(order);
+            if (level.isEmpty()) {
+                priceLevels.remove(level.getPrice());
+            }
+            levelChanged(order);
         }
     }
     
-    private void addToPriceLevel(ConcurrentSkipListMap<BigDecimal, List<Order>> priceLevels, Order order) {
-        priceLevels.computeIfAbsent(order.getPrice(), k -> new ArrayList<>()).add(order);
+    private void countAccountOrder(BookOrder order, int delta) {
+        int accountId = order.getAccountId();
+        int[] counts = order.getSide() == OrderSide.BUY ? bidAccountOrders : askAccountOrders;
+        if (accountId >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(accountId + 1, counts.length * 2));
+            if (order.getSide() == OrderSide.BUY) {
+                bidAccountOrders = counts;
+            } else {
+                askAccountOrders = counts;
+            }
+        }
+        counts[accountId] += delta;
     }
     
-    private void removeFromPriceLevel(ConcurrentSkipListMap<BigDecimal, List<Order>> priceLevels, Order order) {
-        priceLevels.computeIfPresent(order.getPrice(), (price, orders) -> {
-            orders.removeIf(o -> o.getOrderId().equals(order.getOrderId()));
-            return orders.isEmpty() ? null : orders;
-        });
+    private void levelChanged(BookOrder order) {
+        if (levelListener != null) {
+            levelListener.onLevelChanged(order.getSide(), order.getPrice());
+        }
     }
     
-    private void updatePriceLevel(ConcurrentSkipListMap<BigDecimal, List<Order>> priceLevels, Order order) {
-        removeFromPriceLevel(priceLevels, order);
-        addToPriceLevel(priceLevels, order);
+    public void setLevelListener(LevelListener levelListener) {
+        this.levelListener = levelListener;
     }
     
     public BigDecimal getBestBid() {
-        return bids.isEmpty() ? null : bids.firstKey();
+        return bids.isEmpty() ? null : tickScale.toPrice(bids.best().getPrice());
     }
     
     public BigDecimal getBestAsk() {
-        return asks.isEmpty() ? null : asks.firstKey();
+        return asks.isEmpty() ? null : tickScale.toPrice(asks.best().getPrice());
+    }
+    
+    public PriceLevel getBestBidLevel() {
+        return bids.best();
+    }
+    
+    public PriceLevel getBestAskLevel() {
+        return asks.best();
     }
     
     public BigDecimal getSpread() {
-        BigDecimal bestBid = getBestBid();
-        BigDecimal bestAsk = getBestAsk();
-        
-        if (bestBid != null && bestAsk != null) {
-            return bestAsk.subtract(bestBid);
+        if (bids.isEmpty() || asks.isEmpty()) {
+            return null;
         }
-        return null;
+        return tickScale.toPrice(asks.best().getPrice() - bids.best().getPrice());
     }
     
-    public List<Order> getBidsAtPrice(BigDecimal price) {
-        return bids.getOrDefault(price, new ArrayList<>());
+    /**
+     * Walks the side opposite to {@code incoming} from the top of book, yielding
+     * levels only while their price still crosses the incoming limit (any price
+     * for market orders). Levels emptied by fills may be removed while iterating.
+     */
+    public Iterator<PriceLevel> crossingLevels(BookOrder incoming) {
+        PriceLadder priceLevels = incoming.getSide() == OrderSide.BUY ? asks : bids;
+        return new CrossingLevelIterator(priceLevels, incoming);
     }
     
-    public List<Order> getAsksAtPrice(BigDecimal price) {
-        return asks.getOrDefault(price, new ArrayList<>());
+    /**
+     * Quantity resting at prices {@code incoming} crosses, iceberg reserves included,
+     * summed from the level aggregates best price first and stopping once it reaches
+     * {@code atLeast}.
+     * Costs one step per crossed level; no order is visited and nothing changes.
+     */
+    public long crossingQuantity(BookOrder incoming, long atLeast) {
+        long available = 0L;
+        Iterator<PriceLevel> levels = crossingLevels(incoming);
+        while (available < atLeast && levels.hasNext()) {
+            PriceLevel level = levels.next();
+            available += level.getTotalQuantity() + level.getHiddenQuantity();
+        }
+        return available;
     }
     
-    public Map<BigDecimal, BigDecimal> getBidLevels(int maxLevels) {
-        Map<BigDecimal, BigDecimal> levels = new LinkedHashMap<>();
+    /**
+     * Visits every resting order on one side in priority order: best price first,
+     * then arrival order within each level.
+     */
+    public void forEachOrder(OrderSide side, Consumer<BookOrder> action) {
+        PriceLadder priceLevels = side == OrderSide.BUY ? bids : asks;
+        for (PriceLevel level = priceLevels.best(); level != null; level = priceLevels.after(level.getPrice())) {
+            if (offHeapStore != null) {
+                for (int slot = level.headSlot; slot != OffHeapOrderStore.NONE; slot = offHeapStore.next(slot)) {
+                    action.accept(offHeapStore.load(slot, level));
+                }
+                continue;
+            }
+            for (BookOrder order = level.getHead(); order != null; order = order.getNext()) {
+                action.accept(order);
+            }
+        }
+    }
+    
+    /**
+     * Next level of {@code side} behind {@code price} in priority order, for walking a
+     * side level by level without copying it.
+     */
+    public PriceLevel getLevelAfter(OrderSide side, long price) {
+        return (side == OrderSide.BUY ? bids : asks).after(price);
+    }
+    
+    /**
+     * Head of {@code level}, valid alongside the head of any other level: the order itself
+     * in a heap book, a second view in an off-heap one. For matching two resting orders,
+     * as an auction uncross does.
+     */
+    public BookOrder getPairedHead(PriceLevel level) {
+        if (offHeapStore == null) {
+            return level.getHead();
+        }
+        return level.headSlot == OffHeapOrderStore.NONE ? null : offHeapStore.loadPaired(level.headSlot, level);
+    }
+    
+    /**
+     * Order behind {@code order} in its level, or null at the back. Read it before
+     * filling {@code order}: a filled order leaves the level and a refilled iceberg
+     * moves to its back. In an off-heap book it is loaded into the view {@code order}
+     * is not, so both stay valid together.
+     */
+    public BookOrder getNextInLevel(BookOrder order) {
+        if (offHeapStore == null) {
+            return order.getNext();
+        }
+        int next = offHeapStore.next(order.slot);
+        return next == OffHeapOrderStore.NONE ? null : offHeapStore.loadBeside(next, order.level, order);
+    }
+    
+    public PriceLevel getBidsAtPrice(long price) {
+        return bids.get(price);
+    }
+    
+    public PriceLevel getAsksAtPrice(long price) {
+        return asks.get(price);
+    }
+    
+    /**
+     * Aggregated bid depth in ticks and quantity units, best price first.
+     */
+    public Map<Long, Long> getBidDepth(int maxLevels) {
+        return getDepth(bids, maxLevels);
+    }
+    
+    /**
+     * Aggregated ask depth in ticks and quantity units, best price first.
+     */
+    public Map<Long, Long> getAskDepth(int maxLevels) {
+        return getDepth(asks, maxLevels);
+    }
+    
+    private Map<Long, Long> getDepth(PriceLadder priceLevels, int maxLevels) {
+        Map<Long, Long> levels = new LinkedHashMap<>();
         int count = 0;
         
-        for (Map.Entry<BigDecimal, List<Order>> entry : bids.entrySet()) {
+        for (PriceLevel level = priceLevels.best(); level != null; level = priceLevels.after(level.getPrice())) {
             if (count >= maxLevels) break;
             
-            BigDecimal totalQuantity = entry.getValue().stream()
-                .map(Order::getRemainingQuantity)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            levels.put(entry.getKey(), totalQuantity);
+            levels.put(level.getPrice(), level.getTotalQuantity());
             count++;
         }
         
         return levels;
     }
     
+    public Map<BigDecimal, BigDecimal> getBidLevels(int maxLevels) {
+        return toDecimalLevels(getBidDepth(maxLevels));
+    }
+    
     public Map<BigDecimal, BigDecimal> getAskLevels(int maxLevels) {
+        return toDecimalLevels(getAskDepth(maxLevels));
+    }
+    
+    private Map<BigDecimal, BigDecimal> toDecimalLevels(Map<Long, Long> depth) {
         Map<BigDecimal, BigDecimal> levels = new LinkedHashMap<>();
-        int count = 0;
-        
-        for (Map.Entry<BigDecimal, List<Order>> entry : asks.entrySet()) {
-            if (count >= maxLevels) break;
-            
-            BigDecimal totalQuantity = entry.getValue().stream()
-                .map(Order::getRemainingQuantity)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            levels.put(entry.getKey(), totalQuantity);
-            count++;
+        for (Map.Entry<Long, Long> entry : depth.entrySet()) {
+            levels.put(tickScale.toPrice(entry.getKey()), tickScale.toQuantity(entry.getValue()));
         }
-        
         return levels;
     }
     
-    public Order getOrder(String orderId) {
-        return orderMap.get(orderId);
+    public BookOrder getOrder(String orderId) {
+        if (offHeapStore == null) {
+            return orderIndex.get(orderId);
+        }
+        int slot = offHeapStore.find(orderId);
+        if (slot == OffHeapOrderStore.NONE) {
+            return null;
+        }
+        PriceLadder priceLevels = offHeapStore.side(slot) == OrderSide.BUY ? bids : asks;
+        return offHeapStore.load(slot, priceLevels.get(offHeapStore.price(slot)));
     }
     
     public String getSymbol() {
         return symbol;
     }
     
+    public TickScale getTickScale() {
+        return tickScale;
+    }
+    
+    public BookOrderPool getOrderPool() {
+        return orderPool;
+    }
+    
+    /**
+     * Returns an entry that has left the book to the pool. Off-heap views are not pooled.
+     */
+    public void releaseOrder(BookOrder order) {
+        if (offHeapStore == null || !offHeapStore.isView(order)) {
+            orderPool.release(order);
+        }
+    }
+    
+    public boolean isOffHeap() {
+        return offHeapStore != null;
+    }
+    
+    /**
+     * Direct memory reserved for resting-order records; 0 for an on-heap book.
+     */
+    public long getOffHeapBytes() {
+        return offHeapStore != null ? offHeapStore.getReservedBytes() : 0L;
+    }
+    
+    /**
+     * Journal sequence of the last engine input applied to this book.
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+    
+    public void setLastSequence(long lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+    
+    /**
+     * Incremented by every change to the resting orders, so readers can tell whether
+     * anything derived from the book is stale.
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Price in ticks of the last trade against this book, 0 before the first.
+     */
+    public long getLastTradePrice() {
+        return lastTradePrice;
+    }
+    
+    public void setLastTradePrice(long lastTradePrice) {
+        this.lastTradePrice = lastTradePrice;
+    }
+    
+    /**
+     * How a price level shares an aggressor's quantity among its resting orders.
+     */
+    public Allocation getAllocation() {
+        return allocation;
+    }
+    
+    public void setAllocation(Allocation allocation) {
+        this.allocation = allocation;
+    }
+    
+    /**
+     * Quantity in scaled units that pro-rata shares are rounded down to; one share by default.
+     */
+    public long getLotSize() {
+        return lotSize;
+    }
+    
+    public void setLotSize(long lotSize) {
+        if (lotSize <= 0) {
+            throw new IllegalArgumentException("Lot size must be positive: " + lotSize);
+        }
+        this.lotSize = lotSize;
+    }
+    
+    /**
+     * In a call auction phase orders accumulate without matching, so the book may be
+     * crossed until it is uncrossed.
+     */
+    public boolean isInAuction() {
+        return inAuction;
+    }
+    
+    public void setInAuction(boolean inAuction) {
+        this.inAuction = inAuction;
+    }
+    
+    /**
+     * Whether the account has any order resting on {@code side}, in O(1).
+     */
+    public boolean hasRestingOrders(OrderSide side, int accountId) {
+        int[] counts = side == OrderSide.BUY ? bidAccountOrders : askAccountOrders;
+        return accountId < counts.length && counts[accountId] > 0;
+    }
+    
     public int getTotalBidOrders() {
-        return orderMap.values().stream()
-            .filter(o -> o.getSide() == OrderSide.BUY && o.getStatus() == OrderStatus.PENDING)
-            .mapToInt(o -> 1)
-            .sum();
+        return bidOrderCount;
     }
     
     public int getTotalAskOrders() {
-        return orderMap.values().stream()
-            .filter(o -> o.getSide() == OrderSide.SELL && o.getStatus() == OrderStatus.PENDING)
-            .mapToInt(o -> 1)
-            .sum();
+        return askOrderCount;
+    }
+    
+    private static final class CrossingLevelIterator implements Iterator<PriceLevel> {
+        
+        private final PriceLadder priceLevels;
+        private final BookOrder incoming;
+        private boolean started;
+        private long lastPrice;
+        private PriceLevel nextLevel;
+        
+        CrossingLevelIterator(PriceLadder priceLevels, BookOrder incoming) {
+            this.priceLevels = priceLevels;
+            this.incoming = incoming;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (nextLevel == null) {
+                // Re-resolve from the last visited price: that level may have been removed since
+                nextLevel = started ? priceLevels.after(lastPrice) : priceLevels.best();
+            }
+            return nextLevel != null && crosses(nextLevel.getPrice());
+        }
+        
+        @Override
+        public PriceLevel next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            PriceLevel level = nextLevel;
+            started = true;
+            lastPrice = level.getPrice();
+            nextLevel = null;
+            return level;
+        }
+        
+        private boolean crosses(long levelPrice) {
+            if (incoming.getType() == OrderType.MARKET) {
+                return true;
+            }
+            return incoming.getSide() == OrderSide.BUY
+                ? incoming.getPrice() >= levelPrice
+                : incoming.getPrice() <= levelPrice;
+        }
     }
 }
@@ -0,0 +1,78 @@
+package com.trading.domain;
+
+/**
+ * Order id to resting order, chained through the orders themselves so that adding
+ * and removing an order allocates nothing. The table only allocates when it grows.
+ */
+final class OrderIndex {
+    
+    private static final int INITIAL_CAPACITY = 16;
+    
+    private BookOrder[] table = new BookOrder[INITIAL_CAPACITY];
+    private int size;
+    
+    BookOrder get(String orderId) {
+        for (BookOrder order = table[indexFor(orderId, table.length)]; order != null; order = order.hashNext) {
+            if (order.getOrderId().equals(orderId)) {
+                return order;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Indexes the order, replacing any order already indexed under the same id.
+     */
+    void put(BookOrder order) {
+        remove(order.getOrderId());
+        if (size >= table.length - (table.length >>> 2)) {
+            resize();
+        }
+        int index = indexFor(order.getOrderId(), table.length);
+        order.hashNext = table[index];
+        table[index] = order;
+        size++;
+    }
+    
+    BookOrder remove(String orderId) {
+        int index = indexFor(orderId, table.length);
+        BookOrder previous = null;
+        for (BookOrder order = table[index]; order != null; previous = order, order = order.hashNext) {
+            if (order.getOrderId().equals(orderId)) {
+                if (previous == null) {
+                    table[index] = order.hashNext;
+                } else {
+                    previous.hashNext = order.hashNext;
+                }
+                order.hashNext = null;
+                size--;
+                return order;
+            }
+        }
+        return null;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    private void resize() {
+        BookOrder[] grown = new BookOrder[table.length * 2];
+        for (BookOrder head : table) {
+            BookOrder order = head;
+            while (order != null) {
+                BookOrder next = order.hashNext;
+                int index = indexFor(order.getOrderId(), grown.length);
+                order.hashNext = grown[index];
+                grown[index] = order;
+                order = next;
+            }
+        }
+        table = grown;
+    }
+    
+    private static int indexFor(String orderId, int length) {
+        int hash = orderId.hashCode();
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+}
@@ -2,5 +2,7 @@ package com.trading.domain;
 
 public enum OrderType {
     LIMIT,
-    MARKET
+    MARKET,
+    STOP,
+    STOP_LIMIT
 }
@@ -0,0 +1,30 @@
+package com.trading.domain;
+
+/**
+ * One side of an {@link OrderBook}: its non-empty price levels keyed by price in ticks,
+ * in priority order (best price first).
+ */
+interface PriceLadder {
+    
+    PriceLevel get(long price);
+    
+    /**
+     * The level at {@code price}, created empty if there is none.
+     */
+    PriceLevel getOrCreate(long price);
+    
+    /**
+     * Drops the level at {@code price} once its last order has left.
+     */
+    void remove(long price);
+    
+    PriceLevel best();
+    
+    /**
+     * First level behind {@code price} in priority order, whether or not a level
+     * exists at {@code price} itself.
+     */
+    PriceLevel after(long price);
+    
+    boolean isEmpty();
+}
@@ -0,0 +1,141 @@
+package com.trading.domain;
+
+/**
+ * FIFO queue of resting orders at one price, linked through the orders themselves
+ * so that appending, unlinking and in-place reduction are all O(1).
+ * In an off-heap book the queue links slots of the book's {@link OffHeapOrderStore}
+ * instead of entries.
+ * The level also keeps its open quantity and order count current on every change.
+ * Iceberg reserves are summed apart from the displayed quantity, which is all the
+ * depth ever shows.
+ */
+public class PriceLevel {
+    
+    private final long price;
+    private BookOrder head;
+    private BookOrder tail;
+    private final OffHeapOrderStore store;
+    int headSlot = OffHeapOrderStore.NONE;
+    private int tailSlot = OffHeapOrderStore.NONE;
+    private long totalQuantity;
+    private long hiddenQuantity;
+    private int orderCount;
+    
+    PriceLevel(long price) {
+        this(price, null);
+    }
+    
+    PriceLevel(long price, OffHeapOrderStore store) {
+        this.price = price;
+        this.store = store;
+    }
+    
+    void append(BookOrder order) {
+        order.level = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+        totalQuantity += order.getDisplayedQuantity();
+        hiddenQuantity += order.getHiddenQuantity();
+        orderCount++;
+    }
+    
+    void remove(BookOrder order) {
+        if (order.prev == null) {
+            head = order.next;
+        } else {
+            order.prev.next = order.next;
+        }
+        if (order.next == null) {
+            tail = order.prev;
+        } else {
+            order.next.prev = order.prev;
+        }
+        order.prev = null;
+        order.next = null;
+        order.level = null;
+        totalQuantity -= order.getDisplayedQuantity();
+        hiddenQuantity -= order.getHiddenQuantity();
+        orderCount--;
+    }
+    
+    void appendSlot(int slot, long displayedQuantity, long hiddenQuantity) {
+        store.setPrev(slot, tailSlot);
+        store.setNext(slot, OffHeapOrderStore.NONE);
+        if (tailSlot == OffHeapOrderStore.NONE) {
+            headSlot = slot;
+        } else {
+            store.setNext(tailSlot, slot);
+        }
+        tailSlot = slot;
+        this.totalQuantity += displayedQuantity;
+        this.hiddenQuantity += hiddenQuantity;
+        orderCount++;
+    }
+    
+    void removeSlot(int slot, long displayedQuantity, long hiddenQuantity) {
+        int prev = store.prev(slot);
+        int next = store.next(slot);
+        if (prev == OffHeapOrderStore.NONE) {
+            headSlot = next;
+        } else {
+            store.setNext(prev, next);
+        }
+        if (next == OffHeapOrderStore.NONE) {
+            tailSlot = prev;
+        } else {
+            store.setPrev(next, prev);
+        }
+        this.totalQuantity -= displayedQuantity;
+        this.hiddenQuantity -= hiddenQuantity;
+        orderCount--;
+    }
+    
+    void reduceQuantity(long displayedQuantity, long hiddenQuantity) {
+        this.totalQuantity -= displayedQuantity;
+        this.hiddenQuantity -= hiddenQuantity;
+    }
+    
+    public long getPrice() {
+        return price;
+    }
+    
+    /**
+     * Oldest order at this price; follow {@link BookOrder#getNext()} for the rest of the queue.
+     * In an off-heap book this is the book's shared view of the record, which has no
+     * successor link and is only valid until the next call into the book.
+     */
+    public BookOrder getHead() {
+        if (store != null) {
+            return headSlot == OffHeapOrderStore.NONE ? null : store.load(headSlot, this);
+        }
+        return head;
+    }
+    
+    /**
+     * Sum of the displayed open quantity of every order at this price, in quantity units.
+     */
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+    
+    /**
+     * Iceberg reserves at this price: matchable, but never shown.
+     */
+    public long getHiddenQuantity() {
+        return hiddenQuantity;
+    }
+    
+    public int getOrderCount() {
+        return orderCount;
+    }
+    
+    public boolean isEmpty() {
+        return store != null ? headSlot == OffHeapOrderStore.NONE : head == null;
+    }
+}
@@ -0,0 +1,27 @@
+package com.trading.domain;
+
+/**
+ * What happens when an aggressing order would trade with a resting order of its own
+ * account. The aggressor's mode decides.
+ */
+public enum SelfTradePrevention {
+    // Orders of one account may trade with each other
+    NONE,
+    // The aggressor's remainder is cancelled; the resting order stays
+    CANCEL_NEWEST,
+    // The resting order is cancelled and the aggressor matches on
+    CANCEL_OLDEST,
+    // Both are cancelled
+    CANCEL_BOTH,
+    // Both lose the smaller open quantity; an order left with nothing is cancelled
+    DECREMENT;
+    
+    public static SelfTradePrevention fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown self-trade prevention mode: " + name
+                                               + " (expected none, cancel-newest, cancel-oldest, cancel-both or decrement)");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.trading.domain;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Stop and stop-limit orders of one book waiting for a trade to reach their stop price.
+ * Each side maps stop prices to the stops at that price in arrival order. A trade
+ * releases the buy stops priced at or below it and the sell stops at or above it, so
+ * the released stops are always the near end of a side's map: releasing k stops costs
+ * O(log n) per distinct stop price plus O(k), and stops that are not triggered are
+ * never visited. Released stops queue in the order a moving price would have reached
+ * them, for the engine to match one after another; until then they stay indexed by
+ * order id, so a call phase that holds them back can still cancel, expire or snapshot them.
+ * Confined to the book's owning thread, like the book itself.
+ */
+final class StopBook {
+    
+    private final TreeMap<Long, ArrayDeque<BookOrder>> buyStops = new TreeMap<>();
+    private final NavigableMap<Long, ArrayDeque<BookOrder>> sellStops = new TreeMap<Long, ArrayDeque<BookOrder>>().descendingMap();
+    private final Map<String, BookOrder> orders = new HashMap<>();
+    private final ArrayDeque<BookOrder> triggered = new ArrayDeque<>();
+    
+    void add(BookOrder order) {
+        index(order);
+        stopsOf(order.getSide()).computeIfAbsent(order.getStopPrice(), price -> new ArrayDeque<>()).addLast(order);
+    }
+    
+    /**
+     * Queues a stop that is triggered on arrival behind those already released. An order
+     * already triggered, as a snapshot captures it, is queued as it is.
+     */
+    void addTriggered(BookOrder order) {
+        index(order);
+        if (order.isStop()) {
+            order.trigger();
+        }
+        triggered.addLast(order);
+    }
+    
+    private void index(BookOrder order) {
+        if (orders.putIfAbsent(order.getOrderId(), order) != null) {
+            throw new IllegalArgumentException("Stop order already waiting: " + order.getOrderId());
+        }
+    }
+    
+    BookOrder get(String orderId) {
+        return orders.get(orderId);
+    }
+    
+    // Linear in the stops sharing the order's stop price, or in the triggered queue
+    BookOrder remove(String orderId) {
+        BookOrder order = orders.remove(orderId);
+        if (order != null && !order.isStop()) {
+            triggered.remove(order);
+        } else if (order != null) {
+            NavigableMap<Long, ArrayDeque<BookOrder>> stops = stopsOf(order.getSide());
+            ArrayDeque<BookOrder> queue = stops.get(order.getStopPrice());
+            queue.remove(order);
+            if (queue.isEmpty()) {
+                stops.remove(order.getStopPrice());
+            }
+        }
+        return order;
+    }
+    
+    /**
+     * Moves every stop a trade at {@code tradePrice} reaches to the triggered queue:
+     * buy stops from the lowest stop price up, then sell stops from the highest down.
+     */
+    void release(long tradePrice) {
+        if (!orders.isEmpty()) {
+            release(buyStops.headMap(tradePrice, true));
+            release(sellStops.headMap(tradePrice, true));
+        }
+    }
+    
+    private void release(NavigableMap<Long, ArrayDeque<BookOrder>> reached) {
+        Map.Entry<Long, ArrayDeque<BookOrder>> entry;
+        while ((entry = reached.pollFirstEntry()) != null) {
+            for (BookOrder order : entry.getValue()) {
+                order.trigger();
+                triggered.addLast(order);
+            }
+        }
+    }
+    
+    BookOrder pollTriggered() {
+        BookOrder order = triggered.pollFirst();
+        if (order != null) {
+            orders.remove(order.getOrderId());
+        }
+        return order;
+    }
+    
+    /**
+     * Visits the waiting stops of both sides in trigger priority, then the triggered
+     * stops not yet handed out, in queue order.
+     */
+    void forEach(Consumer<BookOrder> action) {
+        buyStops.values().forEach(queue -> queue.forEach(action));
+        sellStops.values().forEach(queue -> queue.forEach(action));
+        triggered.forEach(action);
+    }
+    
+    int size() {
+        return orders.size();
+    }
+    
+    private NavigableMap<Long, ArrayDeque<BookOrder>> stopsOf(OrderSide side) {
+        return side == OrderSide.BUY ? buyStops : sellStops;
+    }
+}
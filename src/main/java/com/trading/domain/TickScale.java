@@ -0,0 +1,55 @@
+package com.trading.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point representation used inside the order book.
+ * Prices are whole ticks of the configured tick size and quantities are
+ * scaled to the precision of the quantity columns, so matching works on
+ * plain longs and BigDecimal only appears at the JPA, DTO and Kafka edges.
+ */
+public final class TickScale {
+    
+    // Matches the scale of the quantity columns on orders and trades
+    public static final int QUANTITY_SCALE = 4;
+    
+    public static final TickScale DEFAULT = new TickScale(new BigDecimal("0.01"));
+    
+    private final BigDecimal tickSize;
+    
+    public TickScale(BigDecimal tickSize) {
+        if (tickSize == null || tickSize.signum() <= 0) {
+            throw new IllegalArgumentException("Tick size must be positive: " + tickSize);
+        }
+        this.tickSize = tickSize.stripTrailingZeros();
+    }
+    
+    public long toTicks(BigDecimal price) {
+        try {
+            return price.divide(tickSize).setScale(0, RoundingMode.UNNECESSARY).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Price " + price + " is not a multiple of tick size " + tickSize.toPlainString());
+        }
+    }
+    
+    public BigDecimal toPrice(long ticks) {
+        return tickSize.multiply(BigDecimal.valueOf(ticks));
+    }
+    
+    public long toUnits(BigDecimal quantity) {
+        try {
+            return quantity.setScale(QUANTITY_SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Quantity " + quantity + " exceeds " + QUANTITY_SCALE + " decimal places");
+        }
+    }
+    
+    public BigDecimal toQuantity(long units) {
+        return BigDecimal.valueOf(units, QUANTITY_SCALE);
+    }
+    
+    public BigDecimal getTickSize() {
+        return tickSize;
+    }
+}
@@ -0,0 +1,14 @@
+package com.trading.domain;
+
+public enum TimeInForce {
+    // Good till cancelled
+    GTC,
+    // Expires at the close of the trading day it was entered on
+    DAY,
+    // Good till date: expires at the order's expiresAt
+    GTD,
+    // Immediate or cancel: matches what it can on arrival, the remainder is cancelled
+    IOC,
+    // Fill or kill: fills in full on arrival or is cancelled without trading
+    FOK
+}
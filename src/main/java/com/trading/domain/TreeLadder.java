@@ -0,0 +1,57 @@
+package com.trading.domain;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+
+/**
+ * Ladder over a sorted map: O(log n) per access but no bound on the price range.
+ */
+final class TreeLadder implements PriceLadder {
+    
+    private final TreeMap<Long, PriceLevel> levels;
+    private final LongFunction<PriceLevel> newLevel;
+    
+    // Bids are best-first in descending price, asks in ascending price
+    TreeLadder(boolean descending, LongFunction<PriceLevel> newLevel) {
+        this.levels = descending ? new TreeMap<>(Collections.reverseOrder()) : new TreeMap<>();
+        this.newLevel = newLevel;
+    }
+    
+    @Override
+    public PriceLevel get(long price) {
+        return levels.get(price);
+    }
+    
+    @Override
+    public PriceLevel getOrCreate(long price) {
+        PriceLevel level = levels.get(price);
+        if (level == null) {
+            level = newLevel.apply(price);
+            levels.put(price, level);
+        }
+        return level;
+    }
+    
+    @Override
+    public void remove(long price) {
+        levels.remove(price);
+    }
+    
+    @Override
+    public PriceLevel best() {
+        return levels.isEmpty() ? null : levels.firstEntry().getValue();
+    }
+    
+    @Override
+    public PriceLevel after(long price) {
+        Map.Entry<Long, PriceLevel> entry = levels.higherEntry(price);
+        return entry != null ? entry.getValue() : null;
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return levels.isEmpty();
+    }
+}
@@ -1,9 +1,11 @@
 package com.trading.dto;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 import com.trading.domain.OrderSide;
 import com.trading.domain.OrderType;
+import com.trading.domain.TimeInForce;
 
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
@@ -24,12 +26,25 @@ public class OrderRequest {
     @DecimalMin(value = "0.01", message = "Quantity must be greater than 0")
     private BigDecimal quantity;
     
-    // Price is required only for LIMIT orders
+    // Price is required only for LIMIT and STOP_LIMIT orders
     private BigDecimal price;
     
+    // Required only for STOP and STOP_LIMIT orders: the trade price that triggers the order
+    private BigDecimal stopPrice;
+    
     @NotBlank(message = "Account ID is required")
     private String accountId;
     
+    // Iceberg orders only: the quantity shown in the book at a time
+    @DecimalMin(value = "0.01", message = "Display quantity must be greater than 0")
+    private BigDecimal displayQuantity;
+    
+    // Defaults to GTC
+    private TimeInForce timeInForce;
+    
+    // Required only for GTD orders
+    private LocalDateTime expiresAt;
+    
     // Constructors
     public OrderRequest() {}
     
@@ -59,17 +74,46 @@ public class OrderRequest {
     public BigDecimal getPrice() { return price; }
     public void setPrice(BigDecimal price) { this.price = price; }
     
+    public BigDecimal getStopPrice() { return stopPrice; }
+    public void setStopPrice(BigDecimal stopPrice) { this.stopPrice = stopPrice; }
+    
     public String getAccountId() { return accountId; }
     public void setAccountId(String accountId) { this.accountId = accountId; }
     
+    public BigDecimal getDisplayQuantity() { return displayQuantity; }
+    public void setDisplayQuantity(BigDecimal displayQuantity) { this.displayQuantity = displayQuantity; }
+    
+    public TimeInForce getTimeInForce() { return timeInForce; }
+    public void setTimeInForce(TimeInForce timeInForce) { this.timeInForce = timeInForce; }
+    
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+    
     // Validation method
     public boolean isValid() {
-        // For LIMIT orders, price is required and must be positive
-        if (type == OrderType.LIMIT) {
+        // For LIMIT and STOP_LIMIT orders, price is required and must be positive
+        if (type == OrderType.LIMIT || type == OrderType.STOP_LIMIT) {
             if (price == null || price.compareTo(BigDecimal.ZERO) <= 0) {
                 return false;
             }
         }
+        // Stop orders need a positive stop price, and only stop orders take one
+        boolean stop = type == OrderType.STOP || type == OrderType.STOP_LIMIT;
+        if (stop != (stopPrice != null) || (stop && stopPrice.compareTo(BigDecimal.ZERO) <= 0)) {
+            return false;
+        }
+        // Icebergs must be limit orders showing less than their full quantity
+        if (displayQuantity != null) {
+            if (type != OrderType.LIMIT || quantity == null || displayQuantity.compareTo(quantity) >= 0) {
+                return false;
+            }
+        }
+        // For GTD orders, the expiry must be in the future
+        if (timeInForce == TimeInForce.GTD) {
+            if (expiresAt == null || !expiresAt.isAfter(LocalDateTime.now())) {
+                return false;
+            }
+        }
         return true;
     }
 }
@@ -7,6 +7,7 @@ import com.trading.domain.Order;
 import com.trading.domain.OrderSide;
 import com.trading.domain.OrderStatus;
 import com.trading.domain.OrderType;
+import com.trading.domain.TimeInForce;
 
 public class OrderResponse {
     
@@ -24,6 +25,10 @@ public class OrderResponse {
     private LocalDateTime updatedAt;
     private LocalDateTime filledAt;
     private String reason;
+    private BigDecimal displayQuantity;
+    private BigDecimal stopPrice;
+    private TimeInForce timeInForce;
+    private LocalDateTime expiresAt;
     
     public OrderResponse() {}
     
@@ -42,6 +47,10 @@ public class OrderResponse {
         this.updatedAt = order.getUpdatedAt();
         this.filledAt = order.getFilledAt();
         this.reason = order.getReason();
+        this.displayQuantity = order.getDisplayQuantity();
+        this.stopPrice = order.getStopPrice();
+        this.timeInForce = order.getTimeInForce();
+        this.expiresAt = order.getExpiresAt();
     }
     
     // Getters and Setters
@@ -86,4 +95,16 @@ public class OrderResponse {
     
     public String getReason() { return reason; }
     public void setReason(String reason) { this.reason = reason; }
+    
+    public BigDecimal getDisplayQuantity() { return displayQuantity; }
+    public void setDisplayQuantity(BigDecimal displayQuantity) { this.displayQuantity = displayQuantity; }
+    
+    public BigDecimal getStopPrice() { return stopPrice; }
+    public void setStopPrice(BigDecimal stopPrice) { this.stopPrice = stopPrice; }
+    
+    public TimeInForce getTimeInForce() { return timeInForce; }
+    public void setTimeInForce(TimeInForce timeInForce) { this.timeInForce = timeInForce; }
+    
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
 }
@@ -0,0 +1,157 @@
+package com.trading.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderStatus;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+import com.trading.domain.TimeInForce;
+
+/**
+ * Point-in-time copy of one order book: its resting orders in priority order, its
+ * waiting stop orders and the triggered ones a call phase holds back, the last trade price they are triggered against, whether it
+ * is in a call auction and the journal sequence of the last input it had applied. Level queues and aggregates
+ * are rebuilt by re-adding the orders in the captured order.
+ */
+public final class BookSnapshot {
+    
+    private final String symbol;
+    private final long lastSequence;
+    private final long lastTradePrice;
+    private final boolean inAuction;
+    private final List<Entry> orders;
+    
+    BookSnapshot(String symbol, long lastSequence, long lastTradePrice, boolean inAuction, List<Entry> orders) {
+        this.symbol = symbol;
+        this.lastSequence = lastSequence;
+        this.lastTradePrice = lastTradePrice;
+        this.inAuction = inAuction;
+        this.orders = orders;
+    }
+    
+    /**
+     * Copies the book. Must run on the thread that owns it; this is the only part of
+     * a snapshot that pauses matching, and it costs one small copy per resting order.
+     */
+    public static BookSnapshot capture(OrderBook orderBook, IdTable accounts, IdTable owners) {
+        List<Entry> orders = new ArrayList<>(orderBook.getTotalBidOrders() + orderBook.getTotalAskOrders()
+                                             + orderBook.getStopCount());
+        orderBook.forEachOrder(OrderSide.BUY, order -> orders.add(new Entry(order, accounts, owners, false)));
+        orderBook.forEachOrder(OrderSide.SELL, order -> orders.add(new Entry(order, accounts, owners, false)));
+        // A triggered stop held back by a call phase has become a market or limit order
+        orderBook.forEachStop(order -> orders.add(new Entry(order, accounts, owners, !order.isStop())));
+        return new BookSnapshot(orderBook.getSymbol(), orderBook.getLastSequence(), orderBook.getLastTradePrice(),
+                                orderBook.isInAuction(), orders);
+    }
+    
+    /**
+     * Rebuilds the book, interning its symbol, accounts and owners into the engine's id tables.
+     */
+    public OrderBook restore(TickScale tickScale, IdTable symbols, IdTable accounts, IdTable owners) {
+        return restoreInto(new OrderBook(symbol, tickScale), symbols, accounts, owners);
+    }
+    
+    /**
+     * Rebuilds the book into an empty {@code orderBook}, which decides the storage mode.
+     */
+    public OrderBook restoreInto(OrderBook orderBook, IdTable symbols, IdTable accounts, IdTable owners) {
+        int symbolId = symbols.idOf(symbol);
+        // Set first, so the captured stops wait again rather than triggering on restore
+        orderBook.setLastTradePrice(lastTradePrice);
+        orderBook.setInAuction(inAuction);
+        for (Entry entry : orders) {
+            BookOrder order = entry.toBookOrder(symbolId, accounts, owners);
+            if (entry.triggered) {
+                orderBook.addTriggeredStop(order);
+            } else if (order.isStop()) {
+                orderBook.addStop(order);
+            } else {
+                orderBook.addOrder(order);
+            }
+        }
+        orderBook.setLastSequence(lastSequence);
+        return orderBook;
+    }
+    
+    public String getSymbol() { return symbol; }
+    
+    public long getLastSequence() { return lastSequence; }
+    
+    public long getLastTradePrice() { return lastTradePrice; }
+    
+    public boolean isInAuction() { return inAuction; }
+    
+    public List<Entry> getOrders() { return orders; }
+    
+    /**
+     * One resting or waiting stop order, in ticks and quantity units.
+     */
+    static final class Entry {
+        
+        final String orderId;
+        final String accountId;
+        // Username of the order's owner, null when it has none
+        final String owner;
+        final OrderSide side;
+        final OrderType type;
+        final OrderStatus status;
+        final long price;
+        final long quantity;
+        final long filledQuantity;
+        final long createdAt;
+        final long expiresAt;
+        final long displayQuantity;
+        final long hiddenQuantity;
+        final long stopPrice;
+        final TimeInForce timeInForce;
+        // A stop already triggered and queued for matching, not resting in a level
+        final boolean triggered;
+        
+        Entry(String orderId, String accountId, String owner, OrderSide side, OrderType type, OrderStatus status,
+              long price, long quantity, long filledQuantity, long createdAt, long expiresAt,
+              long displayQuantity, long hiddenQuantity, long stopPrice, TimeInForce timeInForce, boolean triggered) {
+            this.orderId = orderId;
+            this.accountId = accountId;
+            this.owner = owner;
+            this.side = side;
+            this.type = type;
+            this.status = status;
+            this.price = price;
+            this.quantity = quantity;
+            this.filledQuantity = filledQuantity;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+            this.displayQuantity = displayQuantity;
+            this.hiddenQuantity = hiddenQuantity;
+            this.stopPrice = stopPrice;
+            this.timeInForce = timeInForce;
+            this.triggered = triggered;
+        }
+        
+        Entry(BookOrder order, IdTable accounts, IdTable owners, boolean triggered) {
+            this(order.getOrderId(), accounts.nameOf(order.getAccountId()), owners.nameOf(order.getOwnerId()),
+                 order.getSide(), order.getType(),
+                 order.getFilledQuantity() > 0 ? OrderStatus.PARTIALLY_FILLED : OrderStatus.PENDING,
+                 order.getPrice(), order.getQuantity(), order.getFilledQuantity(), order.getCreatedAt(),
+                 order.getExpiresAt(), order.getDisplayQuantity(), order.getHiddenQuantity(),
+                 order.getStopPrice(), order.getTimeInForce(), triggered);
+        }
+        
+        BookOrder toBookOrder(int symbolId, IdTable accounts, IdTable owners) {
+            BookOrder order = new BookOrder(orderId, side, type, price, quantity, filledQuantity);
+            order.setIds(symbolId, accounts.idOf(accountId), owners.idOf(owner));
+            order.setCreatedAt(createdAt);
+            order.setExpiresAt(expiresAt);
+            // An iceberg keeps its reserve as captured, not a freshly cut slice
+            order.setDisplayQuantity(displayQuantity);
+            order.setHiddenQuantity(hiddenQuantity);
+            order.setStopPrice(stopPrice);
+            order.setTimeInForce(timeInForce);
+            return order;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.trading.engine;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.trading.domain.OrderBook;
+
+/**
+ * Immutable aggregated depth view of one book, in the shape the order book endpoint
+ * returns. Built on the book's owning thread by the matching engine, at a bounded
+ * rate, and served to any number of readers as is.
+ */
+public final class DepthSnapshot {
+    
+    private final String symbol;
+    private final long version;
+    private final long builtAt;
+    private final String etag;
+    private final Map<String, Object> data;
+    
+    private DepthSnapshot(String symbol, long version, long builtAt, String etag, Map<String, Object> data) {
+        this.symbol = symbol;
+        this.version = version;
+        this.builtAt = builtAt;
+        this.etag = etag;
+        this.data = data;
+    }
+    
+    /**
+     * @param etagPrefix distinguishes engine runs, since book versions restart at zero
+     */
+    public static DepthSnapshot capture(OrderBook orderBook, int levels, String etagPrefix) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("symbol", orderBook.getSymbol());
+        data.put("bestBid", orderBook.getBestBid());
+        data.put("bestAsk", orderBook.getBestAsk());
+        data.put("spread", orderBook.getSpread());
+        data.put("bidLevels", orderBook.getBidLevels(levels));
+        data.put("askLevels", orderBook.getAskLevels(levels));
+        data.put("totalBidOrders", orderBook.getTotalBidOrders());
+        data.put("totalAskOrders", orderBook.getTotalAskOrders());
+        
+        String etag = "\"" + etagPrefix + "-" + orderBook.getSymbol() + "-" + orderBook.getVersion() + "\"";
+        return new DepthSnapshot(orderBook.getSymbol(), orderBook.getVersion(), System.currentTimeMillis(),
+                                 etag, Collections.unmodifiableMap(data));
+    }
+    
+    /**
+     * True if an If-None-Match header value names this snapshot.
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public String getSymbol() { return symbol; }
+    
+    // The book version this snapshot was built from
+    public long getVersion() { return version; }
+    
+    public long getBuiltAt() { return builtAt; }
+    
+    public String getEtag() { return etag; }
+    
+    public Map<String, Object> getData() { return data; }
+}
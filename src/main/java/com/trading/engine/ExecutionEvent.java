@@ -0,0 +1,161 @@
+package com.trading.engine;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.OrderSide;
+
+/**
+ * Reusable entry of an {@link ExecutionQueue}: one thing the matching thread did that
+ * persistence and the downstream feeds still have to hear about. Order state is
+ * copied out of the book entries, so an entry stays valid after they are recycled.
+ * Prices are in ticks, quantities in scaled units and names are {@link IdTable} ids;
+ * nothing here is converted or allocated on the matching thread.
+ */
+public final class ExecutionEvent {
+    
+    public enum Type {
+        // A fill between the aggressing order and a resting order
+        FILL,
+        // The aggressing order has finished matching, resting or not, or a resting order was cancelled
+        ORDER_DONE,
+        // A resting order took a new price or quantity; fills of a repriced order precede it
+        AMENDED,
+        // A resting order reached the end of its time in force and left the book
+        EXPIRED,
+        // A fill of an auction uncross between two resting orders, the buy order as the aggressor
+        AUCTION_FILL,
+        // An auction uncross has finished; its fills are persisted and published together
+        UNCROSS_DONE
+    }
+    
+    long sequence;
+    private Type type;
+    private int symbolId;
+    private long price;
+    private long quantity;
+    private long tradeSequence;
+    private long timestamp;
+    private String reason;
+    private final OrderState order = new OrderState();
+    private final OrderState resting = new OrderState();
+    
+    public void setFill(BookOrder aggressor, BookOrder restingOrder, long quantity, long price,
+                        long tradeSequence, long timestamp) {
+        this.type = Type.FILL;
+        this.symbolId = aggressor.getSymbolId();
+        this.order.copy(aggressor);
+        this.resting.copy(restingOrder);
+        this.quantity = quantity;
+        this.price = price;
+        this.tradeSequence = tradeSequence;
+        this.timestamp = timestamp;
+    }
+    
+    public void setAuctionFill(BookOrder buy, BookOrder sell, long quantity, long price,
+                               long tradeSequence, long timestamp) {
+        setFill(buy, sell, quantity, price, tradeSequence, timestamp);
+        this.type = Type.AUCTION_FILL;
+    }
+    
+    public void setUncrossDone(int symbolId, long timestamp) {
+        this.type = Type.UNCROSS_DONE;
+        this.symbolId = symbolId;
+        this.timestamp = timestamp;
+    }
+    
+    /**
+     * {@code reason} is set when the remainder of the order was cancelled rather than rested.
+     */
+    public void setOrderDone(BookOrder aggressor, String reason, long timestamp) {
+        this.type = Type.ORDER_DONE;
+        this.symbolId = aggressor.getSymbolId();
+        this.order.copy(aggressor);
+        this.reason = reason;
+        this.timestamp = timestamp;
+    }
+    
+    /**
+     * The order's new terms: {@link #getPrice()} is its limit price and the order state
+     * carries its new quantity, after any fills the amendment triggered.
+     */
+    public void setAmended(BookOrder amended, long timestamp) {
+        this.type = Type.AMENDED;
+        this.symbolId = amended.getSymbolId();
+        this.order.copy(amended);
+        this.price = amended.getPrice();
+        this.timestamp = timestamp;
+    }
+    
+    public void setExpired(BookOrder expired, long timestamp) {
+        this.type = Type.EXPIRED;
+        this.symbolId = expired.getSymbolId();
+        this.order.copy(expired);
+        this.reason = "Order expired";
+        this.timestamp = timestamp;
+    }
+    
+    void clear() {
+        type = null;
+        reason = null;
+        order.orderId = null;
+        resting.orderId = null;
+    }
+    
+    public Type getType() { return type; }
+    
+    public int getSymbolId() { return symbolId; }
+    
+    // The aggressing order, after this fill
+    public OrderState getOrder() { return order; }
+    
+    // FILL only: the resting order, after this fill
+    public OrderState getResting() { return resting; }
+    
+    // FILL: the execution price; AMENDED: the order's new limit price
+    public long getPrice() { return price; }
+    
+    public long getQuantity() { return quantity; }
+    
+    public long getTradeSequence() { return tradeSequence; }
+    
+    public long getTimestamp() { return timestamp; }
+    
+    public String getReason() { return reason; }
+    
+    /**
+     * An order's identity and fill state as of the event.
+     */
+    public static final class OrderState {
+        
+        private String orderId;
+        private OrderSide side;
+        private int accountId;
+        private int ownerId;
+        private long quantity;
+        private long filledQuantity;
+        
+        void copy(BookOrder bookOrder) {
+            this.orderId = bookOrder.getOrderId();
+            this.side = bookOrder.getSide();
+            this.accountId = bookOrder.getAccountId();
+            this.ownerId = bookOrder.getOwnerId();
+            this.quantity = bookOrder.getQuantity();
+            this.filledQuantity = bookOrder.getFilledQuantity();
+        }
+        
+        public String getOrderId() { return orderId; }
+        
+        public OrderSide getSide() { return side; }
+        
+        public int getAccountId() { return accountId; }
+        
+        public int getOwnerId() { return ownerId; }
+        
+        public long getQuantity() { return quantity; }
+        
+        public long getFilledQuantity() { return filledQuantity; }
+        
+        public boolean isFullyFilled() {
+            return filledQuantity >= quantity;
+        }
+    }
+}
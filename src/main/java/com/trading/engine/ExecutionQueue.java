@@ -0,0 +1,86 @@
+package com.trading.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands executions from matching threads to a publisher thread through a
+ * {@link RingBuffer} of preallocated {@link ExecutionEvent}s. The matching thread
+ * only copies references and longs into an entry; everything that allocates (trade
+ * entities, BigDecimal mirrors on the JPA orders, persistence and Kafka payloads)
+ * runs in the handler on the publisher thread, in the order events were published.
+ * A full queue makes the matching thread wait, like the persistence queue does.
+ */
+public class ExecutionQueue {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ExecutionQueue.class);
+    
+    private final RingBuffer<ExecutionEvent> ring;
+    private final Consumer<ExecutionEvent> handler;
+    private final Thread publisherThread;
+    private volatile boolean running = true;
+    private final BooleanSupplier isRunning = () -> running;
+    
+    public ExecutionQueue(String name, int size, WaitStrategy waitStrategy, Consumer<ExecutionEvent> handler) {
+        this.ring = new RingBuffer<>(size, ExecutionEvent::new, waitStrategy);
+        this.handler = handler;
+        this.publisherThread = new Thread(this::publishLoop, name);
+        this.publisherThread.setDaemon(true);
+        this.publisherThread.start();
+    }
+    
+    /**
+     * Claims the next entry, waiting while the queue is full. Fill it, then {@link #publish} it.
+     */
+    public ExecutionEvent claim() {
+        long sequence = ring.claim();
+        ExecutionEvent event = ring.get(sequence);
+        event.sequence = sequence;
+        return event;
+    }
+    
+    public void publish(ExecutionEvent event) {
+        ring.publish(event.sequence);
+    }
+    
+    private void publishLoop() {
+        long next = 0L;
+        while (true) {
+            if (!ring.waitFor(next, isRunning)) {
+                // Shut down: stop once everything already claimed has been handled
+                if (ring.getBacklog() == 0L) {
+                    return;
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            
+            ExecutionEvent event = ring.get(next);
+            try {
+                handler.accept(event);
+            } catch (RuntimeException e) {
+                logger.error("{} failed to publish a {} event", publisherThread.getName(), event.getType(), e);
+            }
+            event.clear();
+            ring.release(next);
+            next++;
+        }
+    }
+    
+    public long getBacklog() {
+        return ring.getBacklog();
+    }
+    
+    public void shutdown() {
+        running = false;
+    }
+    
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        publisherThread.join(unit.toMillis(timeout));
+        return !publisherThread.isAlive();
+    }
+}
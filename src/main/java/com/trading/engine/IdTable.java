@@ -0,0 +1,50 @@
+package com.trading.engine;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns names (symbols, accounts, users) as dense int ids, so book entries can
+ * refer to them in four bytes instead of holding strings or entities. Ids are never
+ * reused and 0 stands for no name. Lookups of names already interned take no lock.
+ */
+public final class IdTable {
+    
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private int nextId = 1;
+    
+    public int idOf(String name) {
+        if (name == null) {
+            return 0;
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : intern(name);
+    }
+    
+    private synchronized int intern(String name) {
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        int id = nextId++;
+        String[] current = names;
+        if (id >= current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[id] = name;
+        // Publish the name before the id can be handed out
+        names = current;
+        ids.put(name, id);
+        return id;
+    }
+    
+    public String nameOf(int id) {
+        return id == 0 ? null : names[id];
+    }
+    
+    public int size() {
+        return nextId - 1;
+    }
+}
@@ -0,0 +1,142 @@
+package com.trading.engine;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.PriceLevel;
+import com.trading.domain.TickScale;
+
+/**
+ * Immutable equilibrium of a book in its call auction phase: the single price at which
+ * uncrossing now would execute the most volume, that volume, and the imbalance left at
+ * that price. Published by the matching engine after every event while the phase lasts.
+ * The price maximises executable volume, then minimises the imbalance, then lies
+ * closest to the last trade price; any remaining tie goes to the lowest price.
+ * Computed from level aggregates, hidden reserves included, over the crossed levels
+ * only, so each update costs O(crossed levels) however many orders they hold.
+ */
+public final class IndicativeUncross {
+    
+    private final String symbol;
+    private final TickScale tickScale;
+    final long price;
+    final long volume;
+    private final long imbalance;
+    private final long sequence;
+    private final long timestamp;
+    
+    private IndicativeUncross(String symbol, TickScale tickScale, long price, long volume, long imbalance,
+                              long sequence, long timestamp) {
+        this.symbol = symbol;
+        this.tickScale = tickScale;
+        this.price = price;
+        this.volume = volume;
+        this.imbalance = imbalance;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+    }
+    
+    /**
+     * Computes the equilibrium of {@code orderBook}, returning {@code previous} itself when
+     * it has not moved so unchanged events allocate nothing. Must run on the book's owning thread.
+     */
+    public static IndicativeUncross of(OrderBook orderBook, IndicativeUncross previous) {
+        PriceLevel bestBid = orderBook.getBestBidLevel();
+        PriceLevel bestAsk = orderBook.getBestAskLevel();
+        if (bestBid == null || bestAsk == null || bestBid.getPrice() < bestAsk.getPrice()) {
+            return result(orderBook, previous, 0L, 0L, 0L);
+        }
+        
+        // Crossed levels: bids down to the best ask, best first, and asks up to the best bid
+        long[] bids = crossedLevels(orderBook, OrderSide.BUY, bestBid, bestAsk.getPrice());
+        long[] asks = crossedLevels(orderBook, OrderSide.SELL, bestAsk, bestBid.getPrice());
+        long demand = 0L;
+        for (int i = 1; i < bids.length; i += 2) {
+            demand += bids[i];
+        }
+        
+        // Candidate prices in ascending order: asks join the supply at their price, bids
+        // leave the demand just above theirs
+        long reference = orderBook.getLastTradePrice();
+        long supply = 0L;
+        long bestPrice = 0L;
+        long bestVolume = -1L;
+        long bestImbalance = 0L;
+        int a = 0;
+        int b = bids.length - 2;
+        while (a < asks.length || b >= 0) {
+            long candidate = b < 0 || (a < asks.length && asks[a] <= bids[b]) ? asks[a] : bids[b];
+            if (a < asks.length && asks[a] == candidate) {
+                supply += asks[a + 1];
+                a += 2;
+            }
+            
+            long volume = Math.min(demand, supply);
+            long imbalance = demand - supply;
+            if (volume > bestVolume
+                    || volume == bestVolume && (Math.abs(imbalance) < Math.abs(bestImbalance)
+                        || Math.abs(imbalance) == Math.abs(bestImbalance) && reference != 0
+                           && Math.abs(candidate - reference) < Math.abs(bestPrice - reference))) {
+                bestPrice = candidate;
+                bestVolume = volume;
+                bestImbalance = imbalance;
+            }
+            
+            if (b >= 0 && bids[b] == candidate) {
+                demand -= bids[b + 1];
+                b -= 2;
+            }
+        }
+        return result(orderBook, previous, bestPrice, bestVolume, bestImbalance);
+    }
+    
+    // Price and total quantity pairs of one side's levels from best to the last one crossing limitPrice
+    private static long[] crossedLevels(OrderBook orderBook, OrderSide side, PriceLevel best, long limitPrice) {
+        long[] levels = new long[8];
+        int count = 0;
+        for (PriceLevel level = best; level != null; level = orderBook.getLevelAfter(side, level.getPrice())) {
+            if (side == OrderSide.BUY ? level.getPrice() < limitPrice : level.getPrice() > limitPrice) {
+                break;
+            }
+            if (count == levels.length) {
+                levels = Arrays.copyOf(levels, count * 2);
+            }
+            levels[count++] = level.getPrice();
+            levels[count++] = level.getTotalQuantity() + level.getHiddenQuantity();
+        }
+        return Arrays.copyOf(levels, count);
+    }
+    
+    private static IndicativeUncross result(OrderBook orderBook, IndicativeUncross previous, long price, long volume,
+                                            long imbalance) {
+        if (previous != null && previous.price == price && previous.volume == volume && previous.imbalance == imbalance) {
+            return previous;
+        }
+        long sequence = previous != null ? previous.sequence + 1 : 1L;
+        return new IndicativeUncross(orderBook.getSymbol(), orderBook.getTickScale(), price, volume, imbalance,
+                                     sequence, System.currentTimeMillis());
+    }
+    
+    public String getSymbol() { return symbol; }
+    
+    // Whether uncrossing now would trade at all
+    public boolean isCrossed() { return volume > 0; }
+    
+    public BigDecimal getPrice() { return isCrossed() ? tickScale.toPrice(price) : null; }
+    
+    public BigDecimal getVolume() { return tickScale.toQuantity(volume); }
+    
+    // Quantity left unmatched at the price, on the side named by getImbalanceSide()
+    public BigDecimal getImbalance() { return tickScale.toQuantity(Math.abs(imbalance)); }
+    
+    public OrderSide getImbalanceSide() {
+        return imbalance > 0 ? OrderSide.BUY : imbalance < 0 ? OrderSide.SELL : null;
+    }
+    
+    // Increments each time the equilibrium changes
+    public long getSequence() { return sequence; }
+    
+    public long getTimestamp() { return timestamp; }
+}
@@ -0,0 +1,412 @@
+package com.trading.engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.trading.domain.Order;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.TimeInForce;
+import com.trading.entity.User;
+
+/**
+ * Append-only journal of sequenced matching engine inputs, written to memory-mapped
+ * segment files before each input is processed. Replaying it in sequence order
+ * deterministically rebuilds every order book.
+ *
+ * Record layout: [int bodyLength][int crc32(body)][body]; body starts with
+ * [long sequence][byte type]. The length is written last, so a record torn by a
+ * crash reads as zero length and marks the end of the journal.
+ */
+public class InputJournal implements AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(InputJournal.class);
+    
+    static final byte NEW_ORDER = 1;
+    static final byte AMEND = 2;
+    static final byte CANCEL = 3;
+    static final byte AUCTION_START = 4;
+    static final byte UNCROSS = 5;
+    
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    
+    private final Path directory;
+    private final int segmentSize;
+    private final int syncEveryRecords;
+    private final CRC32 appendCrc = new CRC32();
+    
+    private MappedByteBuffer segment;
+    private FileChannel segmentChannel;
+    private long lastSequence;
+    private int unsyncedRecords;
+    
+    /**
+     * @param syncEveryRecords force the segment to disk after this many appends; 0 leaves
+     *                         flushing to {@link #sync()} callers and the operating system
+     */
+    public InputJournal(Path directory, int segmentSize, int syncEveryRecords) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncEveryRecords = syncEveryRecords;
+        
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = listSegments();
+            if (segments.isEmpty()) {
+                openSegment(1L);
+            } else {
+                // Re-open the newest segment and position after its last complete record
+                Path newest = segments.get(segments.size() - 1);
+                mapSegment(newest);
+                lastSequence = scan(segment, 0L, null);
+                if (lastSequence == 0L) {
+                    lastSequence = firstSequenceOf(newest) - 1;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open journal in " + directory, e);
+        }
+    }
+    
+    public synchronized long appendNewOrder(Order order) {
+        byte[] orderId = bytes(order.getOrderId());
+        byte[] symbol = bytes(order.getSymbol());
+        byte[] accountId = bytes(order.getAccountId());
+        byte[] username = bytes(order.getUser() != null ? order.getUser().getUsername() : null);
+        int size = 9 + 2 + orderId.length + 2 + symbol.length + 2 + accountId.length + 2 + username.length
+                 + 1 + 1 + decimalSize() * 4 + 8 + 1 + 8;
+        
+        MappedByteBuffer buffer = beginRecord(size, NEW_ORDER);
+        putBytes(buffer, orderId);
+        putBytes(buffer, symbol);
+        putBytes(buffer, accountId);
+        putBytes(buffer, username);
+        buffer.put((byte) order.getSide().ordinal());
+        buffer.put((byte) order.getType().ordinal());
+        putDecimal(buffer, order.getPrice());
+        putDecimal(buffer, order.getQuantity());
+        buffer.putLong(order.getCreatedAt() != null ? order.getCreatedAt().toInstant(ZoneOffset.UTC).toEpochMilli() : 0L);
+        buffer.put((byte) order.getTimeInForce().ordinal());
+        buffer.putLong(order.getExpiresAt() != null ? order.getExpiresAt().toInstant(ZoneOffset.UTC).toEpochMilli() : 0L);
+        putDecimal(buffer, order.getDisplayQuantity());
+        putDecimal(buffer, order.getStopPrice());
+        return endRecord(size);
+    }
+    
+    public synchronized long appendAmend(String orderId, String symbol, BigDecimal price, BigDecimal quantity) {
+        byte[] orderIdBytes = bytes(orderId);
+        byte[] symbolBytes = bytes(symbol);
+        int size = 9 + 2 + orderIdBytes.length + 2 + symbolBytes.length + decimalSize() * 2;
+        
+        MappedByteBuffer buffer = beginRecord(size, AMEND);
+        putBytes(buffer, orderIdBytes);
+        putBytes(buffer, symbolBytes);
+        putDecimal(buffer, price);
+        putDecimal(buffer, quantity);
+        return endRecord(size);
+    }
+    
+    public synchronized long appendCancel(String orderId, String symbol) {
+        byte[] orderIdBytes = bytes(orderId);
+        byte[] symbolBytes = bytes(symbol);
+        int size = 9 + 2 + orderIdBytes.length + 2 + symbolBytes.length;
+        
+        MappedByteBuffer buffer = beginRecord(size, CANCEL);
+        putBytes(buffer, orderIdBytes);
+        putBytes(buffer, symbolBytes);
+        return endRecord(size);
+    }
+    
+    /**
+     * Records that {@code symbol} entered its call auction phase.
+     */
+    public synchronized long appendAuctionStart(String symbol) {
+        return appendPhase(AUCTION_START, symbol);
+    }
+    
+    /**
+     * Records the uncross that ends {@code symbol}'s call auction phase.
+     */
+    public synchronized long appendUncross(String symbol) {
+        return appendPhase(UNCROSS, symbol);
+    }
+    
+    // Phase records have no order: an empty order id keeps the common record prefix
+    private long appendPhase(byte type, String symbol) {
+        byte[] symbolBytes = bytes(symbol);
+        int size = 9 + 2 + 2 + symbolBytes.length;
+        
+        MappedByteBuffer buffer = beginRecord(size, type);
+        putBytes(buffer, new byte[0]);
+        putBytes(buffer, symbolBytes);
+        return endRecord(size);
+    }
+    
+    /**
+     * Forces everything appended so far to disk.
+     */
+    public void sync() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            current = segment;
+            unsyncedRecords = 0;
+        }
+        current.force();
+    }
+    
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+    
+    /**
+     * Replays every complete record with a sequence above {@code afterSequence}, in order.
+     * Returns the last sequence seen.
+     */
+    public long replay(long afterSequence, Handler handler) {
+        long last = afterSequence;
+        try {
+            for (Path path : listSegments()) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    long segmentLast = scan(buffer, afterSequence, handler);
+                    last = Math.max(last, segmentLast);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay journal in " + directory, e);
+        }
+        return last;
+    }
+    
+    @Override
+    public synchronized void close() {
+        if (segment != null) {
+            segment.force();
+        }
+        closeChannel();
+    }
+    
+    private MappedByteBuffer beginRecord(int bodySize, byte type) {
+        if (segment.remaining() < HEADER_SIZE + bodySize + HEADER_SIZE) {
+            rollSegment();
+        }
+        int start = segment.position();
+        segment.position(start + HEADER_SIZE);
+        segment.putLong(lastSequence + 1);
+        segment.put(type);
+        return segment;
+    }
+    
+    private long endRecord(int bodySize) {
+        int bodyStart = segment.position() - bodySize;
+        int recordStart = bodyStart - HEADER_SIZE;
+        
+        appendCrc.reset();
+        appendCrc.update(segment.duplicate().position(bodyStart).limit(bodyStart + bodySize));
+        segment.putInt(recordStart + 4, (int) appendCrc.getValue());
+        // Publishing the length makes the record visible to replay
+        segment.putInt(recordStart, bodySize);
+        
+        lastSequence++;
+        if (syncEveryRecords > 0 && ++unsyncedRecords >= syncEveryRecords) {
+            segment.force();
+            unsyncedRecords = 0;
+        }
+        return lastSequence;
+    }
+    
+    /**
+     * Walks complete records from the start of {@code buffer}, leaving its position after
+     * the last valid one, and hands those above {@code afterSequence} to the handler.
+     */
+    private long scan(MappedByteBuffer buffer, long afterSequence, Handler handler) {
+        long last = 0L;
+        CRC32 crc = new CRC32();
+        buffer.position(0);
+        
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            int bodySize = buffer.getInt(start);
+            if (bodySize <= 0 || bodySize > buffer.limit() - start - HEADER_SIZE) {
+                break;
+            }
+            
+            crc.reset();
+            crc.update(buffer.duplicate().position(start + HEADER_SIZE).limit(start + HEADER_SIZE + bodySize));
+            if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+                logger.warn("Journal record at offset {} failed its checksum; treating it as the end", start);
+                break;
+            }
+            
+            buffer.position(start + HEADER_SIZE);
+            long sequence = buffer.getLong();
+            byte type = buffer.get();
+            if (handler != null && sequence > afterSequence) {
+                dispatch(buffer, sequence, type, handler);
+            }
+            buffer.position(start + HEADER_SIZE + bodySize);
+            last = sequence;
+        }
+        return last;
+    }
+    
+    private void dispatch(MappedByteBuffer buffer, long sequence, byte type, Handler handler) {
+        String orderId = getString(buffer);
+        String symbol = getString(buffer);
+        
+        switch (type) {
+            case NEW_ORDER:
+                String accountId = getString(buffer);
+                String username = getString(buffer);
+                OrderSide side = OrderSide.values()[buffer.get()];
+                OrderType orderType = OrderType.values()[buffer.get()];
+                BigDecimal price = getDecimal(buffer);
+                BigDecimal quantity = getDecimal(buffer);
+                long createdAt = buffer.getLong();
+                TimeInForce timeInForce = TimeInForce.values()[buffer.get()];
+                long expiresAt = buffer.getLong();
+                BigDecimal displayQuantity = getDecimal(buffer);
+                BigDecimal stopPrice = getDecimal(buffer);
+                Order order = new Order(orderId, symbol, side, orderType, quantity, price, accountId);
+                order.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(createdAt), ZoneOffset.UTC));
+                order.setTimeInForce(timeInForce);
+                order.setDisplayQuantity(displayQuantity);
+                order.setStopPrice(stopPrice);
+                if (expiresAt != 0L) {
+                    order.setExpiresAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAt), ZoneOffset.UTC));
+                }
+                if (!username.isEmpty()) {
+                    // Only the username is journalled: all the engine needs to route the order's status events
+                    User user = new User();
+                    user.setUsername(username);
+                    order.setUser(user);
+                }
+                handler.onNewOrder(sequence, order);
+                break;
+            case AMEND:
+                handler.onAmend(sequence, orderId, symbol, getDecimal(buffer), getDecimal(buffer));
+                break;
+            case CANCEL:
+                handler.onCancel(sequence, orderId, symbol);
+                break;
+            case AUCTION_START:
+                handler.onAuctionStart(sequence, symbol);
+                break;
+            case UNCROSS:
+                handler.onUncross(sequence, symbol);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type + " at sequence " + sequence);
+        }
+    }
+    
+    private void rollSegment() {
+        segment.force();
+        closeChannel();
+        try {
+            openSegment(lastSequence + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll journal segment", e);
+        }
+    }
+    
+    private void openSegment(long firstSequence) throws IOException {
+        mapSegment(directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX)));
+    }
+    
+    private void mapSegment(Path path) throws IOException {
+        segmentChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, segmentChannel.size()));
+    }
+    
+    private void closeChannel() {
+        try {
+            if (segmentChannel != null) {
+                segmentChannel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to close journal segment", e);
+        }
+    }
+    
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            files.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)).sorted().forEach(segments::add);
+            return segments;
+        }
+    }
+    
+    private long firstSequenceOf(Path segmentPath) {
+        String name = segmentPath.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    private static byte[] bytes(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+    
+    private static void putBytes(MappedByteBuffer buffer, byte[] value) {
+        buffer.putShort((short) value.length);
+        buffer.put(value);
+    }
+    
+    private static String getString(MappedByteBuffer buffer) {
+        byte[] value = new byte[buffer.getShort()];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+    
+    private static int decimalSize() {
+        return 1 + 8 + 4;
+    }
+    
+    private static void putDecimal(MappedByteBuffer buffer, BigDecimal value) {
+        buffer.put((byte) (value != null ? 1 : 0));
+        buffer.putLong(value != null ? value.unscaledValue().longValueExact() : 0L);
+        buffer.putInt(value != null ? value.scale() : 0);
+    }
+    
+    private static BigDecimal getDecimal(MappedByteBuffer buffer) {
+        boolean present = buffer.get() == 1;
+        long unscaled = buffer.getLong();
+        int scale = buffer.getInt();
+        return present ? new BigDecimal(BigInteger.valueOf(unscaled), scale) : null;
+    }
+    
+    /**
+     * Receives journal records during {@link #replay}.
+     */
+    public interface Handler {
+        
+        void onNewOrder(long sequence, Order order);
+        
+        void onAmend(long sequence, String orderId, String symbol, BigDecimal price, BigDecimal quantity);
+        
+        void onCancel(long sequence, String orderId, String symbol);
+        
+        void onAuctionStart(long sequence, String symbol);
+        
+        void onUncross(long sequence, String symbol);
+    }
+}
@@ -0,0 +1,96 @@
+package com.trading.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.trading.domain.LevelListener;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.PriceLevel;
+import com.trading.domain.TickScale;
+
+/**
+ * Turns level changes on one book into sequenced L2 updates. Levels touched during
+ * an engine event are collected and compared against the sizes last published, so
+ * each level yields at most one update per event however many fills hit it.
+ * Confined to the book's owning thread.
+ */
+public class L2BookTracker implements LevelListener {
+    
+    private final OrderBook orderBook;
+    private final TickScale tickScale;
+    private final Map<Long, Long> publishedBids = new HashMap<>();
+    private final Map<Long, Long> publishedAsks = new HashMap<>();
+    private final Set<Long> touchedBids = new LinkedHashSet<>();
+    private final Set<Long> touchedAsks = new LinkedHashSet<>();
+    private long sequence;
+    
+    /**
+     * Starts tracking from the book's current state, which is taken as already published.
+     */
+    public L2BookTracker(OrderBook orderBook) {
+        this.orderBook = orderBook;
+        this.tickScale = orderBook.getTickScale();
+        publishedBids.putAll(orderBook.getBidDepth(Integer.MAX_VALUE));
+        publishedAsks.putAll(orderBook.getAskDepth(Integer.MAX_VALUE));
+        orderBook.setLevelListener(this);
+    }
+    
+    @Override
+    public void onLevelChanged(OrderSide side, long price) {
+        (side == OrderSide.BUY ? touchedBids : touchedAsks).add(price);
+    }
+    
+    /**
+     * Updates for every level whose size changed since the last drain, or an empty list.
+     */
+    public List<L2Update> drain() {
+        if (touchedBids.isEmpty() && touchedAsks.isEmpty()) {
+            return List.of();
+        }
+        List<L2Update> updates = new ArrayList<>(touchedBids.size() + touchedAsks.size());
+        drain(OrderSide.BUY, touchedBids, publishedBids, updates);
+        drain(OrderSide.SELL, touchedAsks, publishedAsks, updates);
+        return updates;
+    }
+    
+    private void drain(OrderSide side, Set<Long> touched, Map<Long, Long> published, List<L2Update> updates) {
+        for (Long price : touched) {
+            PriceLevel level = side == OrderSide.BUY ? orderBook.getBidsAtPrice(price) : orderBook.getAsksAtPrice(price);
+            long size = level != null ? level.getTotalQuantity() : 0L;
+            Long previous = published.get(price);
+            
+            L2Update.Action action;
+            if (size == 0L) {
+                if (previous == null) {
+                    continue;
+                }
+                published.remove(price);
+                action = L2Update.Action.DELETE;
+            } else if (previous == null) {
+                published.put(price, size);
+                action = L2Update.Action.ADD;
+            } else if (previous != size) {
+                published.put(price, size);
+                action = L2Update.Action.CHANGE;
+            } else {
+                continue;
+            }
+            updates.add(new L2Update(orderBook.getSymbol(), ++sequence, action, side,
+                                     tickScale.toPrice(price), tickScale.toQuantity(size)));
+        }
+        touched.clear();
+    }
+    
+    /**
+     * Full depth as of the last drained update.
+     */
+    public L2Refresh refresh() {
+        return new L2Refresh(orderBook.getSymbol(), sequence,
+                             orderBook.getBidLevels(Integer.MAX_VALUE), orderBook.getAskLevels(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,33 @@
+package com.trading.engine;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Full aggregated depth of one symbol as of {@code sequence}: the state a consumer
+ * holds after applying every {@link L2Update} up to and including that sequence.
+ * Late joiners start from a refresh and apply only later updates.
+ */
+public final class L2Refresh {
+    
+    private final String symbol;
+    private final long sequence;
+    private final Map<BigDecimal, BigDecimal> bids;
+    private final Map<BigDecimal, BigDecimal> asks;
+    
+    public L2Refresh(String symbol, long sequence, Map<BigDecimal, BigDecimal> bids, Map<BigDecimal, BigDecimal> asks) {
+        this.symbol = symbol;
+        this.sequence = sequence;
+        this.bids = bids;
+        this.asks = asks;
+    }
+    
+    public String getSymbol() { return symbol; }
+    
+    public long getSequence() { return sequence; }
+    
+    // Price -> size, best price first
+    public Map<BigDecimal, BigDecimal> getBids() { return bids; }
+    
+    public Map<BigDecimal, BigDecimal> getAsks() { return asks; }
+}
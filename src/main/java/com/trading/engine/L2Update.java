@@ -0,0 +1,43 @@
+package com.trading.engine;
+
+import java.math.BigDecimal;
+
+import com.trading.domain.OrderSide;
+
+/**
+ * One incremental change to a symbol's aggregated depth. Sequences are per symbol
+ * and gapless; a consumer that sees a gap waits for the next {@link L2Refresh}.
+ */
+public final class L2Update {
+    
+    public enum Action { ADD, CHANGE, DELETE }
+    
+    private final String symbol;
+    private final long sequence;
+    private final Action action;
+    private final OrderSide side;
+    private final BigDecimal price;
+    private final BigDecimal size;
+    
+    public L2Update(String symbol, long sequence, Action action, OrderSide side, BigDecimal price, BigDecimal size) {
+        this.symbol = symbol;
+        this.sequence = sequence;
+        this.action = action;
+        this.side = side;
+        this.price = price;
+        this.size = size;
+    }
+    
+    public String getSymbol() { return symbol; }
+    
+    public long getSequence() { return sequence; }
+    
+    public Action getAction() { return action; }
+    
+    public OrderSide getSide() { return side; }
+    
+    public BigDecimal getPrice() { return price; }
+    
+    // New open quantity at the level; zero for DELETE
+    public BigDecimal getSize() { return size; }
+}
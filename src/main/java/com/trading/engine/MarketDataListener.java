@@ -0,0 +1,19 @@
+package com.trading.engine;
+
+/**
+ * Receives the engine's outbound events: the L2 feed of every symbol in per-symbol
+ * sequence order, trades and order status changes. Called on the feed's dispatcher
+ * thread; implementations must not block.
+ */
+public interface MarketDataListener {
+    
+    void onUpdate(L2Update update);
+    
+    void onRefresh(L2Refresh refresh);
+    
+    default void onTrade(TradeTick trade) {
+    }
+    
+    default void onOrderStatus(OrderStatusEvent event) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.trading.engine;
+
+import com.trading.domain.BookOrder;
+
+/**
+ * Receives each fill produced by the {@link OrderMatcher}, in execution order.
+ * Price is in ticks and quantity in scaled units.
+ */
+@FunctionalInterface
+public interface MatchListener {
+    
+    void onMatch(BookOrder aggressor, BookOrder resting, long quantity, long price);
+    
+    /**
+     * Self-trade prevention cancelled {@code resting} instead of filling it, and it has
+     * left the book, or decremented it where it rests. Either way it did not trade.
+     */
+    default void onSelfTradePrevented(BookOrder aggressor, BookOrder resting) {
+    }
+}
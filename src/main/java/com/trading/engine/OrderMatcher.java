@@ -0,0 +1,275 @@
+package com.trading.engine;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+
+import com.trading.domain.Allocation;
+import com.trading.domain.BookOrder;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.PriceLevel;
+import com.trading.domain.SelfTradePrevention;
+
+/**
+ * Matching of an incoming order against the opposite side of a book, best price first
+ * and within each level by the book's {@link Allocation}, and the single-price uncross
+ * of a book that has crossed during a call auction.
+ * Pro-rata allocation walks a level twice per pass, sharing out the quantity from the
+ * level's maintained total, so it costs O(orders at the level) whatever their sizes.
+ * An aggressor with self-trade prevention never trades with its own account: the
+ * resting order, the aggressor or both are cancelled or decremented instead. The check
+ * costs one count lookup per candidate fill, and an account compare only when the
+ * account has orders resting opposite.
+ * Pure in-memory logic: persistence and publishing are left to the {@link MatchListener}.
+ * Resting orders filled completely are returned to the book's pool once the listener
+ * has seen them, so the loop itself allocates nothing.
+ */
+public class OrderMatcher {
+    
+    public void match(OrderBook orderBook, BookOrder incoming, MatchListener listener) {
+        // Walk the opposite side in place; stop once filled or the price no longer crosses
+        Iterator<PriceLevel> levels = orderBook.crossingLevels(incoming);
+        Allocation allocation = orderBook.getAllocation();
+        
+        while (!incoming.isFullyFilled() && !incoming.isSelfTradeCancelled() && levels.hasNext()) {
+            PriceLevel level = levels.next();
+            if (allocation == Allocation.FIFO) {
+                fillAtLevel(incoming, orderBook, level, listener);
+            } else {
+                if (allocation == Allocation.FIFO_TOP_PRO_RATA) {
+                    fill(incoming, orderBook, level.getHead(), incoming.getRemainingQuantity(), level.getPrice(), listener);
+                }
+                allocateAtLevel(incoming, orderBook, level, listener);
+            }
+        }
+    }
+    
+    /**
+     * Fill or kill: matches only if the crossing levels hold the whole remaining
+     * quantity, decided from their aggregates before any fill, so a killed order
+     * leaves the book untouched. Returns whether the order was matched.
+     * When its account rests opposite under self-trade prevention the aggregates would
+     * count its own orders, so those levels are walked order by order instead.
+     */
+    public boolean matchInFull(OrderBook orderBook, BookOrder incoming, MatchListener listener) {
+        long needed = incoming.getRemainingQuantity();
+        long available = incoming.getSelfTradePrevention() != SelfTradePrevention.NONE
+                         && orderBook.hasRestingOrders(incoming.getSide() == OrderSide.BUY ? OrderSide.SELL : OrderSide.BUY,
+                                                       incoming.getAccountId())
+            ? crossingQuantityOfOthers(orderBook, incoming, needed)
+            : orderBook.crossingQuantity(incoming, needed);
+        if (available < needed) {
+            return false;
+        }
+        match(orderBook, incoming, listener);
+        return true;
+    }
+    
+    /**
+     * Crossing quantity of other accounts that the aggressor can reach: its own orders
+     * are stepped over when they are cancelled out of its way, and otherwise end the
+     * count there (at the start of their level under pro rata, which visits the whole
+     * level in each pass). Ahead of an own order that ends the count, an iceberg only
+     * offers its displayed slice: the refill queues behind the own order.
+     * Conservative for decrement, which may let the aggressor on.
+     */
+    private static long crossingQuantityOfOthers(OrderBook orderBook, BookOrder incoming, long atLeast) {
+        boolean skipOwn = incoming.getSelfTradePrevention() == SelfTradePrevention.CANCEL_OLDEST;
+        boolean fifo = orderBook.getAllocation() == Allocation.FIFO;
+        long available = 0L;
+        Iterator<PriceLevel> levels = orderBook.crossingLevels(incoming);
+        while (available < atLeast && levels.hasNext()) {
+            long levelAvailable = 0L;
+            long levelDisplayed = 0L;
+            for (BookOrder resting = levels.next().getHead(); resting != null; resting = orderBook.getNextInLevel(resting)) {
+                if (resting.getAccountId() != incoming.getAccountId()) {
+                    levelAvailable += resting.getRemainingQuantity();
+                    levelDisplayed += resting.getDisplayedQuantity();
+                } else if (!skipOwn) {
+                    return fifo ? available + levelDisplayed : available;
+                }
+            }
+            available += levelAvailable;
+        }
+        return available;
+    }
+    
+    /**
+     * Call auction uncross: executes the book's equilibrium volume at its single
+     * equilibrium price (see {@link IndicativeUncross}), pairing bids and asks best first,
+     * each side in price-time priority. Both orders of a fill are resting; the buy order
+     * is reported as the aggressor. Only an iceberg's displayed slice trades in a fill, and
+     * its refills queue behind the level as in continuous matching. Returns the volume
+     * traded; the book no longer crosses afterwards.
+     */
+    public long uncross(OrderBook orderBook, MatchListener listener) {
+        IndicativeUncross equilibrium = IndicativeUncross.of(orderBook, null);
+        long price = equilibrium.price;
+        long traded = 0L;
+        
+        while (traded < equilibrium.volume) {
+            PriceLevel bids = orderBook.getBestBidLevel();
+            PriceLevel asks = orderBook.getBestAskLevel();
+            if (bids == null || asks == null || bids.getPrice() < price || asks.getPrice() > price) {
+                break;
+            }
+            // Off-heap books hand out one view per call; the buy side is read into the second
+            BookOrder buy = orderBook.getPairedHead(bids);
+            BookOrder sell = asks.getHead();
+            long matchQuantity = Math.min(equilibrium.volume - traded,
+                                          Math.min(buy.getDisplayedQuantity(), sell.getDisplayedQuantity()));
+            
+            orderBook.fillOrder(buy, matchQuantity);
+            orderBook.fillOrder(sell, matchQuantity);
+            traded += matchQuantity;
+            
+            listener.onMatch(buy, sell, matchQuantity, price);
+            if (buy.isFullyFilled()) {
+                orderBook.releaseOrder(buy);
+            }
+            if (sell.isFullyFilled()) {
+                orderBook.releaseOrder(sell);
+            }
+        }
+        if (traded > 0) {
+            // Fills record each order's own price; stops trigger from the uncross price
+            orderBook.setLastTradePrice(price);
+        }
+        return traded;
+    }
+    
+    private void fillAtLevel(BookOrder incoming, OrderBook orderBook, PriceLevel level, MatchListener listener) {
+        long price = level.getPrice();
+        BookOrder resting;
+        
+        // Always fill the head: a fully filled order leaves the level and its successor becomes
+        // the head, so the loop never follows links (off-heap books only expose the head)
+        while (!incoming.isFullyFilled() && (resting = level.getHead()) != null) {
+            if (isSelfTrade(orderBook, incoming, resting)) {
+                // A cancelled resting order is gone from the head; otherwise the aggressor stops here
+                if (!preventSelfTrade(orderBook, incoming, resting, listener)) {
+                    return;
+                }
+                continue;
+            }
+            // Only the displayed slice of an iceberg trades; the book refills it once it is gone
+            long matchQuantity = Math.min(incoming.getRemainingQuantity(), resting.getDisplayedQuantity());
+            
+            incoming.fill(matchQuantity);
+            orderBook.fillOrder(resting, matchQuantity);
+            
+            listener.onMatch(incoming, resting, matchQuantity, price);
+            if (resting.isFullyFilled()) {
+                orderBook.releaseOrder(resting);
+            }
+        }
+    }
+    
+    /**
+     * Pro rata: each pass shares min(remaining, level total) over the level's orders in
+     * proportion to their displayed quantity, each share rounded down to whole lots of the
+     * book's lot size. What the rounding leaves over goes out in time priority, on top of
+     * the shares, up to each order's displayed quantity; the first walk only sums the
+     * shares to find it. The fills sum exactly to the quantity in one pass.
+     * Another pass follows only when the whole level was taken and icebergs refilled.
+     */
+    private void allocateAtLevel(BookOrder incoming, OrderBook orderBook, PriceLevel level, MatchListener listener) {
+        long price = level.getPrice();
+        long lotSize = orderBook.getLotSize();
+        while (!incoming.isFullyFilled() && !incoming.isSelfTradeCancelled() && !level.isEmpty()) {
+            long total = level.getTotalQuantity();
+            long quantity = Math.min(incoming.getRemainingQuantity(), total);
+            int count = level.getOrderCount();
+            
+            long leftover = quantity;
+            BookOrder resting = level.getHead();
+            for (int remaining = count; remaining > 0 && resting != null; remaining--) {
+                leftover -= lots(proportion(quantity, resting.getDisplayedQuantity(), total), lotSize);
+                resting = orderBook.getNextInLevel(resting);
+            }
+            
+            // Bounded by the count so a refilled iceberg, now at the back, is not reached again
+            resting = level.getHead();
+            for (int remaining = count; remaining > 0 && resting != null; remaining--) {
+                BookOrder next = orderBook.getNextInLevel(resting);
+                long displayed = resting.getDisplayedQuantity();
+                long share = lots(proportion(quantity, displayed, total), lotSize);
+                long extra = Math.min(leftover, displayed - share);
+                leftover -= extra;
+                // A share its own order does not take is offered to the others in the next pass
+                if (!fill(incoming, orderBook, resting, share + extra, price, listener)) {
+                    return;
+                }
+                resting = next;
+            }
+        }
+    }
+    
+    // Fills up to quantity of the resting order's displayed slice; false once the aggressor must stop
+    private boolean fill(BookOrder incoming, OrderBook orderBook, BookOrder resting, long quantity, long price,
+                         MatchListener listener) {
+        if (isSelfTrade(orderBook, incoming, resting)) {
+            return preventSelfTrade(orderBook, incoming, resting, listener);
+        }
+        // A decrement earlier in the pass may have left the aggressor less than its share
+        long matchQuantity = Math.min(Math.min(quantity, incoming.getRemainingQuantity()), resting.getDisplayedQuantity());
+        if (matchQuantity <= 0) {
+            return true;
+        }
+        incoming.fill(matchQuantity);
+        orderBook.fillOrder(resting, matchQuantity);
+        
+        listener.onMatch(incoming, resting, matchQuantity, price);
+        if (resting.isFullyFilled()) {
+            orderBook.releaseOrder(resting);
+        }
+        return true;
+    }
+    
+    // O(1): the account compare only runs for an aggressor whose account rests opposite
+    private static boolean isSelfTrade(OrderBook orderBook, BookOrder incoming, BookOrder resting) {
+        return incoming.getSelfTradePrevention() != SelfTradePrevention.NONE
+               && orderBook.hasRestingOrders(resting.getSide(), incoming.getAccountId())
+               && resting.getAccountId() == incoming.getAccountId();
+    }
+    
+    /**
+     * Applies the aggressor's self-trade prevention to a resting order of its own account
+     * instead of filling it. Returns whether the aggressor may go on matching.
+     */
+    private static boolean preventSelfTrade(OrderBook orderBook, BookOrder incoming, BookOrder resting,
+                                            MatchListener listener) {
+        SelfTradePrevention mode = incoming.getSelfTradePrevention();
+        long overlap = Math.min(incoming.getRemainingQuantity(), resting.getRemainingQuantity());
+        boolean cancelResting = mode == SelfTradePrevention.CANCEL_OLDEST || mode == SelfTradePrevention.CANCEL_BOTH
+                                || mode == SelfTradePrevention.DECREMENT && overlap == resting.getRemainingQuantity();
+        boolean cancelIncoming = mode == SelfTradePrevention.CANCEL_NEWEST || mode == SelfTradePrevention.CANCEL_BOTH
+                                 || mode == SelfTradePrevention.DECREMENT && overlap == incoming.getRemainingQuantity();
+        
+        if (cancelResting) {
+            orderBook.removeResting(resting);
+            listener.onSelfTradePrevented(incoming, resting);
+            orderBook.releaseOrder(resting);
+        } else if (mode == SelfTradePrevention.DECREMENT) {
+            orderBook.reduceOrder(resting, resting.getRemainingQuantity() - overlap);
+            listener.onSelfTradePrevented(incoming, resting);
+        }
+        if (cancelIncoming || mode == SelfTradePrevention.DECREMENT) {
+            incoming.preventSelfTrade(overlap, cancelIncoming);
+        }
+        return !cancelIncoming;
+    }
+    
+    private static long lots(long quantity, long lotSize) {
+        return quantity - quantity % lotSize;
+    }
+    
+    // floor(quantity * part / total) without overflow; part never exceeds total
+    private static long proportion(long quantity, long part, long total) {
+        long product = quantity * part;
+        if (Math.multiplyHigh(quantity, part) == 0 && product >= 0) {
+            return product / total;
+        }
+        return BigInteger.valueOf(quantity).multiply(BigInteger.valueOf(part)).divide(BigInteger.valueOf(total)).longValue();
+    }
+}
@@ -0,0 +1,76 @@
+package com.trading.engine;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.trading.domain.Order;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderStatus;
+
+/**
+ * Copy of an order's state taken by the engine when it changes, so it can
+ * be delivered to the order's owner after the engine has moved on.
+ */
+public final class OrderStatusEvent {
+    
+    private final String orderId;
+    private final String username;
+    private final String accountId;
+    private final String symbol;
+    private final OrderSide side;
+    private final OrderStatus status;
+    private final BigDecimal filledQuantity;
+    private final BigDecimal remainingQuantity;
+    private final String reason;
+    private final LocalDateTime timestamp;
+    
+    public OrderStatusEvent(Order order) {
+        this(order.getOrderId(), order.getUser() != null ? order.getUser().getUsername() : null,
+             order.getAccountId(), order.getSymbol(), order.getSide(), order.getStatus(),
+             order.getFilledQuantity(), order.getRemainingQuantity(), order.getReason());
+    }
+    
+    public OrderStatusEvent(String orderId, String username, String accountId, String symbol, OrderSide side,
+                            OrderStatus status, BigDecimal filledQuantity, BigDecimal remainingQuantity, String reason) {
+        this.orderId = orderId;
+        this.username = username;
+        this.accountId = accountId;
+        this.symbol = symbol;
+        this.side = side;
+        this.status = status;
+        this.filledQuantity = filledQuantity;
+        this.remainingQuantity = remainingQuantity;
+        this.reason = reason;
+        this.timestamp = LocalDateTime.now();
+    }
+    
+    public String getOrderId() { return orderId; }
+    
+    // Routing only: events are delivered to this user's streams
+    @JsonIgnore
+    public String getUsername() { return username; }
+    
+    public String getAccountId() { return accountId; }
+    
+    public String getSymbol() { return symbol; }
+    
+    public OrderSide getSide() { return side; }
+    
+    public OrderStatus getStatus() { return status; }
+    
+    public BigDecimal getFilledQuantity() { return filledQuantity; }
+    
+    public BigDecimal getRemainingQuantity() { return remainingQuantity; }
+    
+    public String getReason() { return reason; }
+    
+    public LocalDateTime getTimestamp() { return timestamp; }
+    
+    @Override
+    public String toString() {
+        return "OrderStatusEvent{orderId=" + orderId + ", accountId=" + accountId + ", symbol=" + symbol
+            + ", side=" + side + ", status=" + status + ", filled=" + filledQuantity
+            + ", remaining=" + remainingQuantity + (reason != null ? ", reason=" + reason : "") + "}";
+    }
+}
@@ -0,0 +1,133 @@
+package com.trading.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Preallocated multi-producer, single-consumer ring of reusable entries.
+ * Producers claim a sequence, fill the entry at that sequence and publish it;
+ * the consumer reads published entries in sequence order and releases them.
+ * A producer can never overtake the consumer: {@link #tryClaim()} fails when the
+ * ring is full, which is where callers apply backpressure or reject.
+ */
+public final class RingBuffer<E> {
+    
+    private final Object[] entries;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    
+    // Highest sequence handed to a producer
+    private final AtomicLong claimed = new AtomicLong(-1L);
+    // Sequence last published into each slot; -1 until first use
+    private final AtomicLongArray published;
+    // Highest sequence the consumer has finished with
+    private final AtomicLong consumed = new AtomicLong(-1L);
+    
+    private volatile Thread parkedConsumer;
+    
+    public RingBuffer(int size, Supplier<E> factory, WaitStrategy waitStrategy) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two: " + size);
+        }
+        this.entries = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+            published.set(i, -1L);
+        }
+    }
+    
+    /**
+     * Claims the next sequence, or returns -1 if the ring is full.
+     */
+    public long tryClaim() {
+        while (true) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - entries.length > consumed.get()) {
+                return -1L;
+            }
+            if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+    
+    /**
+     * Claims the next sequence, idling with the wait strategy while the ring is full.
+     */
+    public long claim() {
+        int attempt = 0;
+        long sequence;
+        while ((sequence = tryClaim()) < 0) {
+            waitStrategy.idle(attempt++);
+        }
+        return sequence;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) entries[(int) sequence & mask];
+    }
+    
+    public void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        Thread consumer = parkedConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+    
+    /**
+     * Consumer side: true once {@code sequence} has been published.
+     */
+    public boolean isPublished(long sequence) {
+        return published.get((int) sequence & mask) == sequence;
+    }
+    
+    /**
+     * Consumer side: waits with the wait strategy until {@code sequence} is published
+     * or {@code running} turns false, returning whether it was published.
+     */
+    public boolean waitFor(long sequence, BooleanSupplier running) {
+        int attempt = 0;
+        while (!isPublished(sequence)) {
+            if (!running.getAsBoolean()) {
+                return false;
+            }
+            if (attempt >= 2 * WaitStrategy.SPIN_ATTEMPTS && waitStrategy == WaitStrategy.PARK) {
+                // Announce the park, then re-check so a concurrent publish cannot be missed
+                parkedConsumer = Thread.currentThread();
+                if (!isPublished(sequence)) {
+                    waitStrategy.idle(attempt);
+                }
+                parkedConsumer = null;
+            } else {
+                waitStrategy.idle(attempt);
+            }
+            attempt++;
+        }
+        return true;
+    }
+    
+    /**
+     * Consumer side: frees every slot up to and including {@code sequence} for reuse.
+     */
+    public void release(long sequence) {
+        consumed.lazySet(sequence);
+    }
+    
+    public int getSize() {
+        return entries.length;
+    }
+    
+    // Claimed but not yet released, including entries still being processed
+    public long getBacklog() {
+        return claimed.get() - consumed.get();
+    }
+}
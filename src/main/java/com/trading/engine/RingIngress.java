@@ -0,0 +1,135 @@
+package com.trading.engine;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.trading.domain.Order;
+
+/**
+ * A matching shard fed by a {@link RingBuffer} instead of an executor queue.
+ * New orders travel in preallocated ring entries with no per-order task or future,
+ * and are rejected rather than queued when the ring is full. Other work on the
+ * shard (queries, amendments, snapshots) arrives through the ordinary executor API
+ * and waits for space, since it must not be lost. A single consumer thread runs
+ * everything in ring order.
+ */
+public class RingIngress extends AbstractExecutorService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RingIngress.class);
+    
+    private static final class Entry {
+        Order order;
+        Runnable task;
+    }
+    
+    private final RingBuffer<Entry> ring;
+    private final Consumer<Order> orderHandler;
+    private final Thread consumerThread;
+    private volatile boolean running = true;
+    private final BooleanSupplier isRunning = () -> running;
+    
+    public RingIngress(String name, int size, WaitStrategy waitStrategy, Consumer<Order> orderHandler) {
+        this.ring = new RingBuffer<>(size, Entry::new, waitStrategy);
+        this.orderHandler = orderHandler;
+        this.consumerThread = new Thread(this::consumeLoop, name);
+        this.consumerThread.setDaemon(true);
+        this.consumerThread.start();
+    }
+    
+    /**
+     * Hands a new order to the shard, or returns false at once if the ring is full.
+     */
+    public boolean tryPublish(Order order) {
+        if (!running) {
+            return false;
+        }
+        long sequence = ring.tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        ring.get(sequence).order = order;
+        ring.publish(sequence);
+        return true;
+    }
+    
+    @Override
+    public void execute(Runnable task) {
+        if (!running) {
+            throw new RejectedExecutionException("Shard " + consumerThread.getName() + " is shut down");
+        }
+        long sequence = ring.claim();
+        ring.get(sequence).task = task;
+        ring.publish(sequence);
+    }
+    
+    private void consumeLoop() {
+        long next = 0L;
+        while (true) {
+            if (!ring.waitFor(next, isRunning)) {
+                // Shut down: stop once everything already claimed has been handled
+                if (ring.getBacklog() == 0L) {
+                    return;
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            
+            Entry entry = ring.get(next);
+            Order order = entry.order;
+            Runnable task = entry.task;
+            entry.order = null;
+            entry.task = null;
+            
+            try {
+                if (order != null) {
+                    orderHandler.accept(order);
+                } else if (task != null) {
+                    task.run();
+                }
+            } catch (RuntimeException e) {
+                logger.error("Shard {} failed to process an event", consumerThread.getName(), e);
+            }
+            ring.release(next);
+            next++;
+        }
+    }
+    
+    public long getBacklog() {
+        return ring.getBacklog();
+    }
+    
+    @Override
+    public void shutdown() {
+        running = false;
+    }
+    
+    @Override
+    public List<Runnable> shutdownNow() {
+        running = false;
+        return Collections.emptyList();
+    }
+    
+    @Override
+    public boolean isShutdown() {
+        return !running;
+    }
+    
+    @Override
+    public boolean isTerminated() {
+        return !consumerThread.isAlive();
+    }
+    
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        consumerThread.join(unit.toMillis(timeout));
+        return isTerminated();
+    }
+}
@@ -0,0 +1,205 @@
+package com.trading.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderStatus;
+import com.trading.domain.OrderType;
+import com.trading.domain.TimeInForce;
+
+/**
+ * Binary snapshot files of every order book, written atomically (temp file + rename)
+ * and named by the journal sequence replay must resume from. Each file ends with a
+ * CRC32 of its contents; unreadable files are skipped in favour of older ones.
+ */
+public class SnapshotStore {
+    
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+    
+    private static final int MAGIC = 0x4F42534E; // "OBSN"
+    private static final int VERSION = 7;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+    
+    private final Path directory;
+    private final int retained;
+    
+    public SnapshotStore(Path directory, int retained) {
+        this.directory = directory;
+        this.retained = Math.max(1, retained);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create snapshot directory " + directory, e);
+        }
+    }
+    
+    /**
+     * @param replayFrom journal sequence at which capture started; every record after it
+     *                   may still need replaying for books that were captured later
+     */
+    public Path write(long replayFrom, String tickSize, List<BookSnapshot> books) throws IOException {
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, replayFrom, SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        
+        CRC32 crc = new CRC32();
+        try (OutputStream file = Files.newOutputStream(temp);
+             CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), crc);
+             DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(tickSize);
+            out.writeLong(replayFrom);
+            out.writeInt(books.size());
+            
+            for (BookSnapshot book : books) {
+                out.writeUTF(book.getSymbol());
+                out.writeLong(book.getLastSequence());
+                out.writeLong(book.getLastTradePrice());
+                out.writeBoolean(book.isInAuction());
+                out.writeInt(book.getOrders().size());
+                for (BookSnapshot.Entry entry : book.getOrders()) {
+                    out.writeUTF(entry.orderId);
+                    out.writeUTF(entry.accountId);
+                    out.writeUTF(entry.owner != null ? entry.owner : "");
+                    out.writeByte(entry.side.ordinal());
+                    out.writeByte(entry.type.ordinal());
+                    out.writeByte(entry.status.ordinal());
+                    out.writeLong(entry.price);
+                    out.writeLong(entry.quantity);
+                    out.writeLong(entry.filledQuantity);
+                    out.writeLong(entry.createdAt);
+                    out.writeLong(entry.expiresAt);
+                    out.writeLong(entry.displayQuantity);
+                    out.writeLong(entry.hiddenQuantity);
+                    out.writeLong(entry.stopPrice);
+                    out.writeByte(entry.timeInForce.ordinal());
+                    out.writeBoolean(entry.triggered);
+                }
+            }
+            out.flush();
+            // The checksum covers everything before it
+            new DataOutputStream(file).writeLong(crc.getValue());
+        }
+        
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        prune();
+        return target;
+    }
+    
+    /**
+     * Loads the newest readable snapshot, or returns null if there is none.
+     */
+    public Snapshot loadLatest() {
+        List<Path> files = list();
+        for (int i = files.size() - 1; i >= 0; i--) {
+            try {
+                return read(files.get(i));
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Skipping unreadable snapshot {}: {}", files.get(i), e.getMessage());
+            }
+        }
+        return null;
+    }
+    
+    private Snapshot read(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+             DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a version " + VERSION + " snapshot");
+            }
+            String tickSize = in.readUTF();
+            long replayFrom = in.readLong();
+            int bookCount = in.readInt();
+            
+            List<BookSnapshot> books = new ArrayList<>(bookCount);
+            for (int b = 0; b < bookCount; b++) {
+                String symbol = in.readUTF();
+                long lastSequence = in.readLong();
+                long lastTradePrice = in.readLong();
+                boolean inAuction = in.readBoolean();
+                int orderCount = in.readInt();
+                List<BookSnapshot.Entry> orders = new ArrayList<>(orderCount);
+                for (int o = 0; o < orderCount; o++) {
+                    orders.add(new BookSnapshot.Entry(in.readUTF(), in.readUTF(), nullIfEmpty(in.readUTF()),
+                        OrderSide.values()[in.readByte()], OrderType.values()[in.readByte()],
+                        OrderStatus.values()[in.readByte()],
+                        in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                        in.readLong(), in.readLong(), in.readLong(), TimeInForce.values()[in.readByte()],
+                        in.readBoolean()));
+                }
+                books.add(new BookSnapshot(symbol, lastSequence, lastTradePrice, inAuction, orders));
+            }
+            
+            long expected = crc.getValue();
+            if (new DataInputStream(file).readLong() != expected) {
+                throw new IOException("Checksum mismatch");
+            }
+            return new Snapshot(replayFrom, tickSize, books);
+        }
+    }
+    
+    // writeUTF has no null: an order without an owner is written as an empty name
+    private static String nullIfEmpty(String value) {
+        return value.isEmpty() ? null : value;
+    }
+    
+    private void prune() throws IOException {
+        List<Path> files = list();
+        for (int i = 0; i < files.size() - retained; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+    
+    private List<Path> list() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(p -> p.getFileName().toString().startsWith(PREFIX) && p.getFileName().toString().endsWith(SUFFIX))
+                .sorted(Comparator.comparing(p -> p.getFileName().toString()))
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list snapshots in " + directory, e);
+        }
+    }
+    
+    public static final class Snapshot {
+        
+        private final long replayFrom;
+        private final String tickSize;
+        private final List<BookSnapshot> books;
+        
+        Snapshot(long replayFrom, String tickSize, List<BookSnapshot> books) {
+            this.replayFrom = replayFrom;
+            this.tickSize = tickSize;
+            this.books = books;
+        }
+        
+        public long getReplayFrom() { return replayFrom; }
+        
+        public String getTickSize() { return tickSize; }
+        
+        public List<BookSnapshot> getBooks() { return books; }
+    }
+}
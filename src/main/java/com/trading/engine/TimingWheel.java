@@ -0,0 +1,167 @@
+package com.trading.engine;
+
+/**
+ * Hierarchical timing wheel of order expiry deadlines for one book.
+ * Four wheels of 64 slots each; a slot of one wheel spans a full turn of the wheel
+ * below, so the wheels together cover 64^4 ticks and any deadline in range is filed
+ * by indexing a single slot. When a wheel's slot comes round its entries are re-filed
+ * into the finer wheels, and they fire from the innermost one. An entry moves at most
+ * once per wheel, so scheduling and expiring cost O(1) per order however many are
+ * pending. Deadlines beyond the range wait in the outermost wheel and are re-filed
+ * each time it turns.
+ * Entries are not removed when an order leaves the book early: the owner checks on
+ * firing that the order is still resting and due. Entries are recycled.
+ * Confined to the book's owning thread; only {@link #isEmpty()} may be read elsewhere.
+ */
+public final class TimingWheel {
+    
+    public interface ExpiryHandler {
+        void onExpiry(String key, long deadline);
+    }
+    
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int WHEELS = 4;
+    private static final long SPAN_TICKS = 1L << (SLOT_BITS * WHEELS);
+    
+    private final long tickMillis;
+    private final Entry[][] slots = new Entry[WHEELS][SLOTS];
+    private final int maxFree;
+    private long currentTick;
+    private volatile int size;
+    private Entry free;
+    private int freeCount;
+    
+    /**
+     * @param maxFree fired entries retained for reuse
+     */
+    public TimingWheel(long tickMillis, long nowMillis, int maxFree) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.maxFree = maxFree;
+        this.currentTick = nowMillis / tickMillis;
+    }
+    
+    /**
+     * Files {@code key} to fire at the first tick at or after {@code deadlineMillis};
+     * a deadline already passed fires on the next tick.
+     */
+    public void schedule(String key, long deadlineMillis) {
+        Entry entry = free;
+        if (entry != null) {
+            free = entry.next;
+            freeCount--;
+        } else {
+            entry = new Entry();
+        }
+        entry.key = key;
+        entry.deadline = deadlineMillis;
+        file(entry, currentTick + 1);
+        size++;
+    }
+    
+    /**
+     * Turns the wheels up to {@code nowMillis}, passing every entry whose deadline has
+     * been reached to {@code handler}, in deadline tick order. Returns the number fired.
+     */
+    public int advance(long nowMillis, ExpiryHandler handler) {
+        long targetTick = nowMillis / tickMillis;
+        if (size == 0) {
+            currentTick = Math.max(currentTick, targetTick);
+            return 0;
+        }
+        
+        int fired = 0;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Outer wheels first, so entries they hand down can be re-filed again this tick
+            for (int wheel = WHEELS - 1; wheel > 0; wheel--) {
+                if ((currentTick & ((1L << (SLOT_BITS * wheel)) - 1)) == 0) {
+                    cascade(wheel, (int) (currentTick >>> (SLOT_BITS * wheel)) & SLOT_MASK);
+                }
+            }
+            
+            int index = (int) currentTick & SLOT_MASK;
+            Entry entry = slots[0][index];
+            slots[0][index] = null;
+            while (entry != null) {
+                Entry next = entry.next;
+                if (dueTick(entry.deadline) <= currentTick) {
+                    handler.onExpiry(entry.key, entry.deadline);
+                    recycle(entry);
+                    size--;
+                    fired++;
+                } else {
+                    file(entry, currentTick);
+                }
+                entry = next;
+            }
+        }
+        return fired;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private void cascade(int wheel, int index) {
+        Entry entry = slots[wheel][index];
+        slots[wheel][index] = null;
+        while (entry != null) {
+            Entry next = entry.next;
+            file(entry, currentTick);
+            entry = next;
+        }
+    }
+    
+    /**
+     * Files the entry in the wheel whose slot width covers its distance from now, at
+     * the slot its deadline tick indexes; {@code earliestTick} is the first tick it may fire on.
+     */
+    private void file(Entry entry, long earliestTick) {
+        long tick = Math.max(dueTick(entry.deadline), earliestTick);
+        long delta = tick - currentTick;
+        if (delta >= SPAN_TICKS) {
+            // Out of range: park it in the last slot the outermost wheel reaches
+            tick = currentTick + SPAN_TICKS - 1;
+            delta = SPAN_TICKS - 1;
+        }
+        
+        int wheel = 0;
+        while (wheel < WHEELS - 1 && delta >= 1L << (SLOT_BITS * (wheel + 1))) {
+            wheel++;
+        }
+        int index = (int) (tick >>> (SLOT_BITS * wheel)) & SLOT_MASK;
+        entry.next = slots[wheel][index];
+        slots[wheel][index] = entry;
+    }
+    
+    // Rounded up, so an entry never fires before its deadline
+    private long dueTick(long deadlineMillis) {
+        return Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis);
+    }
+    
+    private void recycle(Entry entry) {
+        entry.key = null;
+        if (freeCount < maxFree) {
+            entry.next = free;
+            free = entry;
+            freeCount++;
+        } else {
+            entry.next = null;
+        }
+    }
+    
+    private static final class Entry {
+        String key;
+        long deadline;
+        Entry next;
+    }
+}
@@ -0,0 +1,85 @@
+package com.trading.engine;
+
+import java.math.BigDecimal;
+
+import com.trading.domain.OrderBook;
+import com.trading.domain.PriceLevel;
+import com.trading.domain.TickScale;
+
+/**
+ * Immutable best bid and offer of one book, published by the matching engine after
+ * every event that moves it. Readers get a consistent pair from a single instant
+ * without touching the book. An empty side has no price and zero size.
+ */
+public final class TopOfBook {
+    
+    private final String symbol;
+    private final TickScale tickScale;
+    private final long bidPrice;
+    private final long bidSize;
+    private final long askPrice;
+    private final long askSize;
+    private final long sequence;
+    private final long timestamp;
+    
+    private TopOfBook(String symbol, TickScale tickScale, long bidPrice, long bidSize,
+                      long askPrice, long askSize, long sequence, long timestamp) {
+        this.symbol = symbol;
+        this.tickScale = tickScale;
+        this.bidPrice = bidPrice;
+        this.bidSize = bidSize;
+        this.askPrice = askPrice;
+        this.askSize = askSize;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+    }
+    
+    /**
+     * Reads the top of {@code orderBook}, returning {@code previous} itself when nothing
+     * changed so unchanged events allocate nothing. Must run on the book's owning thread.
+     */
+    public static TopOfBook of(OrderBook orderBook, TopOfBook previous) {
+        PriceLevel bid = orderBook.getBestBidLevel();
+        PriceLevel ask = orderBook.getBestAskLevel();
+        long bidPrice = bid != null ? bid.getPrice() : 0L;
+        long bidSize = bid != null ? bid.getTotalQuantity() : 0L;
+        long askPrice = ask != null ? ask.getPrice() : 0L;
+        long askSize = ask != null ? ask.getTotalQuantity() : 0L;
+        
+        if (previous != null && previous.bidPrice == bidPrice && previous.bidSize == bidSize
+                && previous.askPrice == askPrice && previous.askSize == askSize) {
+            return previous;
+        }
+        long sequence = previous != null ? previous.sequence + 1 : 1L;
+        return new TopOfBook(orderBook.getSymbol(), orderBook.getTickScale(), bidPrice, bidSize,
+                             askPrice, askSize, sequence, System.currentTimeMillis());
+    }
+    
+    public String getSymbol() { return symbol; }
+    
+    public boolean hasBid() { return bidSize > 0; }
+    
+    public boolean hasAsk() { return askSize > 0; }
+    
+    public BigDecimal getBidPrice() { return hasBid() ? tickScale.toPrice(bidPrice) : null; }
+    
+    public BigDecimal getBidSize() { return tickScale.toQuantity(bidSize); }
+    
+    public BigDecimal getAskPrice() { return hasAsk() ? tickScale.toPrice(askPrice) : null; }
+    
+    public BigDecimal getAskSize() { return tickScale.toQuantity(askSize); }
+    
+    public BigDecimal getSpread() {
+        return hasBid() && hasAsk() ? tickScale.toPrice(askPrice - bidPrice) : null;
+    }
+    
+    public BigDecimal getMidPrice() {
+        return hasBid() && hasAsk() ? tickScale.toPrice(askPrice + bidPrice).divide(BigDecimal.valueOf(2)) : null;
+    }
+    
+    // Increments each time the top of book changes
+    public long getSequence() { return sequence; }
+    
+    // Epoch millis of the event that produced this top of book
+    public long getTimestamp() { return timestamp; }
+}
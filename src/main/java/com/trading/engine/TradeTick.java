@@ -0,0 +1,42 @@
+package com.trading.engine;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.trading.domain.OrderSide;
+import com.trading.domain.Trade;
+
+/**
+ * Public view of one execution: no order or account identifiers.
+ */
+public final class TradeTick {
+    
+    private final String tradeId;
+    private final String symbol;
+    private final BigDecimal price;
+    private final BigDecimal quantity;
+    private final OrderSide aggressorSide;
+    private final LocalDateTime executedAt;
+    
+    public TradeTick(Trade trade, OrderSide aggressorSide) {
+        this.tradeId = trade.getTradeId();
+        this.symbol = trade.getSymbol();
+        this.price = trade.getPrice();
+        this.quantity = trade.getQuantity();
+        this.aggressorSide = aggressorSide;
+        this.executedAt = trade.getExecutedAt();
+    }
+    
+    public String getTradeId() { return tradeId; }
+    
+    public String getSymbol() { return symbol; }
+    
+    public BigDecimal getPrice() { return price; }
+    
+    public BigDecimal getQuantity() { return quantity; }
+    
+    // Null for an auction uncross trade, which has no aggressor
+    public OrderSide getAggressorSide() { return aggressorSide; }
+    
+    public LocalDateTime getExecutedAt() { return executedAt; }
+}
@@ -0,0 +1,60 @@
+package com.trading.engine;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a ring buffer consumer (or a producer waiting for space) idles while there is
+ * nothing to do. Trades latency for CPU: BUSY_SPIN never gives up its core, YIELD
+ * lets other threads run, PARK sleeps until a producer wakes it.
+ */
+public enum WaitStrategy {
+    
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+    
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_ATTEMPTS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_ATTEMPTS) {
+                Thread.onSpinWait();
+            } else if (attempt < 2 * SPIN_ATTEMPTS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+    
+    static final int SPIN_ATTEMPTS = 100;
+    
+    // Upper bound on a parked wait; producers unpark the consumer as soon as they publish
+    static final long PARK_NANOS = 1_000_000L;
+    
+    abstract void idle(int attempt);
+    
+    /**
+     * Accepts the configuration spelling: busy-spin, yield or park.
+     */
+    public static WaitStrategy fromName(String name) {
+        try {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown wait strategy: " + name + " (expected busy-spin, yield or park)");
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.trading.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.trading.engine.L2Refresh;
+import com.trading.engine.L2Update;
+import com.trading.engine.MarketDataListener;
+import com.trading.engine.OrderStatusEvent;
+import com.trading.engine.TradeTick;
+
+/**
+ * Server push of book changes, trades and the user's own order updates to browser
+ * clients over server-sent events.
+ * The feed dispatcher only merges each event into the client's pending state and
+ * never writes to a socket. A small sender pool flushes pending state to each client
+ * with blocking writes: while a client's previous write is in flight its book changes
+ * conflate to the latest size per level and its order updates to the latest state per
+ * order, and its trade backlog is capped with the oldest dropped first.
+ * A write still blocked after the send timeout ends that client's stream with an
+ * error, which closes its connection and fails the write, so a stalled socket holds a
+ * sender thread (and delays the clients queued behind it) for about that long at most.
+ */
+@Service
+public class ClientStreamService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ClientStreamService.class);
+    
+    @Autowired
+    private MarketDataFeed marketDataFeed;
+    
+    @Autowired
+    private MatchingEngine matchingEngine;
+    
+    @Value("${trading.streaming.sender-threads:4}")
+    private int senderThreads;
+    
+    @Value("${trading.streaming.max-pending-trades:1000}")
+    private int maxPendingTrades;
+    
+    @Value("${trading.market-data.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs;
+    
+    // A client whose write blocks longer than this is disconnected
+    @Value("${trading.streaming.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+    
+    private ExecutorService senders;
+    private ScheduledExecutorService sendWatchdog;
+    private final Set<ClientStream> streams = ConcurrentHashMap.newKeySet();
+    
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "stream-sender-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sendWatchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stream-send-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkMs = Math.max(100L, sendTimeoutMs / 4);
+        sendWatchdog.scheduleWithFixedDelay(this::closeStalledStreams, checkMs, checkMs, TimeUnit.MILLISECONDS);
+    }
+    
+    private void closeStalledStreams() {
+        long now = System.currentTimeMillis();
+        for (ClientStream stream : streams) {
+            long sendStartedAt = stream.sendStartedAt;
+            if (sendStartedAt != 0L && now - sendStartedAt > sendTimeoutMs) {
+                logger.debug("Closing stream blocked in a send for {} ms", now - sendStartedAt);
+                stream.emitter.completeWithError(new TimeoutException("Send blocked for over " + sendTimeoutMs + " ms"));
+                stream.close();
+            }
+        }
+    }
+    
+    /**
+     * Opens a stream of the given symbols' books and trades, plus the order updates of
+     * {@code username} when it is not null. Each symbol starts with a "refresh" event.
+     */
+    public SseEmitter open(Set<String> symbols, String username) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        ClientStream stream = new ClientStream(emitter, symbols, username);
+        
+        emitter.onCompletion(stream::close);
+        emitter.onTimeout(stream::close);
+        emitter.onError(e -> stream.close());
+        marketDataFeed.subscribe(stream);
+        streams.add(stream);
+        
+        for (String symbol : symbols) {
+            if (!matchingEngine.requestMarketDataRefresh(symbol)) {
+                stream.onRefresh(new L2Refresh(symbol, 0L, Collections.emptyMap(), Collections.emptyMap()));
+            }
+        }
+        return emitter;
+    }
+    
+    public int getOpenStreamCount() {
+        return streams.size();
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (sendWatchdog != null) {
+            sendWatchdog.shutdownNow();
+        }
+        if (senders != null) {
+            senders.shutdownNow();
+        }
+    }
+    
+    // Package-private so its conflation can be tested against a stub emitter
+    final class ClientStream implements MarketDataListener {
+        
+        private final SseEmitter emitter;
+        private final Set<String> symbols;
+        private final String username;
+        
+        // Pending state, guarded by this; replaced wholesale on each flush
+        private Map<String, L2Refresh> refreshes = new LinkedHashMap<>();
+        private Map<String, L2Update> levels = new LinkedHashMap<>();
+        private ArrayDeque<TradeTick> trades = new ArrayDeque<>();
+        private Map<String, OrderStatusEvent> orders = new LinkedHashMap<>();
+        private long droppedTrades;
+        private boolean flushScheduled;
+        private boolean closed;
+        // Start of the write in flight, 0 when none; read by the send watchdog
+        private volatile long sendStartedAt;
+        
+        ClientStream(SseEmitter emitter, Set<String> symbols, String username) {
+            this.emitter = emitter;
+            this.symbols = symbols;
+            this.username = username;
+        }
+        
+        @Override
+        public void onUpdate(L2Update update) {
+            if (!symbols.contains(update.getSymbol())) {
+                return;
+            }
+            synchronized (this) {
+                // Sizes are absolute, so only the latest update per level matters
+                levels.put(update.getSymbol() + ':' + update.getSide() + ':' + update.getPrice().toPlainString(), update);
+                scheduleFlush();
+            }
+        }
+        
+        @Override
+        public void onRefresh(L2Refresh refresh) {
+            if (!symbols.contains(refresh.getSymbol())) {
+                return;
+            }
+            synchronized (this) {
+                // Supersedes every pending level change of the symbol
+                levels.values().removeIf(update -> update.getSymbol().equals(refresh.getSymbol()));
+                refreshes.put(refresh.getSymbol(), refresh);
+                scheduleFlush();
+            }
+        }
+        
+        @Override
+        public void onTrade(TradeTick trade) {
+            if (!symbols.contains(trade.getSymbol())) {
+                return;
+            }
+            synchronized (this) {
+                if (trades.size() >= maxPendingTrades) {
+                    trades.pollFirst();
+                    droppedTrades++;
+                }
+                trades.addLast(trade);
+                scheduleFlush();
+            }
+        }
+        
+        @Override
+        public void onOrderStatus(OrderStatusEvent event) {
+            if (username == null || !username.equals(event.getUsername())) {
+                return;
+            }
+            synchronized (this) {
+                orders.put(event.getOrderId(), event);
+                scheduleFlush();
+            }
+        }
+        
+        private void scheduleFlush() {
+            if (!flushScheduled && !closed) {
+                flushScheduled = true;
+                senders.execute(this::flush);
+            }
+        }
+        
+        private void flush() {
+            while (true) {
+                Map<String, L2Refresh> pendingRefreshes;
+                Map<String, L2Update> pendingLevels;
+                ArrayDeque<TradeTick> pendingTrades;
+                Map<String, OrderStatusEvent> pendingOrders;
+                long dropped;
+                synchronized (this) {
+                    if (closed || (refreshes.isEmpty() && levels.isEmpty() && trades.isEmpty() && orders.isEmpty())) {
+                        flushScheduled = false;
+                        return;
+                    }
+                    pendingRefreshes = refreshes;
+                    pendingLevels = levels;
+                    pendingTrades = trades;
+                    pendingOrders = orders;
+                    dropped = droppedTrades;
+                    refreshes = new LinkedHashMap<>();
+                    levels = new LinkedHashMap<>();
+                    trades = new ArrayDeque<>();
+                    orders = new LinkedHashMap<>();
+                    droppedTrades = 0;
+                }
+                
+                try {
+                    for (L2Refresh refresh : pendingRefreshes.values()) {
+                        send("refresh", refresh);
+                    }
+                    if (!pendingLevels.isEmpty()) {
+                        send("book", new ArrayList<>(pendingLevels.values()));
+                    }
+                    if (dropped > 0) {
+                        send("lag", Collections.singletonMap("droppedTrades", dropped));
+                    }
+                    if (!pendingTrades.isEmpty()) {
+                        send("trades", new ArrayList<>(pendingTrades));
+                    }
+                    if (!pendingOrders.isEmpty()) {
+                        send("orders", new ArrayList<>(pendingOrders.values()));
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    logger.debug("Closing stream after failed send: {}", e.getMessage());
+                    emitter.completeWithError(e);
+                    close();
+                    return;
+                }
+            }
+        }
+        
+        private void send(String name, Object data) throws IOException {
+            sendStartedAt = System.currentTimeMillis();
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+            } finally {
+                sendStartedAt = 0L;
+            }
+        }
+        
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            marketDataFeed.unsubscribe(this);
+            streams.remove(this);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.trading.service;
 
 import com.trading.domain.Order;
 import com.trading.domain.OrderSide;
+import com.trading.engine.TopOfBook;
 import com.trading.model.RiskMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -20,6 +21,9 @@ public class EnhancedRiskManagementService {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private MatchingEngine matchingEngine;
+
     // Risk limits configuration
     private final Map<String, BigDecimal> positionLimits = new ConcurrentHashMap<>();
     private final Map<String, BigDecimal> orderValueLimits = new ConcurrentHashMap<>();
@@ -312,6 +316,12 @@ public class EnhancedRiskManagementService {
     }
 
     private BigDecimal getMarketPrice(String symbol) {
+        // Mid of the live book when both sides are quoted
+        TopOfBook topOfBook = matchingEngine.getTopOfBook(symbol);
+        if (topOfBook != null && topOfBook.getMidPrice() != null) {
+            return topOfBook.getMidPrice();
+        }
+
         // Simplified market prices
         Map<String, BigDecimal> prices = Map.of(
             "AAPL", new BigDecimal("150.50"),
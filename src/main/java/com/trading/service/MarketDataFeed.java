@@ -0,0 +1,160 @@
+package com.trading.service;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.trading.engine.L2Refresh;
+import com.trading.engine.L2Update;
+import com.trading.engine.MarketDataListener;
+import com.trading.engine.OrderStatusEvent;
+import com.trading.engine.TradeTick;
+
+/**
+ * In-process fan-out of the engine's outbound events: the L2 market data feed,
+ * trades and order status changes.
+ * Everything goes through one bounded queue, and a single dispatcher thread delivers
+ * it to every listener in publication order. Matching threads hand L2 updates over
+ * and never wait: when the queue is full an update is dropped, and listeners recover
+ * from the resulting sequence gap at the next refresh. Trades and order status
+ * changes have no such recovery, so their publishers wait for room instead.
+ * Stopping delivers what is already queued.
+ */
+@Service
+public class MarketDataFeed {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MarketDataFeed.class);
+    
+    @Value("${trading.market-data.queue-capacity:65536}")
+    private int queueCapacity;
+    
+    private final List<MarketDataListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private BlockingQueue<Object> queue;
+    private Thread dispatcherThread;
+    private volatile boolean running;
+    
+    @PostConstruct
+    public void start() {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.running = true;
+        this.dispatcherThread = new Thread(this::dispatchLoop, "market-data-dispatcher");
+        this.dispatcherThread.setDaemon(true);
+        this.dispatcherThread.start();
+    }
+    
+    public void subscribe(MarketDataListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void unsubscribe(MarketDataListener listener) {
+        listeners.remove(listener);
+    }
+    
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+    
+    public void publish(List<L2Update> updates) {
+        for (L2Update update : updates) {
+            offer(update);
+        }
+    }
+    
+    public void publish(L2Refresh refresh) {
+        offer(refresh);
+    }
+    
+    // Blocks while the queue is full
+    public void publish(TradeTick trade) {
+        put(trade);
+    }
+    
+    // Blocks while the queue is full
+    public void publish(OrderStatusEvent event) {
+        put(event);
+    }
+    
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+    
+    private void offer(Object message) {
+        if (!queue.offer(message) && dropped.getAndIncrement() % 10_000 == 0) {
+            logger.warn("Market data queue full; {} messages dropped so far", dropped.get());
+        }
+    }
+    
+    private void put(Object message) {
+        try {
+            while (!queue.offer(message, 100, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    logger.warn("Market data feed stopped; {} not delivered", message);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while queueing market data; {} not delivered", message);
+        }
+    }
+    
+    private void dispatchLoop() {
+        while (running || !queue.isEmpty()) {
+            try {
+                Object message = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (message != null) {
+                    dispatch(message);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private void dispatch(Object message) {
+        for (MarketDataListener listener : listeners) {
+            try {
+                if (message instanceof L2Update) {
+                    listener.onUpdate((L2Update) message);
+                } else if (message instanceof L2Refresh) {
+                    listener.onRefresh((L2Refresh) message);
+                } else if (message instanceof TradeTick) {
+                    listener.onTrade((TradeTick) message);
+                } else if (message instanceof OrderStatusEvent) {
+                    listener.onOrderStatus((OrderStatusEvent) message);
+                }
+            } catch (Exception e) {
+                logger.error("Market data listener failed", e);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatcherThread != null) {
+            // The loop drains the queue before it exits
+            try {
+                dispatcherThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (dispatcherThread.isAlive()) {
+                logger.warn("Market data dispatcher still draining {} messages at shutdown", queue.size());
+                dispatcherThread.interrupt();
+            }
+        }
+    }
+}
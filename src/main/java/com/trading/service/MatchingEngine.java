@@ -1,15 +1,30 @@
 package com.trading.service;
 
 import java.math.BigDecimal;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,28 +33,104 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import com.trading.domain.Allocation;
+import com.trading.domain.BookOrder;
+import com.trading.domain.BookOrderPool;
 import com.trading.domain.Order;
 import com.trading.domain.OrderBook;
 import com.trading.domain.OrderSide;
 import com.trading.domain.OrderStatus;
 import com.trading.domain.OrderType;
+import com.trading.domain.SelfTradePrevention;
+import com.trading.domain.TickScale;
+import com.trading.domain.TimeInForce;
 import com.trading.domain.Trade;
-import com.trading.repository.OrderRepository;
-import com.trading.repository.TradeRepository;
+import com.trading.engine.BookSnapshot;
+import com.trading.engine.DepthSnapshot;
+import com.trading.engine.ExecutionEvent;
+import com.trading.engine.ExecutionQueue;
+import com.trading.engine.IdTable;
+import com.trading.engine.IndicativeUncross;
+import com.trading.engine.InputJournal;
+import com.trading.engine.L2BookTracker;
+import com.trading.engine.MatchListener;
+import com.trading.engine.OrderMatcher;
+import com.trading.engine.OrderStatusEvent;
+import com.trading.engine.RingIngress;
+import com.trading.engine.SnapshotStore;
+import com.trading.engine.TimingWheel;
+import com.trading.engine.TopOfBook;
+import com.trading.engine.TradeTick;
+import com.trading.engine.WaitStrategy;
 
 @Service
 public class MatchingEngine {
     
     private static final Logger logger = LoggerFactory.getLogger(MatchingEngine.class);
     
+    private static final String SELF_TRADE_PREVENTED = "Cancelled by self-trade prevention";
+    private static final MatchListener REPLAYED_FILL = (aggressor, resting, quantity, price) -> { };
+    
     private final Map<String, OrderBook> orderBooks = new ConcurrentHashMap<>();
+    
+    // Published after every book event; readers never touch the books themselves
+    private final Map<String, TopOfBook> topOfBooks = new ConcurrentHashMap<>();
+    
+    // Conflated depth views: rebuilt on change at most every depthRefreshMs; symbols with
+    // changes held back by the interval are flushed by the depth refresher
+    private final Map<String, DepthSnapshot> depthSnapshots = new ConcurrentHashMap<>();
+    private final Set<String> pendingDepthRefresh = ConcurrentHashMap.newKeySet();
+    private final String depthEtagPrefix = Long.toHexString(System.currentTimeMillis());
+    
+    // Incremental L2 feed: one tracker per book, confined to the book's owning thread
+    private final Map<String, L2BookTracker> l2Trackers = new ConcurrentHashMap<>();
+    
+    // DAY and GTD deadlines: one wheel per book, confined to the book's owning thread
+    private final Map<String, TimingWheel> expiryWheels = new ConcurrentHashMap<>();
+    
+    // Latest equilibrium of each book in a call auction phase
+    private final Map<String, IndicativeUncross> indicativeUncrosses = new ConcurrentHashMap<>();
+    
+    // Fills of an uncross until it is done, by symbol id; only the symbol's publisher thread touches an entry
+    private final Map<Integer, UncrossBatch> uncrossBatches = new ConcurrentHashMap<>();
+    
     private ExecutorService executorService;
     
+    // Sharded mode: each symbol is hashed onto one single-threaded shard that owns its books
+    private ExecutorService[] shards;
+    
+    // Executions leave the matching threads in preallocated events, one queue per shard;
+    // trade entities, entity updates and publishing happen on the queue's publisher thread
+    private ExecutionQueue[] executionQueues;
+    private final AtomicLong tradeSequence = new AtomicLong();
+    private final String tradeIdPrefix = "TRADE_" + System.currentTimeMillis() + "_";
+    private final MatchListener publishFill = new MatchListener() {
+        @Override
+        public void onMatch(BookOrder aggressor, BookOrder resting, long quantity, long price) {
+            publishFill(aggressor, resting, quantity, price);
+        }
+        
+        @Override
+        public void onSelfTradePrevented(BookOrder aggressor, BookOrder resting) {
+            publishSelfTradePrevented(resting);
+        }
+    };
+    private final MatchListener publishAuctionFill = this::publishAuctionFill;
+    
+    // Book entries refer to symbols, accounts and users by these ids, never to the JPA entity
+    private final IdTable symbols = new IdTable();
+    private final IdTable accounts = new IdTable();
+    private final IdTable owners = new IdTable();
+    
+    private final OrderMatcher orderMatcher = new OrderMatcher();
+    private TickScale tickScale = TickScale.DEFAULT;
+    private long lotUnits = TickScale.DEFAULT.toUnits(BigDecimal.ONE);
+    
     @Autowired
-    private OrderRepository orderRepository;
+    private OrderPersistenceService persistenceService;
     
     @Autowired
-    private TradeRepository tradeRepository;
+    private MarketDataFeed marketDataFeed;
     
     @Autowired
     private KafkaTemplate<String, String> kafkaTemplate;
@@ -50,6 +141,123 @@ public class MatchingEngine {
     @Value("${trading.matching-engine.order-timeout-seconds:30}")
     private int orderTimeoutSeconds;
     
+    @Value("${trading.order-book.tick-size:0.01}")
+    private BigDecimal tickSize;
+    
+    // Symbols whose resting orders are kept off-heap (see OrderBook)
+    @Value("${trading.order-book.off-heap-symbols:}")
+    private String[] offHeapSymbols;
+    
+    // Symbols whose price levels sit in a tick-indexed array ladder (see ArrayLadder)
+    @Value("${trading.order-book.array-ladder-symbols:}")
+    private String[] arrayLadderSymbols;
+    
+    @Value("${trading.order-book.array-ladder-ticks:4096}")
+    private int arrayLadderTicks;
+    
+    // Symbols whose levels share fills pro rata (see Allocation)
+    @Value("${trading.order-book.pro-rata-symbols:}")
+    private String[] proRataSymbols;
+    
+    // Symbols whose levels fill their oldest order first, then share the rest pro rata
+    @Value("${trading.order-book.top-pro-rata-symbols:}")
+    private String[] topProRataSymbols;
+    
+    // Pro-rata shares are rounded down to whole lots of this quantity
+    @Value("${trading.order-book.lot-size:1}")
+    private BigDecimal lotSize;
+    
+    @Value("${trading.order-book.depth-levels:10}")
+    private int depthLevels;
+    
+    // 0 = rebuild the depth view after every change
+    @Value("${trading.order-book.depth-refresh-ms:100}")
+    private long depthRefreshMs;
+    
+    @Value("${trading.matching-engine.mode:pooled}")
+    private String mode;
+    
+    @Value("${trading.matching-engine.shard-count:0}")
+    private int shardCount;
+    
+    // Sharded mode only. executor: per-shard executor queue; ring: preallocated ring buffer, reject when full
+    @Value("${trading.matching-engine.ingress:executor}")
+    private String ingress;
+    
+    @Value("${trading.matching-engine.ring-size:65536}")
+    private int ringSize;
+    
+    @Value("${trading.matching-engine.wait-strategy:park}")
+    private String waitStrategy;
+    
+    @Value("${trading.matching-engine.execution-queue-size:65536}")
+    private int executionQueueSize;
+    
+    // Resolution of order expiry: deadlines are checked this often
+    @Value("${trading.matching-engine.expiry-tick-ms:100}")
+    private long expiryTickMs;
+    
+    // Symbols that follow the call auction schedule below
+    @Value("${trading.matching-engine.auction.symbols:}")
+    private String[] auctionSymbols;
+    
+    // Daily call phases as HH:mm-HH:mm, e.g. an opening and a closing call; each ends in an uncross
+    @Value("${trading.matching-engine.auction.calls:}")
+    private String[] auctionCalls;
+    
+    // What an aggressor does on meeting its own account's resting order (see SelfTradePrevention)
+    @Value("${trading.matching-engine.self-trade-prevention.mode:none}")
+    private String selfTradePreventionMode;
+    
+    // Accounts the mode applies to; empty = every account
+    @Value("${trading.matching-engine.self-trade-prevention.accounts:}")
+    private String[] selfTradePreventionAccounts;
+    
+    @Value("${trading.journal.enabled:false}")
+    private boolean journalEnabled;
+    
+    @Value("${trading.journal.directory:data/journal}")
+    private String journalDirectory;
+    
+    @Value("${trading.journal.segment-size-mb:64}")
+    private int journalSegmentSizeMb;
+    
+    // 0 = rely on the periodic sync only
+    @Value("${trading.journal.sync-every-records:0}")
+    private int journalSyncEveryRecords;
+    
+    @Value("${trading.journal.sync-interval-ms:10}")
+    private long journalSyncIntervalMs;
+    
+    @Value("${trading.market-data.enabled:true}")
+    private boolean marketDataEnabled;
+    
+    // Full L2 refresh per symbol for late joiners and consumers that saw a gap. 0 = on request only
+    @Value("${trading.market-data.refresh-interval-seconds:5}")
+    private long marketDataRefreshSeconds;
+    
+    // Snapshots need the journal: they record the sequence replay resumes from. 0 = disabled
+    @Value("${trading.snapshot.interval-seconds:0}")
+    private long snapshotIntervalSeconds;
+    
+    @Value("${trading.snapshot.directory:data/snapshots}")
+    private String snapshotDirectory;
+    
+    @Value("${trading.snapshot.retained:2}")
+    private int snapshotsRetained;
+    
+    private InputJournal journal;
+    private ScheduledExecutorService journalSyncer;
+    private SnapshotStore snapshotStore;
+    private ScheduledExecutorService snapshotter;
+    private ScheduledExecutorService depthRefresher;
+    private ScheduledExecutorService marketDataRefresher;
+    private ScheduledExecutorService expiryScheduler;
+    private ScheduledExecutorService auctionScheduler;
+    private final List<LocalTime[]> callPhases = new ArrayList<>();
+    private SelfTradePrevention selfTradePrevention = SelfTradePrevention.NONE;
+    private Set<String> selfTradePreventedAccounts = Set.of();
+    
     public MatchingEngine() {
         // Initialize with default values, will be updated by @PostConstruct
         this.executorService = Executors.newFixedThreadPool(4);
@@ -60,170 +268,1035 @@ public class MatchingEngine {
         // Shutdown the default executor and create a new one with the configured size
         if (this.executorService != null) {
             this.executorService.shutdown();
+            this.executorService = null;
         }
-        this.executorService = Executors.newFixedThreadPool(threadPoolSize);
-    }
-    
-    public void processOrder(Order order) {
-        executorService.submit(() -> {
-            try {
-                matchOrder(order);
-            } catch (Exception e) {
-                logger.error("Error processing order: {}", order.getOrderId(), e);
-                rejectOrder(order, "Processing error: " + e.getMessage());
-            }
-        });
-    }
-    
-    private void matchOrder(Order order) {
-        String symbol = order.getSymbol();
-        OrderBook orderBook = getOrCreateOrderBook(symbol);
         
-        // Add order to order book
-        orderBook.addOrder(order);
-        orderRepository.save(order);
+        this.tickScale = new TickScale(tickSize);
+        this.lotUnits = tickScale.toUnits(lotSize);
+        if (lotUnits <= 0) {
+            throw new IllegalArgumentException("Lot size must be positive: " + lotSize);
+        }
+        this.selfTradePrevention = SelfTradePrevention.fromName(selfTradePreventionMode);
+        this.selfTradePreventedAccounts = Set.copyOf(Arrays.asList(selfTradePreventionAccounts));
+        
+        if (journalEnabled) {
+            openJournal();
+        }
         
-        // Try to match the order
-        List<Trade> trades = new ArrayList<>();
+        if (journal != null && snapshotIntervalSeconds > 0) {
+            this.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "book-snapshotter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(this::takeSnapshot, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
         
-        if (order.getSide() == OrderSide.BUY) {
-            trades = matchBuyOrder(order, orderBook);
+        if (isSharded()) {
+            int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+            this.shards = new ExecutorService[count];
+            for (int i = 0; i < count; i++) {
+                String threadName = "matching-shard-" + i;
+                if (isRingIngress()) {
+                    shards[i] = new RingIngress(threadName, ringSize, WaitStrategy.fromName(waitStrategy), this::handleNewOrder);
+                } else {
+                    shards[i] = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+            logger.info("Matching engine started in sharded mode with {} shards, {} ingress", count,
+                       isRingIngress() ? "ring (" + ringSize + ", " + waitStrategy + ")" : "executor");
         } else {
-            trades = matchSellOrder(order, orderBook);
+            if ("ring".equalsIgnoreCase(ingress)) {
+                logger.warn("Ring ingress requires sharded mode; using the shared pool");
+            }
+            this.executorService = Executors.newFixedThreadPool(threadPoolSize);
+            logger.info("Matching engine started in pooled mode with {} threads", threadPoolSize);
         }
         
-        // Process trades
-        for (Trade trade : trades) {
-            processTrade(trade);
+        // Shard i publishes through queue i; the pooled threads share one queue
+        this.executionQueues = new ExecutionQueue[shards != null ? shards.length : 1];
+        for (int i = 0; i < executionQueues.length; i++) {
+            executionQueues[i] = new ExecutionQueue("execution-publisher-" + i, executionQueueSize,
+                                                    WaitStrategy.fromName(waitStrategy), this::onExecution);
         }
         
-        // Update order book
-        orderBook.updateOrder(order);
-        orderRepository.save(order);
+        if (depthRefreshMs > 0) {
+            this.depthRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "depth-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            depthRefresher.scheduleWithFixedDelay(this::flushPendingDepth, depthRefreshMs, depthRefreshMs, TimeUnit.MILLISECONDS);
+        }
         
-        // Publish order update to Kafka
-        publishOrderUpdate(order);
+        if (marketDataEnabled && marketDataRefreshSeconds > 0) {
+            this.marketDataRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "market-data-refresher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            marketDataRefresher.scheduleWithFixedDelay(this::publishMarketDataRefreshes,
+                marketDataRefreshSeconds, marketDataRefreshSeconds, TimeUnit.SECONDS);
+        }
+        
+        this.expiryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expiryScheduler.scheduleWithFixedDelay(this::scheduleExpiries, expiryTickMs, expiryTickMs, TimeUnit.MILLISECONDS);
+        
+        for (String call : auctionCalls) {
+            String[] bounds = call.trim().split("-");
+            LocalTime start = LocalTime.parse(bounds[0].trim());
+            LocalTime end = bounds.length == 2 ? LocalTime.parse(bounds[1].trim()) : null;
+            if (end == null || !start.isBefore(end)) {
+                throw new IllegalArgumentException("Call phase must be HH:mm-HH:mm within one day: " + call);
+            }
+            callPhases.add(new LocalTime[] {start, end});
+        }
+        if (auctionSymbols.length > 0 && !callPhases.isEmpty()) {
+            this.auctionScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "call-auction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            auctionScheduler.scheduleWithFixedDelay(this::followAuctionSchedule, 1, 1, TimeUnit.SECONDS);
+            logger.info("Call auctions {} for {}", String.join(", ", auctionCalls), String.join(", ", auctionSymbols));
+        }
     }
     
-    private List<Trade> matchBuyOrder(Order buyOrder, OrderBook orderBook) {
-        List<Trade> trades = new ArrayList<>();
-        BigDecimal remainingQuantity = buyOrder.getRemainingQuantity();
+    private void openJournal() {
+        long start = System.currentTimeMillis();
+        this.journal = new InputJournal(Paths.get(journalDirectory), journalSegmentSizeMb * 1024 * 1024, journalSyncEveryRecords);
         
-        // Get all ask orders sorted by price (ascending)
-        Map<BigDecimal, BigDecimal> askLevels = orderBook.getAskLevels(100);
+        long replayFrom = snapshotIntervalSeconds > 0 ? restoreSnapshot() : 0L;
         
-        for (Map.Entry<BigDecimal, BigDecimal> entry : askLevels.entrySet()) {
-            BigDecimal askPrice = entry.getKey();
-            
-            // Check if buy order can match at this price level
-            if (buyOrder.getType() == OrderType.LIMIT && buyOrder.getPrice().compareTo(askPrice) < 0) {
-                break; // Price too high for limit order
+        // Rebuild every book before any new input is accepted. Books restored from a snapshot
+        // may already include records past replayFrom, so each skips what it has applied
+        long lastSequence = journal.replay(replayFrom, new InputJournal.Handler() {
+            @Override
+            public void onNewOrder(long sequence, Order order) {
+                OrderBook orderBook = replayTarget(order.getSymbol(), sequence);
+                if (orderBook != null) {
+                    matchOrder(order, orderBook, true);
+                }
             }
             
-            List<Order> askOrders = orderBook.getAsksAtPrice(askPrice);
+            @Override
+            public void onAmend(long sequence, String orderId, String symbol, BigDecimal price, BigDecimal quantity) {
+                OrderBook orderBook = replayTarget(symbol, sequence);
+                if (orderBook != null) {
+                    amendOrder(orderBook, orderId, price, quantity, true);
+                }
+            }
             
-            for (Order askOrder : askOrders) {
-                if (remainingQuantity.compareTo(BigDecimal.ZERO) <= 0) {
-                    break;
+            @Override
+            public void onCancel(long sequence, String orderId, String symbol) {
+                OrderBook orderBook = replayTarget(symbol, sequence);
+                if (orderBook != null) {
+                    cancelOrder(orderBook, orderId, true);
                 }
-                
-                if (askOrder.getStatus() != OrderStatus.PENDING) {
-                    continue;
+            }
+            
+            @Override
+            public void onAuctionStart(long sequence, String symbol) {
+                OrderBook orderBook = replayTarget(symbol, sequence);
+                if (orderBook != null) {
+                    orderBook.setInAuction(true);
                 }
-                
-                BigDecimal matchQuantity = remainingQuantity.min(askOrder.getRemainingQuantity());
-                BigDecimal matchPrice = askPrice;
-                
-                // Create trade
-                Trade trade = createTrade(buyOrder, askOrder, matchQuantity, matchPrice);
-                trades.add(trade);
-                
-                // Update quantities
-                remainingQuantity = remainingQuantity.subtract(matchQuantity);
-                buyOrder.updateFilledQuantity(matchQuantity);
-                askOrder.updateFilledQuantity(matchQuantity);
-                
-                // Update order book
-                if (askOrder.isFullyFilled()) {
-                    orderBook.removeOrder(askOrder.getOrderId());
-                } else {
-                    orderBook.updateOrder(askOrder);
+            }
+            
+            @Override
+            public void onUncross(long sequence, String symbol) {
+                OrderBook orderBook = replayTarget(symbol, sequence);
+                if (orderBook != null) {
+                    uncross(orderBook, true);
                 }
-                
-                orderBook.updateOrder(buyOrder);
             }
+        });
+        logger.info("Replayed input journal from sequence {} to {} into {} books in {} ms",
+                   replayFrom, lastSequence, orderBooks.size(), System.currentTimeMillis() - start);
+        for (OrderBook orderBook : orderBooks.values()) {
+            publishTopOfBook(orderBook);
+            refreshDepth(orderBook, true);
+            publishIndicativeUncross(orderBook);
         }
         
-        return trades;
+        if (journalSyncIntervalMs > 0) {
+            this.journalSyncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            journalSyncer.scheduleWithFixedDelay(journal::sync, journalSyncIntervalMs, journalSyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
     }
     
-    private List<Trade> matchSellOrder(Order sellOrder, OrderBook orderBook) {
-        List<Trade> trades = new ArrayList<>();
-        BigDecimal remainingQuantity = sellOrder.getRemainingQuantity();
-        
-        // Get all bid orders sorted by price (descending)
-        Map<BigDecimal, BigDecimal> bidLevels = orderBook.getBidLevels(100);
+    private OrderBook replayTarget(String symbol, long sequence) {
+        OrderBook orderBook = getOrCreateOrderBook(symbol);
+        if (sequence <= orderBook.getLastSequence()) {
+            return null;
+        }
+        orderBook.setLastSequence(sequence);
+        return orderBook;
+    }
+    
+    /**
+     * Loads the newest snapshot into the book map and returns the journal sequence
+     * replay must resume from, or 0 when there is no usable snapshot.
+     */
+    private long restoreSnapshot() {
+        this.snapshotStore = new SnapshotStore(Paths.get(snapshotDirectory), snapshotsRetained);
+        SnapshotStore.Snapshot snapshot = snapshotStore.loadLatest();
+        if (snapshot == null) {
+            return 0L;
+        }
+        if (new BigDecimal(snapshot.getTickSize()).compareTo(tickScale.getTickSize()) != 0) {
+            logger.warn("Ignoring snapshot taken with tick size {}; replaying the full journal", snapshot.getTickSize());
+            return 0L;
+        }
         
-        for (Map.Entry<BigDecimal, BigDecimal> entry : bidLevels.entrySet()) {
-            BigDecimal bidPrice = entry.getKey();
+        long start = System.currentTimeMillis();
+        for (BookSnapshot book : snapshot.getBooks()) {
+            OrderBook orderBook = book.restoreInto(newOrderBook(book.getSymbol()), symbols, accounts, owners);
+            orderBooks.put(book.getSymbol(), orderBook);
+            orderBook.forEachOrder(OrderSide.BUY, this::scheduleExpiry);
+            orderBook.forEachOrder(OrderSide.SELL, this::scheduleExpiry);
+            orderBook.forEachStop(this::scheduleExpiry);
+        }
+        logger.info("Restored {} books from snapshot at sequence {} in {} ms",
+                   snapshot.getBooks().size(), snapshot.getReplayFrom(), System.currentTimeMillis() - start);
+        return snapshot.getReplayFrom();
+    }
+    
+    /**
+     * Captures every book on the thread that owns it, one book at a time, and writes
+     * the result from the snapshot thread. Matching only pauses for the in-memory copy
+     * of each book; serialization and disk I/O happen off the matching threads.
+     */
+    private void takeSnapshot() {
+        try {
+            long start = System.currentTimeMillis();
+            // Everything up to here is applied before any capture task below runs on its book's thread
+            long replayFrom = journal.getLastSequence();
             
-            // Check if sell order can match at this price level
-            if (sellOrder.getType() == OrderType.LIMIT && sellOrder.getPrice().compareTo(bidPrice) > 0) {
-                break; // Price too low for limit order
+            List<BookSnapshot> books = new ArrayList<>();
+            for (String symbol : orderBooks.keySet()) {
+                books.add(queryOrderBook(symbol, orderBook -> BookSnapshot.capture(orderBook, accounts, owners)));
             }
             
-            List<Order> bidOrders = orderBook.getBidsAtPrice(bidPrice);
+            Path path = snapshotStore.write(replayFrom, tickScale.getTickSize().toPlainString(), books);
+            logger.info("Wrote snapshot {} of {} books in {} ms", path.getFileName(), books.size(),
+                       System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to write order book snapshot", e);
+        }
+    }
+    
+    public void processOrder(Order order) {
+        if (isRingIngress()) {
+            // Explicit backpressure: a shard that has fallen a full ring behind turns orders away
+            if (!((RingIngress) shardFor(order.getSymbol())).tryPublish(order)) {
+                rejectOrder(order, "Matching engine busy, order not accepted");
+            }
+            return;
+        }
+        submit(order.getSymbol(), orderBook -> newOrder(order, orderBook));
+    }
+    
+    // Ring ingress: runs on the shard's consumer thread, as applyAndPublish without a task to allocate
+    private void handleNewOrder(Order order) {
+        OrderBook orderBook = getOrCreateOrderBook(order.getSymbol());
+        L2BookTracker tracker = l2TrackerFor(orderBook);
+        try {
+            newOrder(order, orderBook);
+        } finally {
+            publishChanges(orderBook, tracker);
+        }
+    }
+    
+    private Void newOrder(Order order, OrderBook orderBook) {
+        try {
+            if (journal != null) {
+                orderBook.setLastSequence(journal.appendNewOrder(order));
+            }
+            matchOrder(order, orderBook, false);
+        } catch (Exception e) {
+            logger.error("Error processing order: {}", order.getOrderId(), e);
+            rejectOrder(order, "Processing error: " + e.getMessage());
+        }
+        return null;
+    }
+    
+    /**
+     * Cancels a resting or waiting stop order on the thread that owns its book. Acknowledged
+     * asynchronously: the owner sees the CANCELLED update once it is persisted. An
+     * order that has already left the book (filled, cancelled) is left alone.
+     */
+    public void cancelOrder(String orderId, String symbol) {
+        submit(symbol, orderBook -> {
+            if (orderBook.getOrder(orderId) == null && orderBook.getStop(orderId) == null) {
+                logger.info("Cancel ignored, order not resting: {}", orderId);
+                return null;
+            }
             
-            for (Order bidOrder : bidOrders) {
-                if (remainingQuantity.compareTo(BigDecimal.ZERO) <= 0) {
-                    break;
-                }
-                
-                if (bidOrder.getStatus() != OrderStatus.PENDING) {
-                    continue;
-                }
-                
-                BigDecimal matchQuantity = remainingQuantity.min(bidOrder.getRemainingQuantity());
-                BigDecimal matchPrice = bidPrice;
-                
-                // Create trade
-                Trade trade = createTrade(bidOrder, sellOrder, matchQuantity, matchPrice);
-                trades.add(trade);
-                
-                // Update quantities
-                remainingQuantity = remainingQuantity.subtract(matchQuantity);
-                sellOrder.updateFilledQuantity(matchQuantity);
-                bidOrder.updateFilledQuantity(matchQuantity);
-                
-                // Update order book
-                if (bidOrder.isFullyFilled()) {
-                    orderBook.removeOrder(bidOrder.getOrderId());
-                } else {
-                    orderBook.updateOrder(bidOrder);
+            if (journal != null) {
+                orderBook.setLastSequence(journal.appendCancel(orderId, symbol));
+            }
+            cancelOrder(orderBook, orderId, false);
+            return null;
+        });
+    }
+    
+    /**
+     * Gives a resting or stop order a new limit price and total quantity on the thread
+     * that owns its book, acknowledged asynchronously like {@link #cancelOrder}.
+     */
+    public void amendOrder(String orderId, String symbol, BigDecimal price, BigDecimal quantity) {
+        submit(symbol, orderBook -> {
+            if (orderBook.getOrder(orderId) == null && orderBook.getStop(orderId) == null) {
+                logger.info("Amend ignored, order not resting: {}", orderId);
+                return null;
+            }
+            
+            if (journal != null) {
+                orderBook.setLastSequence(journal.appendAmend(orderId, symbol, price, quantity));
+            }
+            amendOrder(orderBook, orderId, price, quantity, false);
+            return null;
+        });
+    }
+    
+    /**
+     * Puts a symbol's book into its call auction phase on the thread that owns it:
+     * orders accumulate without matching until {@link #uncross}. A book already in
+     * the phase is left alone.
+     */
+    public void startAuction(String symbol) {
+        submit(symbol, orderBook -> {
+            if (orderBook.isInAuction()) {
+                return null;
+            }
+            
+            if (journal != null) {
+                orderBook.setLastSequence(journal.appendAuctionStart(symbol));
+            }
+            orderBook.setInAuction(true);
+            logger.info("Call auction started: {}", symbol);
+            return null;
+        });
+    }
+    
+    /**
+     * Ends a symbol's call auction phase on the thread that owns its book: all crossing
+     * volume executes at the equilibrium price in one batch and continuous matching
+     * resumes. A book not in the phase is left alone.
+     */
+    public void uncross(String symbol) {
+        submit(symbol, orderBook -> {
+            if (!orderBook.isInAuction()) {
+                return null;
+            }
+            
+            if (journal != null) {
+                orderBook.setLastSequence(journal.appendUncross(symbol));
+            }
+            uncross(orderBook, false);
+            return null;
+        });
+    }
+    
+    private void uncross(OrderBook orderBook, boolean replaying) {
+        orderBook.setInAuction(false);
+        long volume = orderMatcher.uncross(orderBook, replaying ? REPLAYED_FILL : publishAuctionFill);
+        if (!replaying && volume > 0) {
+            ExecutionQueue queue = executionQueueFor(orderBook.getSymbol());
+            ExecutionEvent event = queue.claim();
+            event.setUncrossDone(symbols.idOf(orderBook.getSymbol()), System.currentTimeMillis());
+            queue.publish(event);
+        }
+        // Stops the uncross price reached trade continuously from here
+        releaseStops(orderBook, replaying);
+    }
+    
+    // Call auction thread: moves scheduled symbols into their call phases and uncrosses them at the end
+    private void followAuctionSchedule() {
+        LocalTime now = LocalTime.now();
+        boolean inCall = false;
+        for (LocalTime[] phase : callPhases) {
+            inCall |= !now.isBefore(phase[0]) && now.isBefore(phase[1]);
+        }
+        for (String symbol : auctionSymbols) {
+            try {
+                boolean inAuction = indicativeUncrosses.containsKey(symbol);
+                if (inCall && !inAuction) {
+                    startAuction(symbol);
+                } else if (!inCall && inAuction) {
+                    uncross(symbol);
                 }
-                
-                orderBook.updateOrder(sellOrder);
+            } catch (RuntimeException e) {
+                logger.warn("Call auction step not scheduled for {}: {}", symbol, e.getMessage());
+            }
+        }
+    }
+    
+    private void cancelOrder(OrderBook orderBook, String orderId, boolean replaying) {
+        BookOrder removed = removeOrderOrStop(orderBook, orderId);
+        if (removed == null) {
+            return;
+        }
+        if (!replaying) {
+            ExecutionQueue queue = executionQueueFor(orderBook.getSymbol());
+            ExecutionEvent event = queue.claim();
+            event.setOrderDone(removed, "Cancelled by user", System.currentTimeMillis());
+            queue.publish(event);
+        }
+        orderBook.releaseOrder(removed);
+    }
+    
+    private static BookOrder removeOrderOrStop(OrderBook orderBook, String orderId) {
+        BookOrder removed = orderBook.removeOrder(orderId);
+        return removed != null ? removed : orderBook.removeStop(orderId);
+    }
+    
+    private void scheduleExpiry(BookOrder bookOrder) {
+        if (bookOrder.getExpiresAt() > 0) {
+            expiryWheels.computeIfAbsent(symbols.nameOf(bookOrder.getSymbolId()),
+                                         symbol -> new TimingWheel(expiryTickMs, System.currentTimeMillis(),
+                                                                   BookOrderPool.DEFAULT_CAPACITY))
+                        .schedule(bookOrder.getOrderId(), bookOrder.getExpiresAt());
+        }
+    }
+    
+    // Expiry thread: only books with pending deadlines get an expiry pass, on their own thread
+    private void scheduleExpiries() {
+        for (Map.Entry<String, TimingWheel> entry : expiryWheels.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                continue;
+            }
+            try {
+                submit(entry.getKey(), this::expireOrders);
+            } catch (RuntimeException e) {
+                logger.warn("Order expiry not scheduled for {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Removes every resting or waiting stop order whose deadline has passed. Each expiry is journaled
+     * and published like a cancel; wheel entries of orders that have already left the
+     * book are dropped when they fire.
+     */
+    private Void expireOrders(OrderBook orderBook) {
+        long now = System.currentTimeMillis();
+        expiryWheels.get(orderBook.getSymbol()).advance(now, (orderId, deadline) -> {
+            BookOrder order = orderBook.getOrder(orderId);
+            if (order == null) {
+                order = orderBook.getStop(orderId);
+            }
+            if (order == null || order.getExpiresAt() == 0 || order.getExpiresAt() > now) {
+                return;
+            }
+            
+            // Replayed as a cancel: either way the order just leaves the book
+            if (journal != null) {
+                orderBook.setLastSequence(journal.appendCancel(orderId, orderBook.getSymbol()));
+            }
+            BookOrder expired = removeOrderOrStop(orderBook, orderId);
+            ExecutionQueue queue = executionQueueFor(orderBook.getSymbol());
+            ExecutionEvent event = queue.claim();
+            event.setExpired(expired, now);
+            queue.publish(event);
+            orderBook.releaseOrder(expired);
+        });
+        return null;
+    }
+    
+    private void amendOrder(OrderBook orderBook, String orderId, BigDecimal newPrice, BigDecimal newQuantity,
+                            boolean replaying) {
+        BookOrder existing = orderBook.getOrder(orderId);
+        boolean stop = existing == null;
+        if (stop && (existing = orderBook.getStop(orderId)) == null) {
+            return;
+        }
+        
+        long price;
+        long quantity;
+        try {
+            price = newPrice != null ? tickScale.toTicks(newPrice) : 0L;
+            quantity = tickScale.toUnits(newQuantity);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Order update not applied to book: {} - {}", orderId, e.getMessage());
+            return;
+        }
+        if (quantity <= existing.getFilledQuantity()) {
+            logger.warn("Order update not applied to book: {} - quantity must exceed the filled quantity", orderId);
+            return;
+        }
+        if (stop && (existing.getPrice() == 0) != (price == 0)) {
+            logger.warn("Order update not applied to book: {} - a stop keeps or lacks its limit price", orderId);
+            return;
+        }
+        
+        // A pure size reduction keeps time priority; anything else loses it
+        long remainingQuantity = quantity - existing.getFilledQuantity();
+        BookOrder amended;
+        if (stop) {
+            // A stop keeps its place among the stops: only its stop price, which stays, decides it
+            amended = orderBook.amendStop(orderId, price, quantity);
+        } else if (price == existing.getPrice() && remainingQuantity <= existing.getRemainingQuantity()) {
+            orderBook.reduceOrder(orderId, remainingQuantity);
+            amended = orderBook.getOrder(orderId);
+        } else {
+            // Replaced as a new aggressor: a price through the opposite side trades before it rests
+            amended = orderBook.getOrderPool().acquire(orderId, existing.getSide(), existing.getType(), price, quantity,
+                                                       existing.getFilledQuantity());
+            amended.setIds(existing.getSymbolId(), existing.getAccountId(), existing.getOwnerId());
+            amended.setCreatedAt(existing.getCreatedAt());
+            // Same order id, so its pending expiry still applies
+            amended.setExpiresAt(existing.getExpiresAt());
+            amended.setDisplayQuantity(existing.getDisplayQuantity());
+            amended.setSelfTradePrevention(selfTradePreventionFor(amended.getAccountId()));
+            orderBook.releaseOrder(orderBook.removeOrder(orderId));
+            // In a call phase it just takes its new place, crossing or not
+            if (!orderBook.isInAuction()) {
+                orderMatcher.match(orderBook, amended, replaying ? REPLAYED_FILL : publishFill);
             }
         }
         
-        return trades;
+        if (!replaying) {
+            ExecutionQueue queue = executionQueueFor(orderBook.getSymbol());
+            ExecutionEvent event = queue.claim();
+            // Met its own account on the way: it leaves the book instead of resting at the new terms
+            if (amended.isSelfTradeCancelled()) {
+                event.setOrderDone(amended, SELF_TRADE_PREVENTED, System.currentTimeMillis());
+            } else {
+                event.setAmended(amended, System.currentTimeMillis());
+            }
+            queue.publish(event);
+        }
+        if (amended.isFullyFilled() || amended.isSelfTradeCancelled()) {
+            orderBook.releaseOrder(amended);
+        } else if (!stop && !amended.isResting()) {
+            orderBook.addOrder(amended);
+        }
+        releaseStops(orderBook, replaying);
     }
     
-    private Trade createTrade(Order buyOrder, Order sellOrder, BigDecimal quantity, BigDecimal price) {
-        String tradeId = generateTradeId();
+    /**
+     * Runs a read-only query against a symbol's book on the thread that owns it,
+     * so callers never observe a book while it is being mutated.
+     */
+    public <T> T queryOrderBook(String symbol, Function<OrderBook, T> query) {
+        OrderBook orderBook = orderBooks.get(symbol);
+        if (orderBook == null) {
+            return query.apply(null);
+        }
         
-        Trade trade = new Trade(tradeId, buyOrder.getSymbol(), quantity, price,
-                               buyOrder.getOrderId(), sellOrder.getOrderId(),
-                               buyOrder.getAccountId(), sellOrder.getAccountId());
+        if (!isSharded()) {
+            synchronized (orderBook) {
+                return query.apply(orderBook);
+            }
+        }
+        
+        try {
+            return shardFor(symbol).submit(() -> query.apply(orderBook)).get(orderTimeoutSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading order book: " + symbol, e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to read order book: " + symbol, e);
+        }
+    }
+    
+    private <T> Future<T> submit(String symbol, Function<OrderBook, T> task) {
+        OrderBook orderBook = getOrCreateOrderBook(symbol);
+        
+        if (isSharded()) {
+            // Single writer per shard: no locking, strict per-symbol ordering
+            return shardFor(symbol).submit(() -> applyAndPublish(orderBook, task));
+        }
         
-        tradeRepository.save(trade);
+        // Pooled mode: any thread may pick up the task, so serialize on the book
+        return executorService.submit(() -> {
+            synchronized (orderBook) {
+                return applyAndPublish(orderBook, task);
+            }
+        });
+    }
+    
+    private <T> T applyAndPublish(OrderBook orderBook, Function<OrderBook, T> task) {
+        L2BookTracker tracker = l2TrackerFor(orderBook);
+        try {
+            return task.apply(orderBook);
+        } finally {
+            publishChanges(orderBook, tracker);
+        }
+    }
+    
+    // A plain get once the tracker exists: computeIfAbsent would capture the book in a new lambda each time
+    private L2BookTracker l2TrackerFor(OrderBook orderBook) {
+        if (!marketDataEnabled) {
+            return null;
+        }
+        L2BookTracker tracker = l2Trackers.get(orderBook.getSymbol());
+        return tracker != null ? tracker
+            : l2Trackers.computeIfAbsent(orderBook.getSymbol(), symbol -> new L2BookTracker(orderBook));
+    }
+    
+    private void publishChanges(OrderBook orderBook, L2BookTracker tracker) {
+        publishTopOfBook(orderBook);
+        refreshDepth(orderBook, false);
+        publishIndicativeUncross(orderBook);
+        if (tracker != null) {
+            marketDataFeed.publish(tracker.drain());
+        }
+    }
+    
+    /**
+     * Publishes a full L2 refresh for {@code symbol} into the feed, ordered after every
+     * update already published, so a new subscriber can start from it.
+     * Returns false if the symbol has no book, whose feed starts empty at sequence 0.
+     */
+    public boolean requestMarketDataRefresh(String symbol) {
+        if (!marketDataEnabled || !orderBooks.containsKey(symbol)) {
+            return false;
+        }
+        submit(symbol, orderBook -> {
+            marketDataFeed.publish(l2Trackers.get(symbol).refresh());
+            return null;
+        });
+        return true;
+    }
+    
+    private void publishMarketDataRefreshes() {
+        if (!marketDataFeed.hasListeners()) {
+            return;
+        }
+        for (String symbol : orderBooks.keySet()) {
+            try {
+                requestMarketDataRefresh(symbol);
+            } catch (RuntimeException e) {
+                logger.warn("Market data refresh not scheduled for {}: {}", symbol, e.getMessage());
+            }
+        }
+    }
+    
+    private void publishTopOfBook(OrderBook orderBook) {
+        TopOfBook previous = topOfBooks.get(orderBook.getSymbol());
+        TopOfBook current = TopOfBook.of(orderBook, previous);
+        if (current != previous) {
+            topOfBooks.put(orderBook.getSymbol(), current);
+        }
+    }
+    
+    private void publishIndicativeUncross(OrderBook orderBook) {
+        if (!orderBook.isInAuction()) {
+            if (!indicativeUncrosses.isEmpty()) {
+                indicativeUncrosses.remove(orderBook.getSymbol());
+            }
+            return;
+        }
+        IndicativeUncross previous = indicativeUncrosses.get(orderBook.getSymbol());
+        IndicativeUncross current = IndicativeUncross.of(orderBook, previous);
+        if (current != previous) {
+            indicativeUncrosses.put(orderBook.getSymbol(), current);
+        }
+    }
+    
+    private void refreshDepth(OrderBook orderBook, boolean force) {
+        String symbol = orderBook.getSymbol();
+        DepthSnapshot current = depthSnapshots.get(symbol);
+        if (current != null && current.getVersion() == orderBook.getVersion()) {
+            return;
+        }
+        if (!force && current != null && System.currentTimeMillis() - current.getBuiltAt() < depthRefreshMs) {
+            // Conflate: the refresher publishes the latest state once the interval has passed
+            pendingDepthRefresh.add(symbol);
+            return;
+        }
+        depthSnapshots.put(symbol, DepthSnapshot.capture(orderBook, depthLevels, depthEtagPrefix));
+    }
+    
+    private void flushPendingDepth() {
+        for (String symbol : pendingDepthRefresh) {
+            pendingDepthRefresh.remove(symbol);
+            try {
+                submit(symbol, orderBook -> {
+                    refreshDepth(orderBook, true);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                logger.warn("Depth refresh not scheduled for {}: {}", symbol, e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Latest published depth view for a symbol, at most depth-refresh-ms behind the book,
+     * or null if the symbol has no book. Lock-free and safe from any thread.
+     */
+    public DepthSnapshot getDepthSnapshot(String symbol) {
+        return depthSnapshots.get(symbol);
+    }
+    
+    /**
+     * Latest published best bid and offer for a symbol, or null if the symbol has no book.
+     * Lock-free and safe from any thread.
+     */
+    public TopOfBook getTopOfBook(String symbol) {
+        return topOfBooks.get(symbol);
+    }
+    
+    /**
+     * Latest equilibrium price, volume and imbalance of a symbol in its call auction
+     * phase, or null outside the phase. Lock-free and safe from any thread.
+     */
+    public IndicativeUncross getIndicativeUncross(String symbol) {
+        return indicativeUncrosses.get(symbol);
+    }
+    
+    private ExecutorService shardFor(String symbol) {
+        return shards[Math.floorMod(symbol.hashCode(), shards.length)];
+    }
+    
+    private ExecutionQueue executionQueueFor(String symbol) {
+        return executionQueues[Math.floorMod(symbol.hashCode(), executionQueues.length)];
+    }
+    
+    private boolean isSharded() {
+        return "sharded".equalsIgnoreCase(mode);
+    }
+    
+    private boolean isRingIngress() {
+        return isSharded() && "ring".equalsIgnoreCase(ingress);
+    }
+    
+    private void matchOrder(Order order, OrderBook orderBook, boolean replaying) {
+        // Prices and quantities only leave BigDecimal here; the book works in ticks, units and ids
+        BookOrder bookOrder;
+        try {
+            bookOrder = orderBook.getOrderPool().acquire(order, tickScale);
+        } catch (IllegalArgumentException e) {
+            if (!replaying) {
+                rejectOrder(order, e.getMessage());
+            }
+            return;
+        }
+        bookOrder.setIds(symbols.idOf(order.getSymbol()), accounts.idOf(order.getAccountId()),
+                         owners.idOf(order.getUser() != null ? order.getUser().getUsername() : null));
         
-        // Publish trade to Kafka
-        publishTrade(trade);
+        if (bookOrder.isStop()) {
+            // Waits for its trigger with no event: the order is already PENDING
+            orderBook.addStop(bookOrder);
+            scheduleExpiry(bookOrder);
+        } else if (orderBook.isInAuction()) {
+            // Call phase: a limit order joins the book however it prices; nothing else has a place there
+            boolean rests = bookOrder.getType() == OrderType.LIMIT && bookOrder.getTimeInForce() != TimeInForce.IOC
+                            && bookOrder.getTimeInForce() != TimeInForce.FOK;
+            finishOrder(orderBook, bookOrder, rests,
+                        rests ? null : "Market, IOC and FOK orders are not accepted during the call auction", replaying);
+        } else {
+            executeOrder(orderBook, bookOrder, replaying);
+        }
+        releaseStops(orderBook, replaying);
+    }
+    
+    /**
+     * Matches an incoming or triggered order and rests or cancels what is left of it.
+     */
+    private void executeOrder(OrderBook orderBook, BookOrder bookOrder, boolean replaying) {
+        // Live fills are handed to the execution queue; a replay only rebuilds the book,
+        // its effects are already persisted
+        MatchListener listener = replaying ? REPLAYED_FILL : publishFill;
+        TimeInForce timeInForce = bookOrder.getTimeInForce();
+        bookOrder.setSelfTradePrevention(selfTradePreventionFor(bookOrder.getAccountId()));
+        if (timeInForce == TimeInForce.FOK) {
+            orderMatcher.matchInFull(orderBook, bookOrder, listener);
+        } else {
+            orderMatcher.match(orderBook, bookOrder, listener);
+        }
         
+        // Rest any unfilled limit quantity; a market order has no price to rest at, and
+        // IOC and FOK remainders are cancelled rather than left in the book
+        boolean rests = !bookOrder.isFullyFilled() && bookOrder.getType() == OrderType.LIMIT
+                        && timeInForce != TimeInForce.IOC && timeInForce != TimeInForce.FOK
+                        && !bookOrder.isSelfTradeCancelled();
+        finishOrder(orderBook, bookOrder, rests, rests || bookOrder.isFullyFilled() ? null : unfilledReason(bookOrder),
+                    replaying);
+    }
+    
+    // Publishes that the order is done matching, then rests it or returns its entry to the pool
+    private void finishOrder(OrderBook orderBook, BookOrder bookOrder, boolean rests, String cancelReason,
+                             boolean replaying) {
+        if (!replaying) {
+            ExecutionQueue queue = executionQueueFor(orderBook.getSymbol());
+            ExecutionEvent event = queue.claim();
+            event.setOrderDone(bookOrder, cancelReason, System.currentTimeMillis());
+            queue.publish(event);
+        }
+        if (rests) {
+            // Scheduled first: an off-heap book copies the entry and releases it to the pool
+            // A triggered stop's deadline was scheduled when it arrived
+            if (bookOrder.getStopPrice() == 0) {
+                scheduleExpiry(bookOrder);
+            }
+            orderBook.addOrder(bookOrder);
+        } else {
+            orderBook.releaseOrder(bookOrder);
+        }
+    }
+    
+    /**
+     * Matches the stops that the trades of the input just applied have triggered, each
+     * as if sequenced right behind it. Their own trades can trigger further stops, which
+     * follow in turn; replay reaches the same stops from the same inputs.
+     */
+    private void releaseStops(OrderBook orderBook, boolean replaying) {
+        if (orderBook.isInAuction()) {
+            // Nothing trades in a call phase: triggered stops wait for the uncross
+            return;
+        }
+        BookOrder stop;
+        while ((stop = orderBook.pollTriggeredStop()) != null) {
+            executeOrder(orderBook, stop, replaying);
+        }
+    }
+    
+    private static String unfilledReason(BookOrder order) {
+        if (order.isSelfTradeCancelled()) {
+            return SELF_TRADE_PREVENTED;
+        } else if (order.getTimeInForce() == TimeInForce.FOK) {
+            return "Fill-or-kill order could not be filled in full";
+        } else if (order.getTimeInForce() == TimeInForce.IOC) {
+            return "Unfilled remainder of immediate-or-cancel order cancelled";
+        }
+        return "Insufficient liquidity for market order";
+    }
+    
+    // Matching thread: copies the fill into a preallocated event, nothing else
+    private void publishFill(BookOrder aggressor, BookOrder resting, long quantity, long price) {
+        ExecutionQueue queue = executionQueueFor(symbols.nameOf(aggressor.getSymbolId()));
+        ExecutionEvent event = queue.claim();
+        event.setFill(aggressor, resting, quantity, price, tradeSequence.incrementAndGet(), System.currentTimeMillis());
+        queue.publish(event);
+    }
+    
+    // Matching thread: a resting order cancelled out of the book or decremented in place
+    private void publishSelfTradePrevented(BookOrder resting) {
+        ExecutionQueue queue = executionQueueFor(symbols.nameOf(resting.getSymbolId()));
+        ExecutionEvent event = queue.claim();
+        if (resting.isResting()) {
+            event.setAmended(resting, System.currentTimeMillis());
+        } else {
+            event.setOrderDone(resting, SELF_TRADE_PREVENTED, System.currentTimeMillis());
+        }
+        queue.publish(event);
+    }
+    
+    private SelfTradePrevention selfTradePreventionFor(int accountId) {
+        if (selfTradePrevention == SelfTradePrevention.NONE || selfTradePreventedAccounts.isEmpty()) {
+            return selfTradePrevention;
+        }
+        String account = accounts.nameOf(accountId);
+        return account != null && selfTradePreventedAccounts.contains(account) ? selfTradePrevention : SelfTradePrevention.NONE;
+    }
+    
+    // Matching thread: like publishFill, for the fills of an uncross
+    private void publishAuctionFill(BookOrder buy, BookOrder sell, long quantity, long price) {
+        ExecutionQueue queue = executionQueueFor(symbols.nameOf(buy.getSymbolId()));
+        ExecutionEvent event = queue.claim();
+        event.setAuctionFill(buy, sell, quantity, price, tradeSequence.incrementAndGet(), System.currentTimeMillis());
+        queue.publish(event);
+    }
+    
+    // Publisher thread: turns engine state back into trades and persistent order state
+    private void onExecution(ExecutionEvent event) {
+        switch (event.getType()) {
+            case FILL:
+                onFill(event);
+                break;
+            case ORDER_DONE:
+            case EXPIRED:
+                onOrderDone(event);
+                break;
+            case AMENDED:
+                onAmended(event);
+                break;
+            case AUCTION_FILL:
+                onAuctionFill(event);
+                break;
+            case UNCROSS_DONE:
+                onUncrossDone(event);
+                break;
+        }
+    }
+    
+    private void onFill(ExecutionEvent event) {
+        String symbol = symbols.nameOf(event.getSymbolId());
+        LocalDateTime executedAt = toLocalDateTime(event.getTimestamp());
+        Trade trade = createTrade(symbol, event.getOrder(), event.getResting(), event.getQuantity(), event.getPrice(),
+                                  event.getTradeSequence(), executedAt);
+        processTrade(trade);
+        persistenceService.saveTrade(trade);
+        
+        // The resting order is saved here, the aggressor once its matching is done
+        OrderStatusEvent statusEvent = saveOrderState(symbol, event.getResting(), null, executedAt);
+        OrderSide aggressorSide = event.getOrder().getSide();
+        
+        // Publish the trade and the resting order's update once the durability mode allows
+        persistenceService.afterPersisted(() -> {
+            publishTrade(trade);
+            marketDataFeed.publish(new TradeTick(trade, aggressorSide));
+            marketDataFeed.publish(statusEvent);
+        });
+    }
+    
+    private void onOrderDone(ExecutionEvent event) {
+        OrderStatus status = event.getType() == ExecutionEvent.Type.EXPIRED
+            ? OrderStatus.EXPIRED
+            : statusOf(event.getOrder(), event.getReason());
+        OrderStatusEvent statusEvent = saveOrderState(symbols.nameOf(event.getSymbolId()), event.getOrder(), status,
+                                                      event.getReason(), toLocalDateTime(event.getTimestamp()));
+        
+        // Publish the order update to Kafka and the stream feed once the durability mode allows
+        persistenceService.afterPersisted(() -> {
+            publishOrderUpdate(statusEvent);
+            marketDataFeed.publish(statusEvent);
+        });
+    }
+    
+    private void onAmended(ExecutionEvent event) {
+        ExecutionEvent.OrderState state = event.getOrder();
+        LocalDateTime updatedAt = toLocalDateTime(event.getTimestamp());
+        BigDecimal filledQuantity = tickScale.toQuantity(state.getFilledQuantity());
+        BigDecimal remainingQuantity = tickScale.toQuantity(state.getQuantity() - state.getFilledQuantity());
+        OrderStatus status = statusOf(state, null);
+        
+        // A stop without a limit keeps its null price
+        persistenceService.saveOrderAmendment(state.getOrderId(),
+                                              event.getPrice() != 0 ? tickScale.toPrice(event.getPrice()) : null,
+                                              tickScale.toQuantity(state.getQuantity()), filledQuantity, remainingQuantity,
+                                              status, updatedAt, status == OrderStatus.FILLED ? updatedAt : null);
+        OrderStatusEvent statusEvent = new OrderStatusEvent(state.getOrderId(), owners.nameOf(state.getOwnerId()),
+                                                            accounts.nameOf(state.getAccountId()),
+                                                            symbols.nameOf(event.getSymbolId()), state.getSide(), status,
+                                                            filledQuantity, remainingQuantity, null);
+        
+        persistenceService.afterPersisted(() -> {
+            publishOrderUpdate(statusEvent);
+            marketDataFeed.publish(statusEvent);
+        });
+    }
+    
+    // Collects an uncross fill; nothing is written or published until the uncross is done
+    private void onAuctionFill(ExecutionEvent event) {
+        String symbol = symbols.nameOf(event.getSymbolId());
+        UncrossBatch batch = uncrossBatches.computeIfAbsent(event.getSymbolId(), id -> new UncrossBatch());
+        batch.trades.add(createTrade(symbol, event.getOrder(), event.getResting(), event.getQuantity(), event.getPrice(),
+                                     event.getTradeSequence(), toLocalDateTime(event.getTimestamp())));
+        // Orders in several fills keep only their last state
+        for (ExecutionEvent.OrderState state : new ExecutionEvent.OrderState[] {event.getOrder(), event.getResting()}) {
+            batch.orders.put(state.getOrderId(), statusEventOf(symbol, state, statusOf(state, null), null));
+        }
+    }
+    
+    /**
+     * Writes a whole uncross as one persistence batch, each order's final state once, and
+     * publishes its trades and order updates together once the durability mode allows.
+     */
+    private void onUncrossDone(ExecutionEvent event) {
+        UncrossBatch batch = uncrossBatches.remove(event.getSymbolId());
+        if (batch == null) {
+            return;
+        }
+        LocalDateTime executedAt = toLocalDateTime(event.getTimestamp());
+        OrderPersistenceService.Batch writes = new OrderPersistenceService.Batch();
+        batch.trades.forEach(writes::addTrade);
+        for (OrderStatusEvent order : batch.orders.values()) {
+            writes.addOrderState(order.getOrderId(), order.getFilledQuantity(), order.getRemainingQuantity(),
+                                 order.getStatus(), null, executedAt,
+                                 order.getStatus() == OrderStatus.FILLED ? executedAt : null);
+        }
+        persistenceService.saveBatch(writes);
+        logger.info("Uncrossed {}: {} trades at {}", symbols.nameOf(event.getSymbolId()), batch.trades.size(),
+                   batch.trades.get(0).getPrice());
+        
+        persistenceService.afterPersisted(() -> {
+            for (Trade trade : batch.trades) {
+                publishTrade(trade);
+                marketDataFeed.publish(new TradeTick(trade, null));
+            }
+            for (OrderStatusEvent statusEvent : batch.orders.values()) {
+                publishOrderUpdate(statusEvent);
+                marketDataFeed.publish(statusEvent);
+            }
+        });
+    }
+    
+    /**
+     * Queues the order's row update from the engine's state, the only place that state
+     * meets the persistent entity again, and returns the matching status event.
+     */
+    private OrderStatusEvent saveOrderState(String symbol, ExecutionEvent.OrderState state, String cancelReason,
+                                            LocalDateTime updatedAt) {
+        return saveOrderState(symbol, state, statusOf(state, cancelReason), cancelReason, updatedAt);
+    }
+    
+    private OrderStatusEvent saveOrderState(String symbol, ExecutionEvent.OrderState state, OrderStatus status,
+                                            String reason, LocalDateTime updatedAt) {
+        BigDecimal filledQuantity = tickScale.toQuantity(state.getFilledQuantity());
+        BigDecimal remainingQuantity = tickScale.toQuantity(state.getQuantity() - state.getFilledQuantity());
+        
+        persistenceService.saveOrderState(state.getOrderId(), filledQuantity, remainingQuantity, status, reason,
+                                          updatedAt, status == OrderStatus.FILLED ? updatedAt : null);
+        return new OrderStatusEvent(state.getOrderId(), owners.nameOf(state.getOwnerId()),
+                                    accounts.nameOf(state.getAccountId()), symbol, state.getSide(), status,
+                                    filledQuantity, remainingQuantity, reason);
+    }
+    
+    private OrderStatusEvent statusEventOf(String symbol, ExecutionEvent.OrderState state, OrderStatus status,
+                                           String reason) {
+        return new OrderStatusEvent(state.getOrderId(), owners.nameOf(state.getOwnerId()),
+                                    accounts.nameOf(state.getAccountId()), symbol, state.getSide(), status,
+                                    tickScale.toQuantity(state.getFilledQuantity()),
+                                    tickScale.toQuantity(state.getQuantity() - state.getFilledQuantity()), reason);
+    }
+    
+    private static OrderStatus statusOf(ExecutionEvent.OrderState state, String cancelReason) {
+        if (cancelReason != null) {
+            return OrderStatus.CANCELLED;
+        } else if (state.isFullyFilled()) {
+            return OrderStatus.FILLED;
+        } else if (state.getFilledQuantity() > 0) {
+            return OrderStatus.PARTIALLY_FILLED;
+        }
+        return OrderStatus.PENDING;
+    }
+    
+    private Trade createTrade(String symbol, ExecutionEvent.OrderState aggressor, ExecutionEvent.OrderState resting,
+                              long quantityUnits, long priceTicks, long sequence, LocalDateTime executedAt) {
+        ExecutionEvent.OrderState buyOrder = aggressor.getSide() == OrderSide.BUY ? aggressor : resting;
+        ExecutionEvent.OrderState sellOrder = aggressor.getSide() == OrderSide.BUY ? resting : aggressor;
+        
+        Trade trade = new Trade(tradeIdPrefix + sequence, symbol,
+                               tickScale.toQuantity(quantityUnits), tickScale.toPrice(priceTicks),
+                               buyOrder.getOrderId(), sellOrder.getOrderId(),
+                               accounts.nameOf(buyOrder.getAccountId()), accounts.nameOf(sellOrder.getAccountId()));
+        // Stamped with the time of the match, not the time the publisher got to it
+        trade.setExecutedAt(executedAt);
         return trade;
     }
     
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+    
     private void processTrade(Trade trade) {
         logger.info("Trade executed: {} - {} {} @ {}", 
                    trade.getTradeId(), trade.getQuantity(), trade.getSymbol(), trade.getPrice());
@@ -232,23 +1305,37 @@ public class MatchingEngine {
     private void rejectOrder(Order order, String reason) {
         order.setStatus(OrderStatus.REJECTED);
         order.setReason(reason);
-        orderRepository.save(order);
+        persistenceService.saveOrder(order);
+        OrderStatusEvent statusEvent = new OrderStatusEvent(order);
         
         // Publish order rejection to Kafka
-        publishOrderRejection(order, reason);
+        persistenceService.afterPersisted(() -> {
+            publishOrderRejection(order, reason);
+            marketDataFeed.publish(statusEvent);
+        });
     }
     
     private OrderBook getOrCreateOrderBook(String symbol) {
-        return orderBooks.computeIfAbsent(symbol, OrderBook::new);
+        // The method reference is a new object per call, so only a miss creates one
+        OrderBook orderBook = orderBooks.get(symbol);
+        return orderBook != null ? orderBook : orderBooks.computeIfAbsent(symbol, this::newOrderBook);
     }
     
-    private String generateTradeId() {
-        return "TRADE_" + System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8);
+    private OrderBook newOrderBook(String symbol) {
+        OrderBook orderBook = new OrderBook(symbol, tickScale, Arrays.asList(offHeapSymbols).contains(symbol),
+                                            Arrays.asList(arrayLadderSymbols).contains(symbol) ? arrayLadderTicks : 0);
+        if (Arrays.asList(proRataSymbols).contains(symbol)) {
+            orderBook.setAllocation(Allocation.PRO_RATA);
+        } else if (Arrays.asList(topProRataSymbols).contains(symbol)) {
+            orderBook.setAllocation(Allocation.FIFO_TOP_PRO_RATA);
+        }
+        orderBook.setLotSize(lotUnits);
+        return orderBook;
     }
     
-    private void publishOrderUpdate(Order order) {
+    private void publishOrderUpdate(OrderStatusEvent statusEvent) {
         // Publish to Kafka topic for order updates
-        kafkaTemplate.send("order-updates", order.getOrderId(), order.toString());
+        kafkaTemplate.send("order-updates", statusEvent.getOrderId(), statusEvent.toString());
     }
     
     private void publishTrade(Trade trade) {
@@ -269,7 +1356,76 @@ public class MatchingEngine {
         return new HashMap<>(orderBooks);
     }
     
+    @PreDestroy
     public void shutdown() {
-        executorService.shutdown();
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+        if (shards != null) {
+            for (ExecutorService shard : shards) {
+                shard.shutdown();
+            }
+        }
+        if (journalSyncer != null) {
+            journalSyncer.shutdown();
+        }
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        if (depthRefresher != null) {
+            depthRefresher.shutdown();
+        }
+        if (marketDataRefresher != null) {
+            marketDataRefresher.shutdown();
+        }
+        if (expiryScheduler != null) {
+            expiryScheduler.shutdown();
+        }
+        if (auctionScheduler != null) {
+            auctionScheduler.shutdown();
+        }
+        awaitShards();
+        
+        // Executions already handed off still reach persistence before it stops
+        if (executionQueues != null) {
+            for (ExecutionQueue queue : executionQueues) {
+                queue.shutdown();
+            }
+            awaitExecutionQueues();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+    }
+    
+    private void awaitShards() {
+        try {
+            if (executorService != null) {
+                executorService.awaitTermination(orderTimeoutSeconds, TimeUnit.SECONDS);
+            }
+            if (shards != null) {
+                for (ExecutorService shard : shards) {
+                    shard.awaitTermination(orderTimeoutSeconds, TimeUnit.SECONDS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void awaitExecutionQueues() {
+        try {
+            for (ExecutionQueue queue : executionQueues) {
+                queue.awaitTermination(orderTimeoutSeconds, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Fills of one uncross on the publisher thread until its UNCROSS_DONE arrives
+    private static final class UncrossBatch {
+        final List<Trade> trades = new ArrayList<>();
+        final LinkedHashMap<String, OrderStatusEvent> orders = new LinkedHashMap<>();
     }
 }
@@ -0,0 +1,348 @@
+package com.trading.service;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.trading.domain.Order;
+import com.trading.domain.OrderStatus;
+import com.trading.domain.Trade;
+
+/**
+ * Write-behind persistence for the matching engine.
+ * Order state changes and trades are queued by the matching threads and a single
+ * writer thread group-commits them in JDBC batches, so matching latency does not
+ * depend on database latency. The bounded queue applies backpressure when the
+ * database falls behind.
+ */
+@Service
+public class OrderPersistenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPersistenceService.class);
+
+    private static final String INSERT_TRADE_SQL =
+        "INSERT INTO trades (trade_id, symbol, quantity, price, total_value, buy_order_id, sell_order_id, " +
+        "buy_account_id, sell_account_id, executed_at, execution_venue) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Price and quantity are only written by amendments; a null keeps the current value
+    private static final String UPDATE_ORDER_SQL =
+        "UPDATE orders SET price = COALESCE(?, price), quantity = COALESCE(?, quantity), filled_quantity = ?, " +
+        "remaining_quantity = ?, status = ?, reason = ?, updated_at = ?, filled_at = ? WHERE order_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // enqueue: acknowledge once queued; commit: acknowledge after the batch has committed
+    @Value("${trading.persistence.durability:enqueue}")
+    private String durability;
+
+    @Value("${trading.persistence.queue-capacity:65536}")
+    private int queueCapacity;
+
+    @Value("${trading.persistence.max-batch-size:500}")
+    private int maxBatchSize;
+
+    private BlockingQueue<Object> queue;
+    private TransactionTemplate transactionTemplate;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.running = true;
+        this.writerThread = new Thread(this::drainLoop, "persistence-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        logger.info("Write-behind persistence started: durability={}, queue={}, batch={}",
+                   durability, queueCapacity, maxBatchSize);
+    }
+
+    /**
+     * Queues the order's current fill state. The row must already exist.
+     */
+    public void saveOrder(Order order) {
+        enqueue(new OrderStateChange(order));
+    }
+
+    /**
+     * Queues fill state the engine tracks without an entity, written to the row with
+     * {@code orderId}. The row must already exist.
+     */
+    public void saveOrderState(String orderId, BigDecimal filledQuantity, BigDecimal remainingQuantity,
+                               OrderStatus status, String reason, LocalDateTime updatedAt, LocalDateTime filledAt) {
+        enqueue(new OrderStateChange(orderId, null, null, filledQuantity, remainingQuantity, status, reason,
+                                     updatedAt, filledAt));
+    }
+
+    /**
+     * Queues an amendment applied by the engine: the order's new price and quantity
+     * together with its fill state after the amendment.
+     */
+    public void saveOrderAmendment(String orderId, BigDecimal price, BigDecimal quantity, BigDecimal filledQuantity,
+                                   BigDecimal remainingQuantity, OrderStatus status, LocalDateTime updatedAt,
+                                   LocalDateTime filledAt) {
+        enqueue(new OrderStateChange(orderId, price, quantity, filledQuantity, remainingQuantity, status, null,
+                                     updatedAt, filledAt));
+    }
+
+    public void saveTrade(Trade trade) {
+        enqueue(trade);
+    }
+
+    /**
+     * Queues a batch as a single item: its trades and order states are written in one
+     * transaction however many there are, and take one slot of the queue.
+     */
+    public void saveBatch(Batch batch) {
+        enqueue(batch);
+    }
+
+    /**
+     * Runs {@code acknowledgement} according to the durability mode: immediately,
+     * or on the writer thread once everything queued before it has committed.
+     */
+    public void afterPersisted(Runnable acknowledgement) {
+        if (isCommitDurability()) {
+            enqueue(acknowledgement);
+        } else {
+            acknowledgement.run();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private boolean isCommitDurability() {
+        return "commit".equalsIgnoreCase(durability);
+    }
+
+    private void enqueue(Object item) {
+        try {
+            // Blocks the caller when the writer falls behind: explicit backpressure
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing persistence work", e);
+        }
+    }
+
+    private void drainLoop() {
+        List<Object> batch = new ArrayList<>(maxBatchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                Object first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Failed to persist batch of {} items", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Object> batch) {
+        List<Trade> trades = new ArrayList<>();
+        // Only the latest state of each order in the batch needs to be written
+        Map<String, OrderStateChange> orderChanges = new LinkedHashMap<>();
+        List<Runnable> acknowledgements = new ArrayList<>();
+
+        for (Object item : batch) {
+            if (item instanceof Trade) {
+                trades.add((Trade) item);
+            } else if (item instanceof OrderStateChange) {
+                OrderStateChange change = (OrderStateChange) item;
+                orderChanges.merge(change.orderId, change, OrderStateChange::followedBy);
+            } else if (item instanceof Batch) {
+                Batch group = (Batch) item;
+                trades.addAll(group.trades);
+                for (OrderStateChange change : group.orderChanges) {
+                    orderChanges.merge(change.orderId, change, OrderStateChange::followedBy);
+                }
+            } else if (item instanceof Runnable) {
+                acknowledgements.add((Runnable) item);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!trades.isEmpty()) {
+                insertTrades(trades);
+            }
+            if (!orderChanges.isEmpty()) {
+                updateOrders(new ArrayList<>(orderChanges.values()));
+            }
+        });
+
+        for (Runnable acknowledgement : acknowledgements) {
+            try {
+                acknowledgement.run();
+            } catch (Exception e) {
+                logger.error("Persistence acknowledgement failed", e);
+            }
+        }
+    }
+
+    private void insertTrades(List<Trade> trades) {
+        jdbcTemplate.batchUpdate(INSERT_TRADE_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Trade trade = trades.get(i);
+                ps.setString(1, trade.getTradeId());
+                ps.setString(2, trade.getSymbol());
+                ps.setBigDecimal(3, trade.getQuantity());
+                ps.setBigDecimal(4, trade.getPrice());
+                ps.setBigDecimal(5, trade.getTotalValue());
+                ps.setString(6, trade.getBuyOrderId());
+                ps.setString(7, trade.getSellOrderId());
+                ps.setString(8, trade.getBuyAccountId());
+                ps.setString(9, trade.getSellAccountId());
+                ps.setObject(10, trade.getExecutedAt());
+                ps.setString(11, trade.getExecutionVenue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return trades.size();
+            }
+        });
+    }
+
+    private void updateOrders(List<OrderStateChange> changes) {
+        jdbcTemplate.batchUpdate(UPDATE_ORDER_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                OrderStateChange change = changes.get(i);
+                ps.setBigDecimal(1, change.price);
+                ps.setBigDecimal(2, change.quantity);
+                ps.setBigDecimal(3, change.filledQuantity);
+                ps.setBigDecimal(4, change.remainingQuantity);
+                ps.setString(5, change.status.name());
+                ps.setString(6, change.reason);
+                ps.setObject(7, change.updatedAt);
+                ps.setObject(8, change.filledAt);
+                ps.setString(9, change.orderId);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return changes.size();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Trades and order states of one engine step that belong together, such as the fills
+     * of an auction uncross and the final state of each order they touched.
+     */
+    public static final class Batch {
+
+        private final List<Trade> trades = new ArrayList<>();
+        private final List<OrderStateChange> orderChanges = new ArrayList<>();
+
+        public void addTrade(Trade trade) {
+            trades.add(trade);
+        }
+
+        public void addOrderState(String orderId, BigDecimal filledQuantity, BigDecimal remainingQuantity,
+                                  OrderStatus status, String reason, LocalDateTime updatedAt, LocalDateTime filledAt) {
+            orderChanges.add(new OrderStateChange(orderId, null, null, filledQuantity, remainingQuantity, status, reason,
+                                                  updatedAt, filledAt));
+        }
+
+        public int getTradeCount() {
+            return trades.size();
+        }
+    }
+
+    /**
+     * Copy of an order's fill state taken on the matching thread, so the writer
+     * never reads an entity the engine may still be mutating.
+     */
+    private static final class OrderStateChange {
+
+        private final String orderId;
+        private final BigDecimal price;
+        private final BigDecimal quantity;
+        private final BigDecimal filledQuantity;
+        private final BigDecimal remainingQuantity;
+        private final OrderStatus status;
+        private final String reason;
+        private final LocalDateTime updatedAt;
+        private final LocalDateTime filledAt;
+
+        OrderStateChange(Order order) {
+            this(order.getOrderId(), null, null, order.getFilledQuantity(), order.getRemainingQuantity(), order.getStatus(),
+                 order.getReason(), order.getUpdatedAt() != null ? order.getUpdatedAt() : LocalDateTime.now(),
+                 order.getFilledAt());
+        }
+
+        OrderStateChange(String orderId, BigDecimal price, BigDecimal quantity, BigDecimal filledQuantity,
+                         BigDecimal remainingQuantity, OrderStatus status, String reason, LocalDateTime updatedAt,
+                         LocalDateTime filledAt) {
+            this.orderId = orderId;
+            this.price = price;
+            this.quantity = quantity;
+            this.filledQuantity = filledQuantity;
+            this.remainingQuantity = remainingQuantity;
+            this.status = status;
+            this.reason = reason;
+            this.updatedAt = updatedAt;
+            this.filledAt = filledAt;
+        }
+
+        // Collapses two changes of one order in a batch, keeping amended terms the later change lacks
+        OrderStateChange followedBy(OrderStateChange later) {
+            if (later.quantity != null || quantity == null) {
+                return later;
+            }
+            return new OrderStateChange(later.orderId, price, quantity, later.filledQuantity, later.remainingQuantity,
+                                        later.status, later.reason, later.updatedAt, later.filledAt);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.trading.service;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -10,10 +12,13 @@ import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.trading.domain.Order;
 import com.trading.domain.OrderStatus;
+import com.trading.domain.OrderType;
+import com.trading.domain.TimeInForce;
 import com.trading.dto.OrderRequest;
 import com.trading.dto.OrderResponse;
 import com.trading.repository.OrderRepository;
@@ -36,6 +41,10 @@ public class OrderService {
     @Autowired
     private RiskManagementService riskManagementService;
     
+    // Local time at which DAY orders expire
+    @Value("${trading.orders.day-close-time:16:00}")
+    private String dayCloseTime;
+    
     public OrderResponse createOrder(OrderRequest request) {
         return createOrder(request, null);
     }
@@ -60,6 +69,17 @@ public class OrderService {
             request.getAccountId()
         );
         
+        order.setDisplayQuantity(request.getDisplayQuantity());
+        order.setStopPrice(request.getStopPrice());
+        
+        TimeInForce timeInForce = request.getTimeInForce() != null ? request.getTimeInForce() : TimeInForce.GTC;
+        order.setTimeInForce(timeInForce);
+        if (timeInForce == TimeInForce.GTD) {
+            order.setExpiresAt(request.getExpiresAt());
+        } else if (timeInForce == TimeInForce.DAY) {
+            order.setExpiresAt(nextDayClose(order.getCreatedAt()));
+        }
+        
         // Associate with user if username provided - create test user if needed
         if (username != null) {
             Optional<com.trading.entity.User> userOpt = userRepository.findByUsername(username);
@@ -140,6 +160,10 @@ public class OrderService {
             .collect(Collectors.toList());
     }
     
+    /**
+     * Requests cancellation from the matching engine. The response is the order as it
+     * stands; the CANCELLED state follows asynchronously once the engine has removed it.
+     */
     public OrderResponse cancelOrder(String orderId) {
         Optional<Order> optionalOrder = orderRepository.findByOrderId(orderId);
         
@@ -150,23 +174,26 @@ public class OrderService {
                 throw new IllegalStateException("Cannot cancel filled order: " + orderId);
             }
             
-            if (order.getStatus() == OrderStatus.CANCELLED) {
-                throw new IllegalStateException("Order already cancelled: " + orderId);
+            if (order.getStatus() != OrderStatus.PENDING && order.getStatus() != OrderStatus.PARTIALLY_FILLED) {
+                throw new IllegalStateException("Order already " + order.getStatus().name().toLowerCase() + ": " + orderId);
             }
             
-            order.setStatus(OrderStatus.CANCELLED);
-            order.setReason("Cancelled by user");
-            
-            Order cancelledOrder = orderRepository.save(order);
+            matchingEngine.cancelOrder(orderId, order.getSymbol());
             
-            logger.info("Order cancelled: {}", orderId);
+            logger.info("Order cancel requested: {}", orderId);
             
-            return new OrderResponse(cancelledOrder);
+            return new OrderResponse(order);
         } else {
             throw new IllegalArgumentException("Order not found: " + orderId);
         }
     }
     
+    /**
+     * Requests an amendment from the matching engine, which keeps time priority for a
+     * pure size reduction and re-queues the order otherwise; a stop order not yet matched
+     * takes the new terms in place. The new terms are written asynchronously once the
+     * engine has applied them.
+     */
     public OrderResponse updateOrder(String orderId, BigDecimal newPrice, BigDecimal newQuantity) {
         Optional<Order> optionalOrder = orderRepository.findByOrderId(orderId);
         
@@ -177,49 +204,40 @@ public class OrderService {
                 throw new IllegalStateException("Cannot update order with status: " + order.getStatus());
             }
             
-            if (newPrice != null) {
-                order.setPrice(newPrice);
-            }
-            
-            if (newQuantity != null) {
-                BigDecimal remainingUnfilled = order.getQuantity().subtract(order.getFilledQuantity());
-                if (newQuantity.compareTo(remainingUnfilled) < 0) {
-                    throw new IllegalArgumentException("New quantity cannot be less than unfilled quantity");
-                }
-                
-                order.setQuantity(newQuantity);
-                order.setRemainingQuantity(newQuantity.subtract(order.getFilledQuantity()));
+            // A stop turns into a market order: there is no limit price to change
+            if (newPrice != null && order.getType() == OrderType.STOP) {
+                throw new IllegalArgumentException("Stop orders have no limit price to update");
             }
             
-            order.setUpdatedAt(LocalDateTime.now());
+            BigDecimal price = newPrice != null ? newPrice : order.getPrice();
+            BigDecimal quantity = newQuantity != null ? newQuantity : order.getQuantity();
             
-            Order updatedOrder = orderRepository.save(order);
+            if (quantity.compareTo(order.getFilledQuantity()) <= 0) {
+                throw new IllegalArgumentException("New quantity must exceed the filled quantity");
+            }
             
-            // Update in matching engine
-            matchingEngine.getOrderBook(order.getSymbol()).updateOrder(updatedOrder);
+            matchingEngine.amendOrder(orderId, order.getSymbol(), price, quantity);
             
-            logger.info("Order updated: {} - price: {}, quantity: {}", orderId, newPrice, newQuantity);
+            logger.info("Order update requested: {} - price: {}, quantity: {}", orderId, newPrice, newQuantity);
             
-            return new OrderResponse(updatedOrder);
+            return new OrderResponse(order);
         } else {
             throw new IllegalArgumentException("Order not found: " + orderId);
         }
     }
     
+    /**
+     * Orders the matching engine has expired. Expiry itself happens in the engine at
+     * each DAY or GTD order's deadline; this only reads the result.
+     */
     public List<OrderResponse> getExpiredOrders() {
-        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(30); // Configurable
-        List<Order> expiredOrders = orderRepository.findByStatusAndCreatedAtBefore(OrderStatus.PENDING, cutoff);
-        
-        // Mark expired orders
-        for (Order order : expiredOrders) {
-            order.setStatus(OrderStatus.EXPIRED);
-            order.setReason("Order expired");
-            orderRepository.save(order);
-        }
-        
-        return expiredOrders.stream()
-            .map(OrderResponse::new)
-            .collect(Collectors.toList());
+        return getOrdersByStatus(OrderStatus.EXPIRED);
+    }
+    
+    // DAY orders entered after the close run to the next day's close
+    private LocalDateTime nextDayClose(LocalDateTime enteredAt) {
+        LocalDateTime close = LocalDate.from(enteredAt).atTime(LocalTime.parse(dayCloseTime));
+        return close.isAfter(enteredAt) ? close : close.plusDays(1);
     }
     
     private String generateOrderId() {
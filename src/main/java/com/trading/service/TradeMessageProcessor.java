@@ -78,6 +78,10 @@ public class TradeMessageProcessor {
         String quantityStr = getElementValue(orderElement, "OrderQty");
         String priceStr = getElementValue(orderElement, "Price");
         String account = getElementValue(orderElement, "Account");
+        // FIX MaxFloor: shown quantity of an iceberg order
+        String maxFloorStr = getElementValue(orderElement, "MaxFloor");
+        // FIX StopPx: trigger price of a stop or stop-limit order
+        String stopPxStr = getElementValue(orderElement, "StopPx");
         
         // Create order object with proper validation
         Order order = new Order();
@@ -113,6 +117,12 @@ public class TradeMessageProcessor {
             if (priceStr != null && !priceStr.isEmpty()) {
                 order.setPrice(new BigDecimal(priceStr));
             }
+            if (maxFloorStr != null && !maxFloorStr.isEmpty()) {
+                order.setDisplayQuantity(new BigDecimal(maxFloorStr));
+            }
+            if (stopPxStr != null && !stopPxStr.isEmpty()) {
+                order.setStopPrice(new BigDecimal(stopPxStr));
+            }
         } catch (NumberFormatException e) {
             message.setStatus("REJECTED");
             message.setRejectReason("Invalid quantity or price format");
@@ -0,0 +1,67 @@
+package com.trading.benchmark;
+
+import java.util.Random;
+
+import com.trading.domain.Allocation;
+import com.trading.domain.BookOrder;
+import com.trading.domain.BookOrderPool;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+import com.trading.engine.OrderMatcher;
+
+/**
+ * Matching into one deep price level under each allocation. Each operation cancels an
+ * older resting sell, rests a new one and sends a buy at the same price, so the level
+ * holds up to {@value #LIVE_ORDERS} orders throughout. FIFO touches the few orders at
+ * the front; pro rata visits every order at the level once per buy, which is the cost
+ * being measured. The stream is pregenerated and identical for every allocation.
+ */
+public class AllocationBenchmark {
+    
+    private static final int OPS = 200_000;
+    private static final int LIVE_ORDERS = 256;
+    private static final long PRICE_TICKS = 1_000_000L;
+    private static final long UNITS = 10_000L;
+    
+    public static void main(String[] args) {
+        String[] ids = new String[LIVE_ORDERS];
+        for (int i = 0; i < LIVE_ORDERS; i++) {
+            ids[i] = "ORD" + i;
+        }
+        Random random = new Random(42);
+        long[] sellQuantities = new long[OPS];
+        long[] buyQuantities = new long[OPS];
+        for (int i = 0; i < OPS; i++) {
+            sellQuantities[i] = UNITS * (1 + random.nextInt(5));
+            buyQuantities[i] = UNITS * (1 + random.nextInt(5));
+        }
+        
+        for (Allocation allocation : Allocation.values()) {
+            BenchmarkRunner.run(allocation + " (" + LIVE_ORDERS + " orders per level)", OPS,
+                                () -> run(allocation, ids, sellQuantities, buyQuantities));
+        }
+    }
+    
+    private static long run(Allocation allocation, String[] ids, long[] sellQuantities, long[] buyQuantities) {
+        OrderBook book = new OrderBook("BENCH", TickScale.DEFAULT);
+        book.setAllocation(allocation);
+        OrderMatcher matcher = new OrderMatcher();
+        BookOrderPool pool = book.getOrderPool();
+        long[] fills = new long[1];
+        for (int i = 0; i < OPS; i++) {
+            String orderId = ids[i % LIVE_ORDERS];
+            BookOrder cancelled = book.removeOrder(orderId);
+            if (cancelled != null) {
+                book.releaseOrder(cancelled);
+            }
+            book.addOrder(pool.acquire(orderId, OrderSide.SELL, OrderType.LIMIT, PRICE_TICKS, sellQuantities[i], 0L));
+            
+            BookOrder buy = pool.acquire("BUY", OrderSide.BUY, OrderType.LIMIT, PRICE_TICKS, buyQuantities[i], 0L);
+            matcher.match(book, buy, (aggressor, resting, quantity, price) -> fills[0]++);
+            pool.release(buy);
+        }
+        return fills[0];
+    }
+}
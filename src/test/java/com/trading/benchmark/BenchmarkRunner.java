@@ -0,0 +1,61 @@
+package com.trading.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal warmup/measure harness for the engine micro-benchmarks.
+ * Benchmarks are plain main classes so they run straight from the test classpath:
+ *
+ *   java -cp target/classes:target/test-classes com.trading.benchmark.MatchingThroughputBenchmark
+ */
+final class BenchmarkRunner {
+    
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    
+    private BenchmarkRunner() {}
+    
+    /**
+     * Runs {@code round} repeatedly and prints the best observed throughput.
+     * Each call of {@code round} must perform {@code opsPerRound} operations.
+     */
+    static double run(String name, int opsPerRound, Runnable round) {
+        return run(name, opsPerRound, round, BenchmarkRunner::allocatedBytes);
+    }
+    
+    /**
+     * As {@link #run(String, int, Runnable)}, reporting B/op from {@code allocatedBytes},
+     * for work that happens on another thread than the one driving it.
+     */
+    static double run(String name, int opsPerRound, Runnable round, LongSupplier allocatedBytes) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        
+        long bestNanos = Long.MAX_VALUE;
+        long allocatedBefore = allocatedBytes.getAsLong();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            round.run();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        long allocatedPerOp = (allocatedBytes.getAsLong() - allocatedBefore) / ((long) MEASURED_ROUNDS * opsPerRound);
+        
+        double opsPerSecond = opsPerRound * 1_000_000_000.0 / bestNanos;
+        System.out.printf("%-48s %,14.0f ops/s %,10d B/op%n", name, opsPerSecond, allocatedPerOp);
+        return opsPerSecond;
+    }
+    
+    static long allocatedBytes() {
+        return allocatedBytes(Thread.currentThread());
+    }
+    
+    static long allocatedBytes(Thread thread) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(thread.getId());
+        }
+        return 0L;
+    }
+}
@@ -0,0 +1,84 @@
+package com.trading.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.Order;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+import com.trading.engine.IdTable;
+
+/**
+ * Retained heap per resting order. "Before" is a book entry that keeps the saved JPA
+ * order alive, as entries did when they referenced it: BigDecimals, timestamps and
+ * per-request strings included. "After" is the primitive entry with interned ids,
+ * whose only object besides itself is the order id. Run with a heap of 3 GB or more.
+ */
+public class BookHeapBenchmark {
+    
+    private static final int ORDERS = 1_000_000;
+    private static final int BAND_TICKS = 500;
+    private static final long BASE_TICKS = 10_000L;
+    private static final int ACCOUNTS = 1_000;
+    
+    public static void main(String[] args) {
+        TickScale tickScale = TickScale.DEFAULT;
+        
+        long baseline = usedHeap();
+        Order[] entities = new Order[ORDERS];
+        OrderBook before = new OrderBook("BENCH", tickScale);
+        for (int i = 0; i < ORDERS; i++) {
+            entities[i] = savedEntity(i, tickScale);
+            before.addOrder(BookOrder.from(entities[i], tickScale));
+        }
+        long beforeBytes = usedHeap() - baseline;
+        report("Entry + JPA entity (before)", beforeBytes);
+        entities = null;
+        before = null;
+        
+        baseline = usedHeap();
+        IdTable symbols = new IdTable();
+        IdTable accounts = new IdTable();
+        OrderBook after = new OrderBook("BENCH", tickScale);
+        for (int i = 0; i < ORDERS; i++) {
+            Order order = savedEntity(i, tickScale);
+            BookOrder entry = BookOrder.from(order, tickScale);
+            entry.setIds(symbols.idOf(order.getSymbol()), accounts.idOf(order.getAccountId()), 0);
+            after.addOrder(entry);
+        }
+        long afterBytes = usedHeap() - baseline;
+        report("Primitive entry with ids (after)", afterBytes);
+        
+        System.out.printf("Reduction: %.1fx (%,d resting orders in the book)%n",
+                          (double) beforeBytes / afterBytes, after.getTotalBidOrders() + after.getTotalAskOrders());
+    }
+    
+    /**
+     * An order as the API saves it: strings from the request, parsed decimals, timestamps and a row id.
+     */
+    private static Order savedEntity(int i, TickScale tickScale) {
+        OrderSide side = i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL;
+        long ticks = side == OrderSide.BUY ? BASE_TICKS - 1 - i % BAND_TICKS : BASE_TICKS + i % BAND_TICKS;
+        Order order = new Order(String.format("ORD_%d_%08x", 1_700_000_000_000L + i, i), new String("BENCH"),
+                                side, OrderType.LIMIT, new BigDecimal("100"), new BigDecimal(tickScale.toPrice(ticks).toPlainString()),
+                                "ACC" + (i % ACCOUNTS));
+        order.setId((long) i + 1);
+        order.setUpdatedAt(LocalDateTime.now());
+        return order;
+    }
+    
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+    
+    private static void report(String name, long bytes) {
+        System.out.printf("%-48s %,14d bytes %,10d B/order%n", name, bytes, bytes / ORDERS);
+    }
+}
@@ -0,0 +1,69 @@
+package com.trading.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.trading.domain.Order;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.engine.RingIngress;
+import com.trading.engine.WaitStrategy;
+
+/**
+ * Hand-off cost from a submitting thread to a matching shard: the executor path
+ * (a lambda and Future per order through a LinkedBlockingQueue) against ring ingress
+ * with each wait strategy. The shard only counts orders, so this measures the queue
+ * alone; B/op is what the submitting thread allocates.
+ */
+public class IngressBenchmark {
+    
+    private static final int OPS = 1_000_000;
+    private static final int RING_SIZE = 65_536;
+    
+    public static void main(String[] args) throws InterruptedException {
+        Order order = new Order("O1", "BENCH", OrderSide.BUY, OrderType.LIMIT,
+                                new BigDecimal("100"), new BigDecimal("10.00"), "ACC");
+        AtomicLong processed = new AtomicLong();
+        
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        double executorRate = BenchmarkRunner.run("Executor submit (before)", OPS, () -> {
+            long target = processed.get() + OPS;
+            for (int i = 0; i < OPS; i++) {
+                executor.submit(() -> {
+                    processed.lazySet(processed.get() + 1);
+                    return null;
+                });
+            }
+            awaitCount(processed, target);
+        });
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            RingIngress ring = new RingIngress("bench-" + waitStrategy, RING_SIZE, waitStrategy,
+                                               o -> processed.lazySet(processed.get() + 1));
+            double ringRate = BenchmarkRunner.run("Ring ingress, " + waitStrategy, OPS, () -> {
+                long target = processed.get() + OPS;
+                for (int i = 0; i < OPS; i++) {
+                    // A full ring is where the engine rejects; here the producer retries instead
+                    while (!ring.tryPublish(order)) {
+                        Thread.onSpinWait();
+                    }
+                }
+                awaitCount(processed, target);
+            });
+            System.out.printf("  %.2fx executor%n", ringRate / executorRate);
+            ring.shutdown();
+            ring.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+    
+    private static void awaitCount(AtomicLong processed, long target) {
+        while (processed.get() < target) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.trading.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.BookOrderPool;
+import com.trading.domain.Order;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderStatus;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+import com.trading.domain.Trade;
+import com.trading.engine.ExecutionEvent;
+import com.trading.engine.ExecutionQueue;
+import com.trading.engine.MatchListener;
+import com.trading.engine.OrderMatcher;
+import com.trading.engine.OrderStatusEvent;
+import com.trading.engine.WaitStrategy;
+import com.trading.service.MarketDataFeed;
+import com.trading.service.MatchingEngine;
+import com.trading.service.OrderPersistenceService;
+
+/**
+ * Bytes allocated by the matching thread per matched order. Each operation rests one
+ * ask behind a standing queue at one price and sends one buy that fills against the
+ * head of it, so the book is in steady state. "Before" does what the engine used to do
+ * on the matching thread per fill; "after" writes fills into pooled execution events
+ * and recycles book entries. The engine runs then send the same orders through a
+ * {@link MatchingEngine} with ring ingress, so B/op covers ingress, matching and
+ * publishing on its shard thread; with the L2 feed on, each changed level is also a
+ * feed message. JMH is not on the classpath, so B/op is the matching thread's own
+ * allocation counter rather than -prof gc.
+ */
+public class MatchingAllocationBenchmark {
+    
+    private static final int OPS = 200_000;
+    private static final int QUEUE_DEPTH = 100;
+    private static final int ENTITIES = 1024;
+    private static final long PRICE_TICKS = 10_000L;
+    private static final int IN_FLIGHT = 16_384;
+    
+    public static void main(String[] args) throws InterruptedException {
+        TickScale tickScale = TickScale.DEFAULT;
+        BigDecimal price = tickScale.toPrice(PRICE_TICKS);
+        BigDecimal quantity = new BigDecimal("100");
+        long quantityUnits = tickScale.toUnits(quantity);
+        
+        // Order entities arrive from the API layer; reused here so only the engine's own allocation is counted
+        Order[] asks = new Order[ENTITIES];
+        for (int i = 0; i < ENTITIES; i++) {
+            asks[i] = new Order("A" + i, "BENCH", OrderSide.SELL, OrderType.LIMIT, quantity, price, "ACC1");
+        }
+        Order buy = new Order("B", "BENCH", OrderSide.BUY, OrderType.LIMIT, quantity, price, "ACC2");
+        // The engine used to reach each entry's entity through a reference in the entry
+        Map<String, Order> entities = new HashMap<>();
+        for (Order ask : asks) {
+            entities.put(ask.getOrderId(), ask);
+        }
+        entities.put(buy.getOrderId(), buy);
+        OrderMatcher matcher = new OrderMatcher();
+        
+        double before = BenchmarkRunner.run("Trades on the matching thread (before)", OPS, () -> {
+            OrderBook book = new OrderBook("BENCH", tickScale);
+            for (int i = 0; i < QUEUE_DEPTH; i++) {
+                book.addOrder(BookOrder.from(reset(asks[i]), tickScale));
+            }
+            for (int i = 0; i < OPS; i++) {
+                book.addOrder(BookOrder.from(reset(asks[(i + QUEUE_DEPTH) % ENTITIES]), tickScale));
+                BookOrder incoming = BookOrder.from(reset(buy), tickScale);
+                
+                List<Trade> trades = new ArrayList<>();
+                List<OrderStatusEvent> statusEvents = new ArrayList<>();
+                matcher.match(book, incoming, (aggressor, resting, qty, px) -> {
+                    BigDecimal fillQuantity = tickScale.toQuantity(qty);
+                    trades.add(new Trade("TRADE_" + System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8),
+                                         "BENCH", fillQuantity, tickScale.toPrice(px), aggressor.getOrderId(), resting.getOrderId(),
+                                         "ACC2", "ACC1"));
+                    entities.get(aggressor.getOrderId()).updateFilledQuantity(fillQuantity);
+                    entities.get(resting.getOrderId()).updateFilledQuantity(fillQuantity);
+                    statusEvents.add(new OrderStatusEvent(entities.get(resting.getOrderId())));
+                });
+                statusEvents.add(new OrderStatusEvent(buy));
+                for (Trade trade : trades) {
+                    trade.toString();
+                }
+                buy.toString();
+            }
+        });
+        
+        AtomicLong published = new AtomicLong();
+        ExecutionQueue queue = new ExecutionQueue("bench-publisher", 65_536, WaitStrategy.YIELD,
+                                                  event -> published.lazySet(published.get() + 1));
+        AtomicLong tradeSequence = new AtomicLong();
+        MatchListener publishFill = (aggressor, resting, qty, px) -> {
+            ExecutionEvent event = queue.claim();
+            event.setFill(aggressor, resting, qty, px, tradeSequence.incrementAndGet(), System.currentTimeMillis());
+            queue.publish(event);
+        };
+        
+        double after = BenchmarkRunner.run("Pooled entries and execution events (after)", OPS, () -> {
+            OrderBook book = new OrderBook("BENCH", tickScale);
+            BookOrderPool pool = book.getOrderPool();
+            for (int i = 0; i < QUEUE_DEPTH; i++) {
+                book.addOrder(pool.acquire(asks[i].getOrderId(), OrderSide.SELL, OrderType.LIMIT, PRICE_TICKS, quantityUnits, 0L));
+            }
+            for (int i = 0; i < OPS; i++) {
+                book.addOrder(pool.acquire(asks[(i + QUEUE_DEPTH) % ENTITIES].getOrderId(), OrderSide.SELL, OrderType.LIMIT,
+                                           PRICE_TICKS, quantityUnits, 0L));
+                BookOrder incoming = pool.acquire(buy.getOrderId(), OrderSide.BUY, OrderType.LIMIT, PRICE_TICKS, quantityUnits, 0L);
+                
+                matcher.match(book, incoming, publishFill);
+                ExecutionEvent done = queue.claim();
+                done.setOrderDone(incoming, null, System.currentTimeMillis());
+                queue.publish(done);
+                pool.release(incoming);
+            }
+        });
+        
+        queue.shutdown();
+        queue.awaitTermination(10, TimeUnit.SECONDS);
+        System.out.printf("Speedup: %.2fx, %,d events published%n", after / before, published.get());
+        
+        reset(buy);
+        for (Order ask : asks) {
+            reset(ask);
+        }
+        for (boolean marketData : new boolean[] {false, true}) {
+            runEngine(marketData, asks, buy);
+        }
+    }
+    
+    private static void runEngine(boolean marketData, Order[] asks, Order buy) {
+        try (AnnotationConfigApplicationContext context = engineContext(marketData)) {
+            MatchingEngine engine = context.getBean(MatchingEngine.class);
+            AtomicLong trades = ((CountingPersistence) context.getBean(OrderPersistenceService.class)).trades;
+            for (int i = 0; i < QUEUE_DEPTH; i++) {
+                engine.processOrder(asks[i]);
+            }
+            Thread shard = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("matching-shard-0")).findFirst().orElseThrow();
+            
+            int[] next = {QUEUE_DEPTH};
+            BenchmarkRunner.run("Engine ingress to publish" + (marketData ? ", L2 feed" : ""), OPS, () -> {
+                long start = trades.get();
+                for (int i = 0; i < OPS; i++) {
+                    // Stay well inside the ring: a full one rejects orders
+                    while (start + i - trades.get() > IN_FLIGHT) {
+                        Thread.onSpinWait();
+                    }
+                    engine.processOrder(asks[next[0]++ % ENTITIES]);
+                    engine.processOrder(buy);
+                }
+                while (trades.get() < start + OPS) {
+                    Thread.onSpinWait();
+                }
+            }, () -> BenchmarkRunner.allocatedBytes(shard));
+        }
+    }
+    
+    private static AnnotationConfigApplicationContext engineContext(boolean marketData) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("bench", Map.of(
+            "trading.matching-engine.mode", "sharded",
+            "trading.matching-engine.shard-count", "1",
+            "trading.matching-engine.ingress", "ring",
+            "trading.matching-engine.wait-strategy", "yield",
+            "trading.order-book.array-ladder-symbols", "BENCH",
+            "trading.market-data.enabled", String.valueOf(marketData))));
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:bench");
+        context.registerBean(JdbcTemplate.class, () -> new JdbcTemplate(dataSource));
+        context.registerBean(PlatformTransactionManager.class, () -> new DataSourceTransactionManager(dataSource));
+        context.registerBean(OrderPersistenceService.class, CountingPersistence::new);
+        context.registerBean(MarketDataFeed.class);
+        context.registerBean(KafkaTemplate.class, DiscardingKafkaTemplate::new);
+        context.registerBean(MatchingEngine.class);
+        context.refresh();
+        return context;
+    }
+    
+    // Counts trades instead of writing them; the benchmark paces its orders by it
+    private static final class CountingPersistence extends OrderPersistenceService {
+        
+        final AtomicLong trades = new AtomicLong();
+        
+        @Override
+        public void start() {
+        }
+        
+        @Override
+        public void saveTrade(Trade trade) {
+            trades.incrementAndGet();
+        }
+        
+        @Override
+        public void saveBatch(Batch batch) {
+        }
+        
+        @Override
+        public void saveOrder(Order order) {
+        }
+        
+        @Override
+        public void saveOrderState(String orderId, BigDecimal filledQuantity, BigDecimal remainingQuantity,
+                                   OrderStatus status, String reason, LocalDateTime updatedAt, LocalDateTime filledAt) {
+        }
+        
+        @Override
+        public void afterPersisted(Runnable acknowledgement) {
+        }
+        
+        @Override
+        public void stop() {
+        }
+    }
+    
+    private static final class DiscardingKafkaTemplate extends KafkaTemplate<String, String> {
+        
+        DiscardingKafkaTemplate() {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+        }
+        
+        @Override
+        public CompletableFuture<SendResult<String, String>> send(String topic, String key, String data) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+    
+    private static Order reset(Order order) {
+        order.setFilledQuantity(BigDecimal.ZERO);
+        order.setRemainingQuantity(order.getQuantity());
+        order.setStatus(OrderStatus.PENDING);
+        return order;
+    }
+}
@@ -0,0 +1,112 @@
+package com.trading.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.Order;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+import com.trading.engine.OrderMatcher;
+
+/**
+ * Matching throughput of the fixed-point book against the previous BigDecimal book.
+ * The book is preloaded with resting asks over a 50-tick band; each operation rests
+ * one more ask and sends one buy that takes out the best ask, so depth stays steady.
+ */
+public class MatchingThroughputBenchmark {
+    
+    private static final int OPS = 100_000;
+    private static final int RESTING_ORDERS = 5_000;
+    private static final int BAND_TICKS = 50;
+    private static final int BASE_TICKS = 10_000;
+    
+    public static void main(String[] args) {
+        TickScale tickScale = TickScale.DEFAULT;
+        BigDecimal[] prices = new BigDecimal[BAND_TICKS];
+        for (int i = 0; i < BAND_TICKS; i++) {
+            prices[i] = tickScale.toPrice(BASE_TICKS + i);
+        }
+        BigDecimal crossPrice = prices[BAND_TICKS - 1];
+        BigDecimal quantity = new BigDecimal("100");
+        
+        double before = BenchmarkRunner.run("BigDecimal book (before)", OPS, () -> {
+            DecimalBook book = new DecimalBook();
+            for (int i = 0; i < RESTING_ORDERS; i++) {
+                book.add(newOrder(-i, OrderSide.SELL, prices[i % BAND_TICKS], quantity));
+            }
+            for (int i = 0; i < OPS; i++) {
+                book.add(newOrder(i, OrderSide.SELL, prices[i % BAND_TICKS], quantity));
+                book.matchBuy(newOrder(i, OrderSide.BUY, crossPrice, quantity));
+            }
+        });
+        
+        OrderMatcher matcher = new OrderMatcher();
+        double after = BenchmarkRunner.run("Fixed-point tick book (after)", OPS, () -> {
+            OrderBook book = new OrderBook("BENCH", tickScale);
+            for (int i = 0; i < RESTING_ORDERS; i++) {
+                book.addOrder(BookOrder.from(newOrder(-i, OrderSide.SELL, prices[i % BAND_TICKS], quantity), tickScale));
+            }
+            for (int i = 0; i < OPS; i++) {
+                book.addOrder(BookOrder.from(newOrder(i, OrderSide.SELL, prices[i % BAND_TICKS], quantity), tickScale));
+                BookOrder buy = BookOrder.from(newOrder(i, OrderSide.BUY, crossPrice, quantity), tickScale);
+                matcher.match(book, buy, (aggressor, resting, qty, price) -> { });
+            }
+        });
+        
+        System.out.printf("Speedup: %.2fx%n", after / before);
+    }
+    
+    private static Order newOrder(int i, OrderSide side, BigDecimal price, BigDecimal quantity) {
+        return new Order("B" + i + side.name().charAt(0), "BENCH", side, OrderType.LIMIT, quantity, price, "ACC");
+    }
+    
+    /**
+     * The pre-tick book and matching loop: BigDecimal keys, a 100-level aggregate
+     * snapshot per incoming order and BigDecimal arithmetic per fill.
+     */
+    private static class DecimalBook {
+        
+        private final ConcurrentSkipListMap<BigDecimal, List<Order>> asks = new ConcurrentSkipListMap<>();
+        
+        void add(Order order) {
+            asks.computeIfAbsent(order.getPrice(), k -> new ArrayList<>()).add(order);
+        }
+        
+        void matchBuy(Order buyOrder) {
+            BigDecimal remaining = buyOrder.getRemainingQuantity();
+            Map<BigDecimal, BigDecimal> levels = new LinkedHashMap<>();
+            int count = 0;
+            for (Map.Entry<BigDecimal, List<Order>> entry : asks.entrySet()) {
+                if (count++ >= 100) break;
+                levels.put(entry.getKey(), entry.getValue().stream()
+                    .map(Order::getRemainingQuantity)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add));
+            }
+            
+            for (BigDecimal askPrice : levels.keySet()) {
+                if (buyOrder.getPrice().compareTo(askPrice) < 0) break;
+                for (Order ask : new ArrayList<>(asks.getOrDefault(askPrice, Collections.emptyList()))) {
+                    if (remaining.compareTo(BigDecimal.ZERO) <= 0) break;
+                    BigDecimal matchQuantity = remaining.min(ask.getRemainingQuantity());
+                    remaining = remaining.subtract(matchQuantity);
+                    buyOrder.updateFilledQuantity(matchQuantity);
+                    ask.updateFilledQuantity(matchQuantity);
+                    if (ask.isFullyFilled()) {
+                        asks.computeIfPresent(askPrice, (p, orders) -> {
+                            orders.removeIf(o -> o.getOrderId().equals(ask.getOrderId()));
+                            return orders.isEmpty() ? null : orders;
+                        });
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.trading.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.trading.domain.BookOrder;
+import com.trading.domain.BookOrderPool;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+import com.trading.engine.OrderMatcher;
+
+/**
+ * GC pauses and matching latency of very deep books, on-heap versus off-heap.
+ * Each size builds a book with that many resting orders over both sides, then times
+ * operations against it: a sell that rests inside the spread and is taken at once by
+ * a buy, plus a cancel and re-add of a random deep order. Reported per size: young
+ * collection pauses seen while operating, one full collection with the book live, and
+ * operation latency percentiles. One storage mode per run so the heaps never mix:
+ *
+ *   java -Xmx3g -XX:MaxDirectMemorySize=2g -cp ... OffHeapBookBenchmark heap 1000000 5000000 10000000
+ *   java -Xmx3g -XX:MaxDirectMemorySize=2g -cp ... OffHeapBookBenchmark off-heap 1000000 5000000 10000000
+ */
+public class OffHeapBookBenchmark {
+    
+    private static final int[] DEFAULT_SIZES = {1_000_000, 5_000_000, 10_000_000};
+    private static final int LEVELS_PER_SIDE = 10_000;
+    private static final long BASE_TICKS = 1_000_000L;
+    private static final long UNITS = 10_000L;
+    private static final int WARMUP_OPS = 200_000;
+    private static final int MEASURED_OPS = 1_000_000;
+    
+    private static final OrderMatcher MATCHER = new OrderMatcher();
+    
+    public static void main(String[] args) {
+        boolean offHeap = args.length > 0 && "off-heap".equals(args[0]);
+        int[] sizes = args.length > 1
+            ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+            : DEFAULT_SIZES;
+        
+        GcPauses pauses = new GcPauses();
+        for (int size : sizes) {
+            run(offHeap, size, pauses);
+        }
+    }
+    
+    private static void run(boolean offHeap, int size, GcPauses pauses) {
+        OrderBook book = new OrderBook("BENCH", TickScale.DEFAULT, offHeap);
+        BookOrderPool pool = book.getOrderPool();
+        for (int i = 0; i < size; i++) {
+            OrderSide side = i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL;
+            long level = (i >> 1) % LEVELS_PER_SIDE;
+            long price = side == OrderSide.BUY ? BASE_TICKS - 1 - level : BASE_TICKS + 1 + level;
+            book.addOrder(pool.acquire(restingId(i), side, OrderType.LIMIT, price, UNITS, 0L));
+        }
+        
+        Random random = new Random(42);
+        operate(book, size, random, WARMUP_OPS, null);
+        
+        pauses.reset();
+        long[] latencies = new long[MEASURED_OPS];
+        operate(book, size, random, MEASURED_OPS, latencies);
+        int youngCount = pauses.count();
+        long youngTotal = pauses.totalMillis();
+        long youngMax = pauses.maxMillis();
+        
+        long start = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - start) / 1_000_000L;
+        long heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        
+        Arrays.sort(latencies);
+        System.out.printf("%-8s %,11d orders  heap %,6d MB  off-heap %,6d MB  full GC %,6d ms%n",
+                          offHeap ? "off-heap" : "heap", size, heapBytes >> 20, book.getOffHeapBytes() >> 20, fullGcMillis);
+        System.out.printf("%-8s young GCs %,5d  total %,6d ms  max %,5d ms  |  p50 %,7d ns  p99 %,7d ns  p99.9 %,9d ns  max %,11d ns%n",
+                          "", youngCount, youngTotal, youngMax, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                          percentile(latencies, 0.999), latencies[latencies.length - 1]);
+    }
+    
+    private static void operate(OrderBook book, int size, Random random, int ops, long[] latencies) {
+        BookOrderPool pool = book.getOrderPool();
+        for (int op = 0; op < ops; op++) {
+            String deepId = restingId(random.nextInt(size));
+            long start = System.nanoTime();
+            
+            book.addOrder(pool.acquire("T" + op, OrderSide.SELL, OrderType.LIMIT, BASE_TICKS, UNITS, 0L));
+            BookOrder buy = pool.acquire("U" + op, OrderSide.BUY, OrderType.LIMIT, BASE_TICKS, UNITS, 0L);
+            MATCHER.match(book, buy, (aggressor, resting, quantity, price) -> { });
+            book.releaseOrder(buy);
+            
+            BookOrder deep = book.removeOrder(deepId);
+            book.addOrder(deep);
+            
+            if (latencies != null) {
+                latencies[op] = System.nanoTime() - start;
+            }
+        }
+    }
+    
+    private static String restingId(int i) {
+        return "R" + i;
+    }
+    
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+    
+    /**
+     * Pause durations of the young collections reported by the JVM since the last reset.
+     */
+    private static final class GcPauses {
+        
+        private final List<Long> millis = new ArrayList<>();
+        
+        GcPauses() {
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) bean).addNotificationListener((notification, handback) -> {
+                    if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                        return;
+                    }
+                    GarbageCollectionNotificationInfo info =
+                        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                    if (info.getGcAction().contains("minor")) {
+                        synchronized (millis) {
+                            millis.add(info.getGcInfo().getDuration());
+                        }
+                    }
+                }, null, null);
+            }
+        }
+        
+        void reset() {
+            synchronized (millis) {
+                millis.clear();
+            }
+        }
+        
+        int count() {
+            synchronized (millis) {
+                return millis.size();
+            }
+        }
+        
+        long totalMillis() {
+            synchronized (millis) {
+                return millis.stream().mapToLong(Long::longValue).sum();
+            }
+        }
+        
+        long maxMillis() {
+            synchronized (millis) {
+                return millis.stream().mapToLong(Long::longValue).max().orElse(0L);
+            }
+        }
+    }
+}
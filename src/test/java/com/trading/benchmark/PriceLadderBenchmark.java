@@ -0,0 +1,79 @@
+package com.trading.benchmark;
+
+import java.util.Random;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.BookOrderPool;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.PriceLevel;
+import com.trading.domain.TickScale;
+import com.trading.engine.OrderMatcher;
+
+/**
+ * Book operations on a liquid symbol with the sorted-map ladder and the tick-indexed
+ * array ladder. Each operation cancels an older order, sends a new one within 100
+ * ticks of the touch (one in ten crosses and matches), then reads top of book as
+ * the engine does after every change. The stream is pregenerated and identical for
+ * both ladders, so only level lookup and maintenance differ.
+ */
+public class PriceLadderBenchmark {
+    
+    private static final int OPS = 1_000_000;
+    private static final int LIVE_ORDERS = 4_096;
+    private static final int BAND_TICKS = 100;
+    private static final long MID_TICKS = 1_000_000L;
+    private static final long UNITS = 10_000L;
+    private static final int LADDER_TICKS = 4_096;
+    
+    public static void main(String[] args) {
+        String[] ids = new String[LIVE_ORDERS];
+        for (int i = 0; i < LIVE_ORDERS; i++) {
+            ids[i] = "ORD" + i;
+        }
+        Random random = new Random(42);
+        OrderSide[] sides = new OrderSide[OPS];
+        long[] prices = new long[OPS];
+        long[] quantities = new long[OPS];
+        for (int i = 0; i < OPS; i++) {
+            sides[i] = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            // One order in ten is priced through the touch
+            long offset = random.nextInt(10) == 0 ? -random.nextInt(5) : 1 + random.nextInt(BAND_TICKS);
+            prices[i] = sides[i] == OrderSide.BUY ? MID_TICKS - offset : MID_TICKS + offset;
+            quantities[i] = UNITS * (1 + random.nextInt(5));
+        }
+        
+        double tree = BenchmarkRunner.run("Sorted-map ladder", OPS,
+                                          () -> run(new OrderBook("BENCH", TickScale.DEFAULT, false, 0), ids, sides, prices, quantities));
+        double array = BenchmarkRunner.run("Array ladder (" + LADDER_TICKS + " ticks)", OPS,
+                                           () -> run(new OrderBook("BENCH", TickScale.DEFAULT, false, LADDER_TICKS), ids, sides, prices, quantities));
+        System.out.printf("Speedup: %.2fx%n", array / tree);
+    }
+    
+    private static long run(OrderBook book, String[] ids, OrderSide[] sides, long[] prices, long[] quantities) {
+        OrderMatcher matcher = new OrderMatcher();
+        BookOrderPool pool = book.getOrderPool();
+        long checksum = 0;
+        for (int i = 0; i < OPS; i++) {
+            String orderId = ids[i % LIVE_ORDERS];
+            BookOrder cancelled = book.removeOrder(orderId);
+            if (cancelled != null) {
+                book.releaseOrder(cancelled);
+            }
+            
+            BookOrder order = pool.acquire(orderId, sides[i], OrderType.LIMIT, prices[i], quantities[i], 0L);
+            matcher.match(book, order, (aggressor, resting, quantity, price) -> { });
+            if (order.isFullyFilled()) {
+                book.releaseOrder(order);
+            } else {
+                book.addOrder(order);
+            }
+            
+            PriceLevel bid = book.getBestBidLevel();
+            PriceLevel ask = book.getBestAskLevel();
+            checksum += (bid != null ? bid.getTotalQuantity() : 0L) + (ask != null ? ask.getTotalQuantity() : 0L);
+        }
+        return checksum;
+    }
+}
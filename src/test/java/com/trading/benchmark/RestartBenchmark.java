@@ -0,0 +1,175 @@
+package com.trading.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.Order;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+import com.trading.engine.BookSnapshot;
+import com.trading.engine.IdTable;
+import com.trading.engine.InputJournal;
+import com.trading.engine.OrderMatcher;
+import com.trading.engine.SnapshotStore;
+
+/**
+ * Restart time against book size: replaying the whole journal versus loading the
+ * latest snapshot and replaying only the records written after it.
+ * The journal holds a trading day of orders that trade each other away, then the
+ * given number of resting orders on both sides of a 1,000-tick band, then a tail of
+ * further orders written after the snapshot, half of them crossing. Full replay cost
+ * grows with the day's history; snapshot restart cost grows with the book size.
+ *
+ *   java -Xmx4g -cp target/classes:target/test-classes com.trading.benchmark.RestartBenchmark
+ */
+public class RestartBenchmark {
+    
+    private static final int[] BOOK_SIZES = {10_000, 100_000, 1_000_000};
+    private static final int DAY_RECORDS = 2_000_000;
+    private static final int TAIL_RECORDS = 10_000;
+    private static final int BAND_TICKS = 1_000;
+    private static final int BASE_TICKS = 100_000;
+    private static final int ROUNDS = 3;
+    private static final String SYMBOL = "BENCH";
+    private static final IdTable SYMBOLS = new IdTable();
+    private static final IdTable ACCOUNTS = new IdTable();
+    private static final IdTable OWNERS = new IdTable();
+    
+    public static void main(String[] args) throws IOException {
+        TickScale tickScale = TickScale.DEFAULT;
+        System.out.printf("%-12s %16s %16s %10s%n", "resting", "full replay ms", "snapshot ms", "speedup");
+        
+        for (int bookSize : BOOK_SIZES) {
+            Path root = Files.createTempDirectory("restart-bench");
+            try {
+                Path journalDir = root.resolve("journal");
+                SnapshotStore store = new SnapshotStore(root.resolve("snapshots"), 1);
+                prepare(journalDir, store, tickScale, bookSize);
+                
+                long fullNanos = Long.MAX_VALUE;
+                long snapshotNanos = Long.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round++) {
+                    long start = System.nanoTime();
+                    restart(journalDir, tickScale, null, 0L);
+                    fullNanos = Math.min(fullNanos, System.nanoTime() - start);
+                    
+                    start = System.nanoTime();
+                    SnapshotStore.Snapshot snapshot = store.loadLatest();
+                    OrderBook book = snapshot.getBooks().get(0).restore(tickScale, SYMBOLS, ACCOUNTS, OWNERS);
+                    restart(journalDir, tickScale, book, snapshot.getReplayFrom());
+                    snapshotNanos = Math.min(snapshotNanos, System.nanoTime() - start);
+                }
+                
+                System.out.printf("%,-12d %,16d %,16d %9.1fx%n", bookSize,
+                                  fullNanos / 1_000_000, snapshotNanos / 1_000_000, (double) fullNanos / snapshotNanos);
+            } finally {
+                delete(root);
+            }
+        }
+    }
+    
+    /**
+     * Journals the resting orders, snapshots the resulting book, then journals the tail.
+     */
+    private static void prepare(Path journalDir, SnapshotStore store, TickScale tickScale, int bookSize) throws IOException {
+        OrderMatcher matcher = new OrderMatcher();
+        OrderBook book = new OrderBook(SYMBOL, tickScale);
+        BigDecimal quantity = new BigDecimal("100");
+        
+        try (InputJournal journal = new InputJournal(journalDir, 64 * 1024 * 1024, 0)) {
+            for (int i = 0; i < DAY_RECORDS; i++) {
+                // Alternating buys and sells at one price: each pair fills completely
+                OrderSide side = i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL;
+                Order order = new Order("D" + i, SYMBOL, side, OrderType.LIMIT, quantity, tickScale.toPrice(BASE_TICKS), "ACC");
+                book.setLastSequence(journal.appendNewOrder(order));
+                apply(matcher, book, order, tickScale);
+            }
+            
+            for (int i = 0; i < bookSize; i++) {
+                OrderSide side = i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL;
+                long ticks = side == OrderSide.BUY ? BASE_TICKS - 1 - i % BAND_TICKS : BASE_TICKS + i % BAND_TICKS;
+                Order order = new Order("R" + i, SYMBOL, side, OrderType.LIMIT, quantity, tickScale.toPrice(ticks), "ACC");
+                book.setLastSequence(journal.appendNewOrder(order));
+                apply(matcher, book, order, tickScale);
+            }
+            
+            List<BookSnapshot> books = new ArrayList<>();
+            books.add(BookSnapshot.capture(book, ACCOUNTS, OWNERS));
+            store.write(journal.getLastSequence(), tickScale.getTickSize().toPlainString(), books);
+            
+            for (int i = 0; i < TAIL_RECORDS; i++) {
+                OrderSide side = i % 2 == 0 ? OrderSide.BUY : OrderSide.SELL;
+                // Every other tail order crosses the spread
+                long ticks = i % 4 < 2 ? (side == OrderSide.BUY ? BASE_TICKS : BASE_TICKS - 1)
+                                       : (side == OrderSide.BUY ? BASE_TICKS - 1 : BASE_TICKS);
+                journal.appendNewOrder(new Order("T" + i, SYMBOL, side, OrderType.LIMIT, quantity, tickScale.toPrice(ticks), "ACC"));
+            }
+            journal.sync();
+        }
+    }
+    
+    private static OrderBook restart(Path journalDir, TickScale tickScale, OrderBook restored, long replayFrom) {
+        OrderMatcher matcher = new OrderMatcher();
+        OrderBook book = restored != null ? restored : new OrderBook(SYMBOL, tickScale);
+        
+        try (InputJournal journal = new InputJournal(journalDir, 64 * 1024 * 1024, 0)) {
+            journal.replay(replayFrom, new InputJournal.Handler() {
+                @Override
+                public void onNewOrder(long sequence, Order order) {
+                    if (sequence > book.getLastSequence()) {
+                        book.setLastSequence(sequence);
+                        apply(matcher, book, order, tickScale);
+                    }
+                }
+                
+                @Override
+                public void onAmend(long sequence, String orderId, String symbol, BigDecimal price, BigDecimal quantity) {
+                }
+                
+                @Override
+                public void onCancel(long sequence, String orderId, String symbol) {
+                }
+                
+                @Override
+                public void onAuctionStart(long sequence, String symbol) {
+                }
+                
+                @Override
+                public void onUncross(long sequence, String symbol) {
+                }
+            });
+        }
+        return book;
+    }
+    
+    private static void apply(OrderMatcher matcher, OrderBook book, Order order, TickScale tickScale) {
+        BookOrder bookOrder = BookOrder.from(order, tickScale);
+        bookOrder.setIds(SYMBOLS.idOf(order.getSymbol()), ACCOUNTS.idOf(order.getAccountId()), 0);
+        matcher.match(book, bookOrder, (aggressor, resting, qty, price) -> { });
+        if (!bookOrder.isFullyFilled()) {
+            book.addOrder(bookOrder);
+        }
+    }
+    
+    private static void delete(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.trading.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OrderBookTest {
+    
+    private OrderBook orderBook;
+    
+    @BeforeEach
+    void setUp() {
+        orderBook = new OrderBook("TEST");
+    }
+    
+    @Test
+    void ordersAtSamePriceKeepArrivalOrder() {
+        BookOrder first = sell("S1", "100.00", "10");
+        BookOrder second = sell("S2", "100.00", "20");
+        BookOrder third = sell("S3", "100.00", "30");
+        
+        PriceLevel level = orderBook.getAsksAtPrice(10000);
+        assertSame(first, level.getHead());
+        assertSame(second, first.getNext());
+        assertSame(third, second.getNext());
+    }
+    
+    @Test
+    void cancelUnlinksFromMiddleOfLevel() {
+        BookOrder first = sell("S1", "100.00", "10");
+        sell("S2", "100.00", "20");
+        BookOrder third = sell("S3", "100.00", "30");
+        
+        orderBook.removeOrder("S2");
+        
+        assertSame(third, first.getNext());
+        assertNull(orderBook.getOrder("S2"));
+        assertEquals(2, orderBook.getTotalAskOrders());
+    }
+    
+    @Test
+    void removingLastOrderRemovesLevel() {
+        sell("S1", "100.00", "10");
+        sell("S2", "100.01", "10");
+        
+        orderBook.removeOrder("S1");
+        
+        assertNull(orderBook.getAsksAtPrice(10000));
+        assertEquals(new BigDecimal("100.01"), orderBook.getBestAsk());
+    }
+    
+    @Test
+    void reduceKeepsTimePriority() {
+        BookOrder first = sell("S1", "100.00", "10");
+        sell("S2", "100.00", "20");
+        
+        assertTrue(orderBook.reduceOrder("S1", orderBook.getTickScale().toUnits(new BigDecimal("4"))));
+        
+        assertSame(first, orderBook.getAsksAtPrice(10000).getHead());
+        assertEquals(40000L, first.getRemainingQuantity());
+        assertFalse(orderBook.reduceOrder("S1", orderBook.getTickScale().toUnits(new BigDecimal("5"))));
+    }
+    
+    @Test
+    void levelAggregatesTrackAddFillReduceAndCancel() {
+        BookOrder first = sell("S1", "100.00", "10");
+        sell("S2", "100.00", "20");
+        sell("S3", "100.01", "5");
+        
+        PriceLevel level = orderBook.getAsksAtPrice(10000);
+        assertEquals(300000L, level.getTotalQuantity());
+        assertEquals(2, level.getOrderCount());
+        
+        orderBook.fillOrder(first, 40000L);
+        assertEquals(260000L, level.getTotalQuantity());
+        
+        orderBook.reduceOrder("S2", 100000L);
+        assertEquals(160000L, level.getTotalQuantity());
+        
+        orderBook.fillOrder(first, 60000L);
+        assertEquals(100000L, level.getTotalQuantity());
+        assertEquals(1, level.getOrderCount());
+        assertEquals(2, orderBook.getTotalAskOrders());
+        
+        orderBook.removeOrder("S3");
+        assertEquals(Map.of(10000L, 100000L), orderBook.getAskDepth(10));
+        assertEquals(1, orderBook.getTotalAskOrders());
+    }
+    
+    @Test
+    void orderIndexFindsOrdersAcrossGrowthAndRemoval() {
+        for (int i = 0; i < 100; i++) {
+            sell("S" + i, "100.00", "1");
+        }
+        for (int i = 0; i < 100; i += 2) {
+            assertEquals("S" + i, orderBook.removeOrder("S" + i).getOrderId());
+        }
+        
+        for (int i = 0; i < 100; i++) {
+            BookOrder order = orderBook.getOrder("S" + i);
+            assertEquals(i % 2 == 1, order != null && order.getOrderId().equals("S" + i));
+        }
+        assertEquals(50, orderBook.getTotalAskOrders());
+    }
+    
+    @Test
+    void offHeapBookKeepsPriorityAggregatesAndIndex() {
+        orderBook = new OrderBook("TEST", TickScale.DEFAULT, true);
+        for (int i = 0; i < 2000; i++) {
+            sell("S" + i, i % 2 == 0 ? "100.00" : "100.01", "1");
+        }
+        for (int i = 0; i < 2000; i += 4) {
+            assertEquals("S" + i, orderBook.removeOrder("S" + i).getOrderId());
+        }
+        assertTrue(orderBook.reduceOrder("S2", 4000L));
+        orderBook.fillOrder(orderBook.getOrder("S6"), 10000L);
+        sell("S0", "100.00", "3");
+        
+        PriceLevel level = orderBook.getAsksAtPrice(10000);
+        assertEquals(500, level.getOrderCount());
+        assertEquals(498 * 10000L + 4000L + 30000L, level.getTotalQuantity());
+        assertEquals("S2", level.getHead().getOrderId());
+        assertEquals(4000L, orderBook.getOrder("S2").getRemainingQuantity());
+        assertNull(orderBook.getOrder("S6"));
+        
+        List<String> queue = new ArrayList<>();
+        orderBook.forEachOrder(OrderSide.SELL, order -> {
+            if (order.getPrice() == 10000L) {
+                queue.add(order.getOrderId());
+            }
+        });
+        assertEquals(List.of("S2", "S10", "S14"), queue.subList(0, 3));
+        assertEquals("S0", queue.get(queue.size() - 1));
+        assertEquals(1500, orderBook.getTotalAskOrders());
+    }
+    
+    @Test
+    void arrayLadderMatchesSortedLadderAcrossRecentring() {
+        OrderBook tree = new OrderBook("TEST", TickScale.DEFAULT, false, 0);
+        OrderBook ladder = new OrderBook("TEST", TickScale.DEFAULT, false, 64);
+        Random random = new Random(7);
+        long mid = 10_000L;
+        
+        for (int i = 0; i < 20_000; i++) {
+            if (i % 500 == 0) {
+                // Jump the market far enough to move the window in both directions
+                mid += (random.nextInt(5) - 2) * 100L;
+            }
+            String orderId = "O" + random.nextInt(2_000);
+            if (tree.getOrder(orderId) != null) {
+                tree.removeOrder(orderId);
+                ladder.removeOrder(orderId);
+                continue;
+            }
+            OrderSide side = random.nextBoolean() ? OrderSide.BUY : OrderSide.SELL;
+            long offset = 1 + random.nextInt(random.nextInt(10) == 0 ? 300 : 20);
+            long price = side == OrderSide.BUY ? mid - offset : mid + offset;
+            boolean crosses = side == OrderSide.BUY
+                ? tree.getBestAsk() != null && price >= tree.getBestAskLevel().getPrice()
+                : tree.getBestBid() != null && price <= tree.getBestBidLevel().getPrice();
+            if (!crosses) {
+                tree.addOrder(new BookOrder(orderId, side, OrderType.LIMIT, price, 10_000L, 0L));
+                ladder.addOrder(new BookOrder(orderId, side, OrderType.LIMIT, price, 10_000L, 0L));
+            }
+            
+            // Depth maps iterate best first, so comparing entry lists also checks priority order
+            assertEquals(new ArrayList<>(tree.getBidDepth(Integer.MAX_VALUE).entrySet()),
+                         new ArrayList<>(ladder.getBidDepth(Integer.MAX_VALUE).entrySet()));
+            assertEquals(new ArrayList<>(tree.getAskDepth(Integer.MAX_VALUE).entrySet()),
+                         new ArrayList<>(ladder.getAskDepth(Integer.MAX_VALUE).entrySet()));
+        }
+        assertTrue(tree.getTotalBidOrders() + tree.getTotalAskOrders() > 0);
+    }
+    
+    @Test
+    void tradeReleasesOnlyTheStopsItReachesInTriggerOrder() {
+        orderBook.addStop(stop("BS1", OrderSide.BUY, 10_100L));
+        orderBook.addStop(stop("BS2", OrderSide.BUY, 10_050L));
+        orderBook.addStop(stop("BS3", OrderSide.BUY, 10_050L));
+        orderBook.addStop(stop("BS4", OrderSide.BUY, 10_200L));
+        orderBook.addStop(stop("SS1", OrderSide.SELL, 9_900L));
+        orderBook.addStop(stop("SS2", OrderSide.SELL, 10_100L));
+        assertNull(orderBook.pollTriggeredStop());
+        assertEquals("BS3", orderBook.removeStop("BS3").getOrderId());
+        
+        BookOrder resting = sell("S1", "101.00", "10");
+        orderBook.fillOrder(resting, 10_000L);
+        
+        // Buy stops from the lowest stop price up, then sell stops from the highest down
+        List<String> released = new ArrayList<>();
+        for (BookOrder stop = orderBook.pollTriggeredStop(); stop != null; stop = orderBook.pollTriggeredStop()) {
+            assertEquals(OrderType.MARKET, stop.getType());
+            released.add(stop.getOrderId());
+        }
+        assertEquals(List.of("BS2", "BS1", "SS2"), released);
+        assertEquals(2, orderBook.getStopCount());
+        
+        // Already reached by the last trade: triggered on arrival
+        orderBook.addStop(stop("SS3", OrderSide.SELL, 10_150L));
+        assertEquals("SS3", orderBook.pollTriggeredStop().getOrderId());
+        assertSame(orderBook.getStop("BS4"), orderBook.removeStop("BS4"));
+        assertEquals(1, orderBook.getStopCount());
+    }
+    
+    @Test
+    void triggeredStopStaysFindableUntilHandedOut() {
+        // A call phase holds back a stop the last trade already reached
+        orderBook.setLastTradePrice(10_100L);
+        orderBook.setInAuction(true);
+        orderBook.addStop(stop("BS1", OrderSide.BUY, 10_200L));
+        orderBook.addStop(stop("BS2", OrderSide.BUY, 10_050L));
+        orderBook.addStop(stop("BS3", OrderSide.BUY, 10_000L));
+        
+        assertEquals(OrderType.MARKET, orderBook.getStop("BS2").getType());
+        assertEquals(3, orderBook.getStopCount());
+        List<String> stops = new ArrayList<>();
+        orderBook.forEachStop(stop -> stops.add(stop.getOrderId()));
+        assertEquals(List.of("BS1", "BS2", "BS3"), stops);
+        
+        // Cancelled out of the triggered queue, like a waiting stop
+        assertSame(orderBook.getStop("BS2"), orderBook.removeStop("BS2"));
+        assertNull(orderBook.getStop("BS2"));
+        assertEquals("BS3", orderBook.pollTriggeredStop().getOrderId());
+        assertNull(orderBook.getStop("BS3"));
+        assertNull(orderBook.pollTriggeredStop());
+        assertEquals(1, orderBook.getStopCount());
+    }
+    
+    private BookOrder stop(String orderId, OrderSide side, long stopPrice) {
+        BookOrder stop = new BookOrder(orderId, side, OrderType.STOP, 0L, 10_000L, 0L);
+        stop.setStopPrice(stopPrice);
+        return stop;
+    }
+    
+    private BookOrder sell(String orderId, String price, String quantity) {
+        Order order = new Order(orderId, "TEST", OrderSide.SELL, OrderType.LIMIT,
+                                new BigDecimal(quantity), new BigDecimal(price), "ACC1");
+        BookOrder bookOrder = BookOrder.from(order, orderBook.getTickScale());
+        orderBook.addOrder(bookOrder);
+        return bookOrder;
+    }
+}
@@ -0,0 +1,67 @@
+package com.trading.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+class TickScaleTest {
+    
+    private final TickScale cents = TickScale.DEFAULT;
+    private final TickScale nickels = new TickScale(new BigDecimal("0.05"));
+    
+    @Test
+    void pricesConvertToWholeTicks() {
+        assertEquals(10050L, cents.toTicks(new BigDecimal("100.50")));
+        assertEquals(10050L, cents.toTicks(new BigDecimal("100.5000")));
+        assertEquals(2010L, nickels.toTicks(new BigDecimal("100.50")));
+        assertEquals(0L, cents.toTicks(BigDecimal.ZERO));
+    }
+    
+    @Test
+    void rejectsPricesOffTheTick() {
+        assertThrows(IllegalArgumentException.class, () -> cents.toTicks(new BigDecimal("100.005")));
+        assertThrows(IllegalArgumentException.class, () -> nickels.toTicks(new BigDecimal("100.52")));
+        assertThrows(IllegalArgumentException.class, () -> nickels.toTicks(new BigDecimal("0.01")));
+    }
+    
+    @Test
+    void rejectsPricesBeyondTheRangeOfALong() {
+        assertThrows(IllegalArgumentException.class, () -> cents.toTicks(new BigDecimal("1E+20")));
+    }
+    
+    @Test
+    void quantitiesConvertToUnitsOfTheQuantityScale() {
+        assertEquals(10000L, cents.toUnits(BigDecimal.ONE));
+        assertEquals(12345L, cents.toUnits(new BigDecimal("1.2345")));
+        assertEquals(15000L, cents.toUnits(new BigDecimal("1.500000")));
+    }
+    
+    @Test
+    void rejectsQuantitiesWithMoreThanFourDecimalPlaces() {
+        assertThrows(IllegalArgumentException.class, () -> cents.toUnits(new BigDecimal("1.23456")));
+        assertThrows(IllegalArgumentException.class, () -> cents.toUnits(new BigDecimal("0.00001")));
+    }
+    
+    @Test
+    void roundTripsBackToTheSameBigDecimalValue() {
+        for (String price : new String[] {"0.01", "100.50", "99999.99"}) {
+            BigDecimal value = new BigDecimal(price);
+            assertEquals(value, cents.toPrice(cents.toTicks(value)));
+        }
+        assertEquals(new BigDecimal("100.55"), nickels.toPrice(nickels.toTicks(new BigDecimal("100.55"))));
+        
+        // Quantities come back at the scale of the quantity columns
+        assertEquals(new BigDecimal("1.2345"), cents.toQuantity(cents.toUnits(new BigDecimal("1.2345"))));
+        assertEquals(new BigDecimal("3.5000"), cents.toQuantity(cents.toUnits(new BigDecimal("3.5"))));
+    }
+    
+    @Test
+    void rejectsATickSizeThatIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> new TickScale(BigDecimal.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new TickScale(new BigDecimal("-0.01")));
+        assertThrows(IllegalArgumentException.class, () -> new TickScale(null));
+    }
+}
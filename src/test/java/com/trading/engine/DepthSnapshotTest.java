@@ -0,0 +1,40 @@
+package com.trading.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.Order;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+
+class DepthSnapshotTest {
+    
+    @Test
+    void etagChangesOnlyWhenTheBookChanges() {
+        OrderBook book = new OrderBook("TEST", TickScale.DEFAULT);
+        book.addOrder(BookOrder.from(new Order("B1", "TEST", OrderSide.BUY, OrderType.LIMIT,
+                                               new BigDecimal("10"), new BigDecimal("99.50"), "ACC1"), TickScale.DEFAULT));
+        
+        DepthSnapshot first = DepthSnapshot.capture(book, 10, "run");
+        assertEquals(first.getEtag(), DepthSnapshot.capture(book, 10, "run").getEtag());
+        assertTrue(first.matches(first.getEtag()));
+        assertTrue(first.matches("\"other\", W/" + first.getEtag()));
+        assertFalse(first.matches(null));
+        assertEquals(Map.of(new BigDecimal("99.50"), new BigDecimal("10.0000")), first.getData().get("bidLevels"));
+        
+        book.reduceOrder("B1", TickScale.DEFAULT.toUnits(new BigDecimal("4")));
+        DepthSnapshot second = DepthSnapshot.capture(book, 10, "run");
+        assertNotEquals(first.getEtag(), second.getEtag());
+        assertFalse(second.matches(first.getEtag()));
+    }
+}
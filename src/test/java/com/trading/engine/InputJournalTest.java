@@ -0,0 +1,141 @@
+package com.trading.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.trading.domain.Order;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.entity.User;
+
+class InputJournalTest {
+    
+    private Path directory;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal-test");
+    }
+    
+    @Test
+    void replaysRecordsInSequenceOrder() {
+        try (InputJournal journal = new InputJournal(directory, 1 << 20, 0)) {
+            journal.appendNewOrder(order("O1", OrderSide.BUY, "100.25", "10"));
+            journal.appendAmend("O1", "TEST", new BigDecimal("100.50"), new BigDecimal("8"));
+            journal.appendCancel("O1", "TEST");
+            journal.appendAuctionStart("TEST");
+            journal.appendUncross("TEST");
+        }
+        
+        List<String> records = replay(0L);
+        
+        assertEquals(List.of("1 NEW O1 BUY 100.25 10 ACC1", "2 AMEND O1 100.50 8", "3 CANCEL O1",
+                             "4 AUCTION TEST", "5 UNCROSS TEST"), records);
+        assertEquals(List.of("3 CANCEL O1", "4 AUCTION TEST", "5 UNCROSS TEST"), replay(2L));
+    }
+    
+    @Test
+    void replaysTheOwningUserOfAnOrder() {
+        try (InputJournal journal = new InputJournal(directory, 1 << 20, 0)) {
+            Order owned = order("O1", OrderSide.BUY, "100.00", "1");
+            owned.setUser(new User("alice", "secret", "Alice", "alice@example.com"));
+            journal.appendNewOrder(owned);
+            journal.appendNewOrder(order("O2", OrderSide.SELL, "101.00", "1"));
+        }
+        
+        assertEquals(List.of("1 NEW O1 BUY 100.00 1 ACC1 @alice", "2 NEW O2 SELL 101.00 1 ACC1"), replay(0L));
+    }
+    
+    @Test
+    void continuesSequenceAfterReopenAndAcrossSegments() {
+        try (InputJournal journal = new InputJournal(directory, 256, 1)) {
+            for (int i = 0; i < 10; i++) {
+                journal.appendNewOrder(order("O" + i, OrderSide.SELL, "50.00", "1"));
+            }
+        }
+        
+        try (InputJournal journal = new InputJournal(directory, 256, 1)) {
+            assertEquals(10L, journal.getLastSequence());
+            assertEquals(11L, journal.appendCancel("O3", "TEST"));
+        }
+        
+        assertEquals(11, replay(0L).size());
+    }
+    
+    @Test
+    void stopsAtTornRecord() throws IOException {
+        try (InputJournal journal = new InputJournal(directory, 1 << 20, 0)) {
+            journal.appendNewOrder(order("O1", OrderSide.BUY, "10.00", "1"));
+            journal.appendNewOrder(order("O2", OrderSide.BUY, "10.00", "1"));
+        }
+        
+        // Corrupt the second record's body as a crash mid-write would
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            channel.read(header, 0);
+            int secondRecord = 8 + header.flip().getInt();
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f}), secondRecord + 20);
+        }
+        
+        assertEquals(List.of("1 NEW O1 BUY 10.00 1 ACC1"), replay(0L));
+        try (InputJournal journal = new InputJournal(directory, 1 << 20, 0)) {
+            assertEquals(1L, journal.getLastSequence());
+        }
+    }
+    
+    private List<String> replay(long afterSequence) {
+        List<String> records = new ArrayList<>();
+        try (InputJournal journal = new InputJournal(directory, 1 << 20, 0)) {
+            journal.replay(afterSequence, new InputJournal.Handler() {
+                @Override
+                public void onNewOrder(long sequence, Order order) {
+                    records.add(sequence + " NEW " + order.getOrderId() + " " + order.getSide() + " "
+                                + order.getPrice() + " " + order.getQuantity() + " " + order.getAccountId()
+                                + (order.getUser() != null ? " @" + order.getUser().getUsername() : ""));
+                }
+                
+                @Override
+                public void onAmend(long sequence, String orderId, String symbol, BigDecimal price, BigDecimal quantity) {
+                    records.add(sequence + " AMEND " + orderId + " " + price + " " + quantity);
+                }
+                
+                @Override
+                public void onCancel(long sequence, String orderId, String symbol) {
+                    records.add(sequence + " CANCEL " + orderId);
+                }
+                
+                @Override
+                public void onAuctionStart(long sequence, String symbol) {
+                    records.add(sequence + " AUCTION " + symbol);
+                }
+                
+                @Override
+                public void onUncross(long sequence, String symbol) {
+                    records.add(sequence + " UNCROSS " + symbol);
+                }
+            });
+        }
+        return records;
+    }
+    
+    private Order order(String orderId, OrderSide side, String price, String quantity) {
+        return new Order(orderId, "TEST", side, OrderType.LIMIT, new BigDecimal(quantity), new BigDecimal(price), "ACC1");
+    }
+}
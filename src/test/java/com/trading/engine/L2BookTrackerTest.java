@@ -0,0 +1,62 @@
+package com.trading.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.Order;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+
+class L2BookTrackerTest {
+    
+    private final TickScale tickScale = TickScale.DEFAULT;
+    
+    @Test
+    void emitsOneSequencedUpdatePerChangedLevel() {
+        OrderBook book = new OrderBook("TEST", tickScale);
+        book.addOrder(order("A0", OrderSide.SELL, "100.00", "5"));
+        L2BookTracker tracker = new L2BookTracker(book);
+        
+        // Already present when tracking started: nothing to publish
+        assertTrue(tracker.drain().isEmpty());
+        
+        book.addOrder(order("A1", OrderSide.SELL, "100.00", "3"));
+        book.addOrder(order("A2", OrderSide.SELL, "101.00", "2"));
+        book.addOrder(order("B1", OrderSide.BUY, "99.00", "1"));
+        book.removeOrder("B1");
+        assertEquals(List.of("1 CHANGE SELL 100.00 8.0000", "2 ADD SELL 101.00 2.0000"), describe(tracker.drain()));
+        
+        // A sweep that fills one level completely and another partially
+        OrderMatcher matcher = new OrderMatcher();
+        BookOrder buy = order("B2", OrderSide.BUY, "101.00", "9");
+        matcher.match(book, buy, (aggressor, resting, quantity, price) -> { });
+        assertEquals(List.of("3 DELETE SELL 100.00 0.0000", "4 CHANGE SELL 101.00 1.0000"), describe(tracker.drain()));
+        
+        L2Refresh refresh = tracker.refresh();
+        assertEquals(4L, refresh.getSequence());
+        assertEquals(1, refresh.getAsks().size());
+    }
+    
+    private List<String> describe(List<L2Update> updates) {
+        List<String> lines = new ArrayList<>();
+        for (L2Update update : updates) {
+            lines.add(update.getSequence() + " " + update.getAction() + " " + update.getSide() + " "
+                      + update.getPrice() + " " + update.getSize());
+        }
+        return lines;
+    }
+    
+    private BookOrder order(String orderId, OrderSide side, String price, String quantity) {
+        return BookOrder.from(new Order(orderId, "TEST", side, OrderType.LIMIT,
+                                        new BigDecimal(quantity), new BigDecimal(price), "ACC1"), tickScale);
+    }
+}
@@ -0,0 +1,326 @@
+package com.trading.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.trading.domain.Allocation;
+import com.trading.domain.BookOrder;
+import com.trading.domain.Order;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.PriceLevel;
+import com.trading.domain.SelfTradePrevention;
+
+class OrderMatcherTest {
+    
+    private OrderBook orderBook;
+    private OrderMatcher matcher;
+    private List<String> fills;
+    
+    @BeforeEach
+    void setUp() {
+        orderBook = new OrderBook("TEST");
+        matcher = new OrderMatcher();
+        fills = new ArrayList<>();
+    }
+    
+    @Test
+    void sweepsBeyondOneHundredLevels() {
+        for (int i = 0; i < 150; i++) {
+            rest(order("S" + i, OrderSide.SELL, OrderType.LIMIT, "1", BigDecimal.valueOf(10000 + i, 2)));
+        }
+        
+        BookOrder buy = order("B1", OrderSide.BUY, OrderType.MARKET, "150", null);
+        match(buy);
+        
+        assertTrue(buy.isFullyFilled());
+        assertEquals(150, fills.size());
+        assertEquals(0, orderBook.getTotalAskOrders());
+    }
+    
+    @Test
+    void stopsWhenPriceNoLongerCrosses() {
+        rest(order("S1", OrderSide.SELL, OrderType.LIMIT, "5", new BigDecimal("100.00")));
+        rest(order("S2", OrderSide.SELL, OrderType.LIMIT, "5", new BigDecimal("100.01")));
+        rest(order("S3", OrderSide.SELL, OrderType.LIMIT, "5", new BigDecimal("100.02")));
+        
+        BookOrder buy = order("B1", OrderSide.BUY, OrderType.LIMIT, "20", new BigDecimal("100.01"));
+        match(buy);
+        
+        assertEquals(List.of("S1@10000", "S2@10001"), fills);
+        assertEquals(100000L, buy.getRemainingQuantity());
+        assertEquals(new BigDecimal("100.02"), orderBook.getBestAsk());
+    }
+    
+    @Test
+    void fillsInTimePriorityWithinLevel() {
+        rest(order("B1", OrderSide.BUY, OrderType.LIMIT, "3", new BigDecimal("99.00")));
+        rest(order("B2", OrderSide.BUY, OrderType.LIMIT, "3", new BigDecimal("99.00")));
+        
+        BookOrder sell = order("S1", OrderSide.SELL, OrderType.LIMIT, "4", new BigDecimal("99.00"));
+        match(sell);
+        
+        assertEquals(List.of("B1@9900", "B2@9900"), fills);
+        assertEquals(20000L, orderBook.getOrder("B2").getRemainingQuantity());
+    }
+    
+    @Test
+    void recyclesFullyFilledRestingOrdersAfterTheListener() {
+        BookOrder first = order("B1", OrderSide.BUY, OrderType.LIMIT, "3", new BigDecimal("99.00"));
+        rest(first);
+        rest(order("B2", OrderSide.BUY, OrderType.LIMIT, "3", new BigDecimal("99.00")));
+        
+        match(order("S1", OrderSide.SELL, OrderType.LIMIT, "4", new BigDecimal("99.00")));
+        
+        assertEquals(List.of("B1@9900", "B2@9900"), fills);
+        assertEquals(1, orderBook.getOrderPool().getAvailable());
+        assertNull(first.getOrderId());
+        assertSame(first, orderBook.getOrderPool().acquire(
+            new Order("B3", "TEST", OrderSide.BUY, OrderType.LIMIT, BigDecimal.ONE, new BigDecimal("98.00"), "ACC1"),
+            orderBook.getTickScale()));
+    }
+    
+    @Test
+    void matchesOffHeapBookInTimePriority() {
+        orderBook = new OrderBook("TEST", orderBook.getTickScale(), true);
+        rest(order("S1", OrderSide.SELL, OrderType.LIMIT, "2", new BigDecimal("100.00")));
+        rest(order("S2", OrderSide.SELL, OrderType.LIMIT, "2", new BigDecimal("100.00")));
+        rest(order("S3", OrderSide.SELL, OrderType.LIMIT, "2", new BigDecimal("100.01")));
+        
+        BookOrder buy = order("B1", OrderSide.BUY, OrderType.LIMIT, "5", new BigDecimal("100.01"));
+        match(buy);
+        
+        assertTrue(buy.isFullyFilled());
+        assertEquals(List.of("S1@10000", "S2@10000", "S3@10001"), fills);
+        assertNull(orderBook.getAsksAtPrice(10000));
+        assertEquals(10000L, orderBook.getOrder("S3").getRemainingQuantity());
+        assertEquals(1, orderBook.getTotalAskOrders());
+    }
+    
+    @Test
+    void fillOrKillDecidesFromLevelAggregatesBeforeFilling() {
+        rest(order("S1", OrderSide.SELL, OrderType.LIMIT, "2", new BigDecimal("100.00")));
+        rest(order("S2", OrderSide.SELL, OrderType.LIMIT, "2", new BigDecimal("100.01")));
+        rest(order("S3", OrderSide.SELL, OrderType.LIMIT, "5", new BigDecimal("100.02")));
+        
+        // 4 available up to 100.01: killed without touching the book
+        BookOrder killed = order("B1", OrderSide.BUY, OrderType.LIMIT, "5", new BigDecimal("100.01"));
+        assertFalse(matcher.matchInFull(orderBook, killed, (aggressor, resting, quantity, price) ->
+            fills.add(resting.getOrderId() + "@" + price)));
+        assertEquals(0L, killed.getFilledQuantity());
+        assertTrue(fills.isEmpty());
+        assertEquals(Map.of(10000L, 20000L, 10001L, 20000L, 10002L, 50000L), orderBook.getAskDepth(10));
+        
+        BookOrder filled = order("B2", OrderSide.BUY, OrderType.LIMIT, "5", new BigDecimal("100.02"));
+        assertTrue(matcher.matchInFull(orderBook, filled, (aggressor, resting, quantity, price) ->
+            fills.add(resting.getOrderId() + "@" + price)));
+        assertTrue(filled.isFullyFilled());
+        assertEquals(List.of("S1@10000", "S2@10001", "S3@10002"), fills);
+        assertEquals(40000L, orderBook.getOrder("S3").getRemainingQuantity());
+    }
+    
+    @Test
+    void icebergShowsOneSliceAndRefillsItAtTheBackOfTheLevel() {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            orderBook = new OrderBook("TEST", orderBook.getTickScale(), offHeap);
+            fills.clear();
+            BookOrder iceberg = order("S1", OrderSide.SELL, OrderType.LIMIT, "10", new BigDecimal("100.00"));
+            iceberg.setDisplayQuantity(30000L);
+            rest(iceberg);
+            rest(order("S2", OrderSide.SELL, OrderType.LIMIT, "2", new BigDecimal("100.00")));
+            
+            PriceLevel level = orderBook.getAsksAtPrice(10000);
+            assertEquals(Map.of(10000L, 50000L), orderBook.getAskDepth(10));
+            assertEquals(70000L, level.getHiddenQuantity());
+            
+            // Takes the slice, then S2, then the refilled slice behind it
+            match(order("B1", OrderSide.BUY, OrderType.LIMIT, "6", new BigDecimal("100.00")));
+            assertEquals(List.of("S1@10000", "S2@10000", "S1@10000"), fills);
+            assertEquals(20000L, level.getTotalQuantity());
+            assertEquals(40000L, level.getHiddenQuantity());
+            assertEquals(40000L + 20000L, orderBook.getOrder("S1").getRemainingQuantity());
+            
+            // A fill-or-kill sees the reserve even though the depth does not
+            BookOrder fok = order("B2", OrderSide.BUY, OrderType.LIMIT, "6", new BigDecimal("100.00"));
+            assertTrue(matcher.matchInFull(orderBook, fok, (aggressor, resting, quantity, price) -> { }));
+            assertNull(orderBook.getAsksAtPrice(10000));
+            assertEquals(0, orderBook.getTotalAskOrders());
+        }
+    }
+    
+    @Test
+    void allocatesWithinALevelByTheBooksAllocation() {
+        // Sells of 1, 3 and 6 at one price take a buy of 5
+        Map<Allocation, List<String>> expected = Map.of(
+            Allocation.FIFO, List.of("S1 10000", "S2 30000", "S3 10000"),
+            // Whole lots of 0, 1 and 3: the lot left over goes to S1, first in time
+            Allocation.PRO_RATA, List.of("S1 10000", "S2 10000", "S3 30000"),
+            // S1 first, then 4 shared over 9 as lots of 1 and 2: the lot left over goes to S2
+            Allocation.FIFO_TOP_PRO_RATA, List.of("S1 10000", "S2 20000", "S3 20000"));
+        for (boolean offHeap : new boolean[] {false, true}) {
+            for (Allocation allocation : Allocation.values()) {
+                orderBook = new OrderBook("TEST", orderBook.getTickScale(), offHeap);
+                orderBook.setAllocation(allocation);
+                rest(order("S1", OrderSide.SELL, OrderType.LIMIT, "1", new BigDecimal("100.00")));
+                rest(order("S2", OrderSide.SELL, OrderType.LIMIT, "3", new BigDecimal("100.00")));
+                rest(order("S3", OrderSide.SELL, OrderType.LIMIT, "6", new BigDecimal("100.00")));
+                rest(order("S4", OrderSide.SELL, OrderType.LIMIT, "5", new BigDecimal("100.01")));
+                
+                List<String> allocated = new ArrayList<>();
+                matcher.match(orderBook, order("B1", OrderSide.BUY, OrderType.LIMIT, "5", new BigDecimal("100.01")),
+                              (aggressor, resting, quantity, price) -> allocated.add(resting.getOrderId() + " " + quantity));
+                assertEquals(expected.get(allocation), allocated, allocation + (offHeap ? " off-heap" : ""));
+                assertEquals(50000L, orderBook.getAsksAtPrice(10000).getTotalQuantity());
+                
+                // More than the level holds: every order there fills, the rest moves on
+                allocated.clear();
+                matcher.match(orderBook, order("B2", OrderSide.BUY, OrderType.LIMIT, "7", new BigDecimal("100.01")),
+                              (aggressor, resting, quantity, price) -> allocated.add(resting.getOrderId() + " " + quantity));
+                assertNull(orderBook.getAsksAtPrice(10000));
+                assertEquals(30000L, orderBook.getOrder("S4").getRemainingQuantity());
+            }
+        }
+    }
+    
+    @Test
+    void preventsSelfTradesByTheAggressorsMode() {
+        // S2 belongs to the buyer's account, between two other sellers
+        Map<SelfTradePrevention, List<String>> expected = Map.of(
+            SelfTradePrevention.NONE, List.of("S1 20000", "S2 30000", "S3 10000"),
+            SelfTradePrevention.CANCEL_NEWEST, List.of("S1 20000"),
+            SelfTradePrevention.CANCEL_OLDEST, List.of("S1 20000", "S2 cancelled", "S3 40000"),
+            SelfTradePrevention.CANCEL_BOTH, List.of("S1 20000", "S2 cancelled"),
+            // 4 left against S2's 3: S2 goes, the buy keeps 1 for S3
+            SelfTradePrevention.DECREMENT, List.of("S1 20000", "S2 cancelled", "S3 10000"));
+        for (boolean offHeap : new boolean[] {false, true}) {
+            for (SelfTradePrevention mode : SelfTradePrevention.values()) {
+                orderBook = new OrderBook("TEST", orderBook.getTickScale(), offHeap);
+                rest(order("S1", OrderSide.SELL, "2", 2));
+                rest(order("S2", OrderSide.SELL, "3", 1));
+                rest(order("S3", OrderSide.SELL, "4", 3));
+                
+                BookOrder buy = order("B1", OrderSide.BUY, "6", 1);
+                buy.setSelfTradePrevention(mode);
+                List<String> events = new ArrayList<>();
+                matcher.match(orderBook, buy, selfTradeRecorder(events));
+                assertEquals(expected.get(mode), events, mode + (offHeap ? " off-heap" : ""));
+                assertEquals(mode == SelfTradePrevention.CANCEL_NEWEST || mode == SelfTradePrevention.CANCEL_BOTH,
+                             buy.isSelfTradeCancelled());
+                // Only cancel-newest leaves S2 resting; without prevention it traded in full
+                assertEquals(mode == SelfTradePrevention.CANCEL_NEWEST, orderBook.hasRestingOrders(OrderSide.SELL, 1));
+            }
+            
+            // Fill or kill counts only what it can reach past its own orders
+            orderBook = new OrderBook("TEST", orderBook.getTickScale(), offHeap);
+            rest(order("S1", OrderSide.SELL, "2", 2));
+            rest(order("S2", OrderSide.SELL, "3", 1));
+            rest(order("S3", OrderSide.SELL, "4", 3));
+            BookOrder killed = order("B1", OrderSide.BUY, "5", 1);
+            killed.setSelfTradePrevention(SelfTradePrevention.CANCEL_NEWEST);
+            assertFalse(matcher.matchInFull(orderBook, killed, selfTradeRecorder(new ArrayList<>())));
+            assertEquals(Map.of(10000L, 90000L), orderBook.getAskDepth(10));
+            BookOrder filled = order("B2", OrderSide.BUY, "5", 1);
+            filled.setSelfTradePrevention(SelfTradePrevention.CANCEL_OLDEST);
+            assertTrue(matcher.matchInFull(orderBook, filled, selfTradeRecorder(new ArrayList<>())));
+            assertTrue(filled.isFullyFilled());
+        }
+    }
+    
+    @Test
+    void fillOrKillReachesOnlyTheSliceOfAnIcebergAheadOfItsOwnOrder() {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            orderBook = new OrderBook("TEST", orderBook.getTickScale(), offHeap);
+            // The refilled slice would queue behind the buyer's own S2
+            BookOrder iceberg = order("S1", OrderSide.SELL, "5", 2);
+            iceberg.setDisplayQuantity(10000L);
+            rest(iceberg);
+            rest(order("S2", OrderSide.SELL, "1", 1));
+            
+            BookOrder killed = order("B1", OrderSide.BUY, "3", 1);
+            killed.setSelfTradePrevention(SelfTradePrevention.CANCEL_NEWEST);
+            List<String> events = new ArrayList<>();
+            assertFalse(matcher.matchInFull(orderBook, killed, selfTradeRecorder(events)));
+            assertEquals(List.of(), events);
+            assertEquals(50000L, orderBook.getOrder("S1").getRemainingQuantity());
+            
+            BookOrder filled = order("B2", OrderSide.BUY, "1", 1);
+            filled.setSelfTradePrevention(SelfTradePrevention.CANCEL_NEWEST);
+            assertTrue(matcher.matchInFull(orderBook, filled, selfTradeRecorder(events)));
+            assertEquals(List.of("S1 10000"), events, offHeap ? "off-heap" : "on-heap");
+            assertTrue(filled.isFullyFilled());
+        }
+    }
+    
+    @Test
+    void uncrossTradesTheEquilibriumVolumeAtOnePrice() {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            orderBook = new OrderBook("TEST", orderBook.getTickScale(), offHeap);
+            fills.clear();
+            rest(order("B1", OrderSide.BUY, OrderType.LIMIT, "3", new BigDecimal("100.02")));
+            rest(order("B2", OrderSide.BUY, OrderType.LIMIT, "2", new BigDecimal("100.00")));
+            rest(order("S1", OrderSide.SELL, OrderType.LIMIT, "2", new BigDecimal("99.99")));
+            rest(order("S2", OrderSide.SELL, OrderType.LIMIT, "4", new BigDecimal("100.01")));
+            
+            // 3 trade at 100.01 or 100.02 with the same imbalance: the lower price wins
+            IndicativeUncross indicative = IndicativeUncross.of(orderBook, null);
+            assertEquals(new BigDecimal("100.01"), indicative.getPrice().stripTrailingZeros());
+            assertEquals(30000L, indicative.volume);
+            assertEquals(OrderSide.SELL, indicative.getImbalanceSide());
+            assertSame(indicative, IndicativeUncross.of(orderBook, indicative));
+            
+            assertEquals(30000L, matcher.uncross(orderBook, (buy, sell, quantity, price) ->
+                fills.add(buy.getOrderId() + "/" + sell.getOrderId() + " " + quantity + "@" + price)));
+            assertEquals(List.of("B1/S1 20000@10001", "B1/S2 10000@10001"), fills);
+            assertEquals(10001L, orderBook.getLastTradePrice());
+            assertEquals(Map.of(10000L, 20000L), orderBook.getBidDepth(10));
+            assertEquals(Map.of(10001L, 30000L), orderBook.getAskDepth(10));
+            assertFalse(IndicativeUncross.of(orderBook, null).isCrossed());
+        }
+    }
+    
+    private static MatchListener selfTradeRecorder(List<String> events) {
+        return new MatchListener() {
+            @Override
+            public void onMatch(BookOrder aggressor, BookOrder resting, long quantity, long price) {
+                events.add(resting.getOrderId() + " " + quantity);
+            }
+            
+            @Override
+            public void onSelfTradePrevented(BookOrder aggressor, BookOrder resting) {
+                events.add(resting.getOrderId() + (resting.isResting() ? " decremented" : " cancelled"));
+            }
+        };
+    }
+    
+    private void match(BookOrder incoming) {
+        matcher.match(orderBook, incoming, (aggressor, resting, quantity, price) ->
+            fills.add(resting.getOrderId() + "@" + price));
+    }
+    
+    private void rest(BookOrder order) {
+        orderBook.addOrder(order);
+    }
+    
+    private BookOrder order(String orderId, OrderSide side, String quantity, int accountId) {
+        BookOrder order = order(orderId, side, OrderType.LIMIT, quantity, new BigDecimal("100.00"));
+        order.setIds(1, accountId, 1);
+        return order;
+    }
+    
+    private BookOrder order(String orderId, OrderSide side, OrderType type, String quantity, BigDecimal price) {
+        Order order = new Order(orderId, "TEST", side, type, new BigDecimal(quantity), price, "ACC1");
+        return BookOrder.from(order, orderBook.getTickScale());
+    }
+}
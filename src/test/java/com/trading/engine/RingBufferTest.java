@@ -0,0 +1,45 @@
+package com.trading.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class RingBufferTest {
+    
+    @Test
+    void rejectsClaimsWhenFullAndReusesSlotsOnceReleased() {
+        RingBuffer<AtomicLong> ring = new RingBuffer<>(4, AtomicLong::new, WaitStrategy.BUSY_SPIN);
+        
+        for (long expected = 0; expected < 4; expected++) {
+            long sequence = ring.tryClaim();
+            assertEquals(expected, sequence);
+            ring.get(sequence).set(sequence * 10);
+            ring.publish(sequence);
+        }
+        assertEquals(-1L, ring.tryClaim());
+        assertEquals(4L, ring.getBacklog());
+        
+        assertTrue(ring.waitFor(0L, () -> true));
+        assertEquals(0L, ring.get(0L).get());
+        ring.release(0L);
+        
+        long wrapped = ring.tryClaim();
+        assertEquals(4L, wrapped);
+        // Same preallocated entry, not yet published under its new sequence
+        assertSame(ring.get(0L), ring.get(wrapped));
+        assertFalse(ring.isPublished(wrapped));
+        ring.publish(wrapped);
+        assertTrue(ring.isPublished(wrapped));
+    }
+    
+    @Test
+    void waitForGivesUpWhenStopped() {
+        RingBuffer<AtomicLong> ring = new RingBuffer<>(2, AtomicLong::new, WaitStrategy.YIELD);
+        assertFalse(ring.waitFor(0L, () -> false));
+    }
+}
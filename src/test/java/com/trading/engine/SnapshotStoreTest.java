@@ -0,0 +1,143 @@
+package com.trading.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.Order;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+
+class SnapshotStoreTest {
+    
+    private Path directory;
+    private final TickScale tickScale = TickScale.DEFAULT;
+    private final IdTable accounts = new IdTable();
+    private final IdTable owners = new IdTable();
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot-test");
+    }
+    
+    @Test
+    void restoresRestingOrdersInPriorityOrder() throws IOException {
+        OrderBook book = new OrderBook("TEST", tickScale);
+        book.addOrder(order("B1", OrderSide.BUY, "99.00", "10"));
+        book.addOrder(order("B2", OrderSide.BUY, "100.00", "5"));
+        book.addOrder(order("B3", OrderSide.BUY, "100.00", "7"));
+        book.addOrder(order("A1", OrderSide.SELL, "101.00", "3"));
+        book.fillOrder(book.getOrder("B2"), tickScale.toUnits(new BigDecimal("2")));
+        book.setLastSequence(42L);
+        
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        store.write(40L, "0.01", List.of(BookSnapshot.capture(book, accounts, owners)));
+        
+        SnapshotStore.Snapshot snapshot = store.loadLatest();
+        assertEquals(40L, snapshot.getReplayFrom());
+        OrderBook restored = snapshot.getBooks().get(0).restore(tickScale, new IdTable(), accounts, owners);
+        
+        assertEquals(42L, restored.getLastSequence());
+        assertEquals(List.of("B2", "B3", "B1"), orderIds(restored, OrderSide.BUY));
+        assertEquals(List.of("A1"), orderIds(restored, OrderSide.SELL));
+        assertEquals(book.getBidLevels(10), restored.getBidLevels(10));
+        assertEquals(20000L, restored.getOrder("B2").getFilledQuantity());
+        assertEquals("ACC1", accounts.nameOf(restored.getOrder("B2").getAccountId()));
+    }
+    
+    @Test
+    void restoresAStopTriggeredDuringACallPhaseAsTriggered() throws IOException {
+        OrderBook book = new OrderBook("TEST", tickScale);
+        book.setLastTradePrice(10_000L);
+        book.setInAuction(true);
+        book.addStop(stop("BS1", "100.50"));
+        book.addStop(stop("BS2", "99.50"));
+        
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        store.write(1L, "0.01", List.of(BookSnapshot.capture(book, accounts, owners)));
+        OrderBook restored = store.loadLatest().getBooks().get(0).restore(tickScale, new IdTable(), accounts, owners);
+        
+        assertTrue(restored.isInAuction());
+        assertEquals(2, restored.getStopCount());
+        assertEquals(OrderType.STOP, restored.getStop("BS1").getType());
+        assertEquals(OrderType.MARKET, restored.getStop("BS2").getType());
+        assertEquals(9950L, restored.getStop("BS2").getStopPrice());
+        // Held for the uncross, then handed out without a further trade
+        restored.setInAuction(false);
+        assertEquals("BS2", restored.pollTriggeredStop().getOrderId());
+        assertNull(restored.pollTriggeredStop());
+    }
+    
+    @Test
+    void restoresTheOwnerOfEachOrder() throws IOException {
+        OrderBook book = new OrderBook("TEST", tickScale);
+        BookOrder owned = order("B1", OrderSide.BUY, "100.00", "1");
+        owned.setIds(1, accounts.idOf("ACC1"), owners.idOf("alice"));
+        book.addOrder(owned);
+        book.addOrder(order("B2", OrderSide.BUY, "100.00", "1"));
+        BookOrder ownedStop = stop("BS1", "101.00");
+        ownedStop.setIds(1, accounts.idOf("ACC1"), owners.idOf("bob"));
+        book.addStop(ownedStop);
+        
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        store.write(1L, "0.01", List.of(BookSnapshot.capture(book, accounts, owners)));
+        // Interned afresh, as by an engine that has just started
+        IdTable restoredOwners = new IdTable();
+        OrderBook restored = store.loadLatest().getBooks().get(0).restore(tickScale, new IdTable(), accounts, restoredOwners);
+        
+        assertEquals("alice", restoredOwners.nameOf(restored.getOrder("B1").getOwnerId()));
+        assertEquals(0, restored.getOrder("B2").getOwnerId());
+        assertEquals("bob", restoredOwners.nameOf(restored.getStop("BS1").getOwnerId()));
+    }
+    
+    @Test
+    void fallsBackToOlderSnapshotWhenNewestIsCorrupt() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        store.write(1L, "0.01", new ArrayList<>());
+        Path newest = store.write(2L, "0.01", new ArrayList<>());
+        
+        byte[] bytes = Files.readAllBytes(newest);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(newest, bytes);
+        
+        assertEquals(1L, store.loadLatest().getReplayFrom());
+        
+        Files.delete(newest);
+        Files.write(directory.resolve("snapshot-00000000000000000001.bin"), new byte[] {1, 2, 3});
+        assertNull(store.loadLatest());
+    }
+    
+    private BookOrder order(String orderId, OrderSide side, String price, String quantity) {
+        BookOrder order = BookOrder.from(new Order(orderId, "TEST", side, OrderType.LIMIT,
+                                                   new BigDecimal(quantity), new BigDecimal(price), "ACC1"), tickScale);
+        order.setIds(1, accounts.idOf("ACC1"), 0);
+        return order;
+    }
+    
+    private BookOrder stop(String orderId, String stopPrice) {
+        Order order = new Order(orderId, "TEST", OrderSide.BUY, OrderType.STOP, new BigDecimal("1"), null, "ACC1");
+        order.setStopPrice(new BigDecimal(stopPrice));
+        BookOrder stop = BookOrder.from(order, tickScale);
+        stop.setIds(1, accounts.idOf("ACC1"), 0);
+        return stop;
+    }
+    
+    private List<String> orderIds(OrderBook book, OrderSide side) {
+        List<String> ids = new ArrayList<>();
+        book.forEachOrder(side, order -> ids.add(order.getOrderId()));
+        return ids;
+    }
+}
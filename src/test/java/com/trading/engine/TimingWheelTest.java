@@ -0,0 +1,60 @@
+package com.trading.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+    
+    @Test
+    void firesEachDeadlineOnceAndNeverEarlyAcrossAllWheels() {
+        long start = 1_000_000L;
+        TimingWheel wheel = new TimingWheel(10L, start, 16);
+        Random random = new Random(3);
+        // Spread over every wheel, including deadlines past the wheels' range (64^4 ticks)
+        long[] deadlines = new long[5_000];
+        for (int i = 0; i < deadlines.length; i++) {
+            long range = new long[] {640L, 40_960L, 2_621_440L, 167_772_160L, 1_000_000_000L}[i % 5];
+            deadlines[i] = start + 1 + (long) (random.nextDouble() * range);
+            wheel.schedule("O" + i, deadlines[i]);
+        }
+        
+        long[] firedAt = new long[deadlines.length];
+        long now = start;
+        while (!wheel.isEmpty()) {
+            now += 1 + random.nextInt(5_000_000);
+            long time = now;
+            wheel.advance(time, (key, deadline) -> {
+                int i = Integer.parseInt(key.substring(1));
+                assertEquals(0L, firedAt[i]);
+                assertEquals(deadlines[i], deadline);
+                firedAt[i] = time;
+            });
+        }
+        
+        for (int i = 0; i < deadlines.length; i++) {
+            assertTrue(firedAt[i] >= deadlines[i], "fired early: O" + i);
+        }
+    }
+    
+    @Test
+    void firesInDeadlineTickOrderAndPastDeadlinesOnTheNextTick() {
+        TimingWheel wheel = new TimingWheel(100L, 0L, 16);
+        wheel.schedule("late", 7_000L);
+        wheel.schedule("early", 250L);
+        wheel.schedule("overdue", -50L);
+        
+        List<String> fired = new ArrayList<>();
+        assertEquals(1, wheel.advance(100L, (key, deadline) -> fired.add(key)));
+        assertEquals(0, wheel.advance(200L, (key, deadline) -> fired.add(key)));
+        assertEquals(2, wheel.advance(10_000L, (key, deadline) -> fired.add(key)));
+        
+        assertEquals(List.of("overdue", "early", "late"), fired);
+        assertTrue(wheel.isEmpty());
+    }
+}
@@ -0,0 +1,53 @@
+package com.trading.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+import com.trading.domain.BookOrder;
+import com.trading.domain.Order;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderType;
+import com.trading.domain.TickScale;
+
+class TopOfBookTest {
+    
+    private final TickScale tickScale = TickScale.DEFAULT;
+    
+    @Test
+    void tracksBestLevelsAndSequencesOnlyOnChange() {
+        OrderBook book = new OrderBook("TEST", tickScale);
+        TopOfBook empty = TopOfBook.of(book, null);
+        assertNull(empty.getBidPrice());
+        assertNull(empty.getSpread());
+        
+        book.addOrder(order("B1", OrderSide.BUY, "99.50", "10"));
+        book.addOrder(order("A1", OrderSide.SELL, "100.00", "4"));
+        TopOfBook quoted = TopOfBook.of(book, empty);
+        
+        assertEquals(2L, quoted.getSequence());
+        assertEquals(new BigDecimal("99.50"), quoted.getBidPrice());
+        assertEquals(new BigDecimal("4.0000"), quoted.getAskSize());
+        assertEquals(new BigDecimal("0.50"), quoted.getSpread());
+        assertEquals(0, new BigDecimal("99.75").compareTo(quoted.getMidPrice()));
+        
+        // A change behind the top leaves the published instance in place
+        book.addOrder(order("B2", OrderSide.BUY, "99.00", "10"));
+        assertSame(quoted, TopOfBook.of(book, quoted));
+        
+        book.addOrder(order("A2", OrderSide.SELL, "100.00", "1"));
+        TopOfBook deeper = TopOfBook.of(book, quoted);
+        assertEquals(3L, deeper.getSequence());
+        assertEquals(new BigDecimal("5.0000"), deeper.getAskSize());
+    }
+    
+    private BookOrder order(String orderId, OrderSide side, String price, String quantity) {
+        return BookOrder.from(new Order(orderId, "TEST", side, OrderType.LIMIT,
+                                        new BigDecimal(quantity), new BigDecimal(price), "ACC1"), tickScale);
+    }
+}
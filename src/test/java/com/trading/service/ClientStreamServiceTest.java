@@ -0,0 +1,264 @@
+package com.trading.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderStatus;
+import com.trading.domain.Trade;
+import com.trading.engine.L2Refresh;
+import com.trading.engine.L2Update;
+import com.trading.engine.OrderStatusEvent;
+import com.trading.engine.TradeTick;
+
+class ClientStreamServiceTest {
+    
+    @Test
+    void conflatesLevelChangesToTheLatestSizePerLevel() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = streamContext(Map.of())) {
+            StubEmitter emitter = new StubEmitter();
+            ClientStreamService.ClientStream stream = openStream(context, emitter, Set.of("AAA"), null);
+            emitter.holdNextSend();
+            stream.onUpdate(level("AAA", OrderSide.BUY, "100.00", "1"));
+            emitter.awaitHeld();
+            
+            stream.onUpdate(level("AAA", OrderSide.BUY, "100.00", "2"));
+            stream.onUpdate(level("AAA", OrderSide.BUY, "101.00", "5"));
+            stream.onUpdate(level("AAA", OrderSide.SELL, "100.00", "7"));
+            stream.onUpdate(level("AAA", OrderSide.BUY, "100.00", "3"));
+            stream.onUpdate(level("BBB", OrderSide.BUY, "100.00", "9"));
+            emitter.release();
+            
+            assertTrue(emitter.awaitEvents(2));
+            assertEquals(List.of("book", "book"), emitter.names());
+            assertEquals(List.of("AAA:BUY:100.00=3", "AAA:BUY:101.00=5", "AAA:SELL:100.00=7"), levels(emitter.data(1)));
+        }
+    }
+    
+    @Test
+    void refreshSupersedesPendingLevelChangesOfItsSymbol() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = streamContext(Map.of())) {
+            StubEmitter emitter = new StubEmitter();
+            ClientStreamService.ClientStream stream = openStream(context, emitter, Set.of("AAA", "BBB"), null);
+            emitter.holdNextSend();
+            stream.onUpdate(level("AAA", OrderSide.BUY, "100.00", "1"));
+            emitter.awaitHeld();
+            
+            stream.onUpdate(level("AAA", OrderSide.BUY, "100.00", "2"));
+            stream.onUpdate(level("BBB", OrderSide.BUY, "100.00", "4"));
+            L2Refresh refresh = new L2Refresh("AAA", 7L, Collections.emptyMap(), Collections.emptyMap());
+            stream.onRefresh(refresh);
+            // Comes after the refresh, so it still applies
+            stream.onUpdate(level("AAA", OrderSide.SELL, "101.00", "6"));
+            emitter.release();
+            
+            assertTrue(emitter.awaitEvents(3));
+            assertEquals(List.of("book", "refresh", "book"), emitter.names());
+            assertEquals(refresh, emitter.data(1));
+            assertEquals(List.of("BBB:BUY:100.00=4", "AAA:SELL:101.00=6"), levels(emitter.data(2)));
+        }
+    }
+    
+    @Test
+    void capsTheTradeBacklogAndReportsTheTradesDropped() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = streamContext(Map.of("trading.streaming.max-pending-trades", "3"))) {
+            StubEmitter emitter = new StubEmitter();
+            ClientStreamService.ClientStream stream = openStream(context, emitter, Set.of("AAA"), null);
+            emitter.holdNextSend();
+            stream.onTrade(trade("T0"));
+            emitter.awaitHeld();
+            
+            for (int i = 1; i <= 5; i++) {
+                stream.onTrade(trade("T" + i));
+            }
+            emitter.release();
+            
+            assertTrue(emitter.awaitEvents(3));
+            assertEquals(List.of("trades", "lag", "trades"), emitter.names());
+            assertEquals(Map.of("droppedTrades", 2L), emitter.data(1));
+            assertEquals(List.of("T3", "T4", "T5"), tradeIds(emitter.data(2)));
+        }
+    }
+    
+    @Test
+    void sendsOnlyTheLatestStateOfTheUsersOwnOrders() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = streamContext(Map.of())) {
+            StubEmitter emitter = new StubEmitter();
+            ClientStreamService.ClientStream stream = openStream(context, emitter, Set.of("AAA"), "alice");
+            emitter.holdNextSend();
+            stream.onOrderStatus(orderStatus("O0", "alice", OrderStatus.PENDING));
+            emitter.awaitHeld();
+            
+            stream.onOrderStatus(orderStatus("O9", "bob", OrderStatus.PENDING));
+            stream.onOrderStatus(orderStatus("O1", "alice", OrderStatus.PENDING));
+            stream.onOrderStatus(orderStatus("O2", "alice", OrderStatus.PENDING));
+            stream.onOrderStatus(orderStatus("O1", "alice", OrderStatus.PARTIALLY_FILLED));
+            emitter.release();
+            
+            assertTrue(emitter.awaitEvents(2));
+            assertEquals(List.of("orders", "orders"), emitter.names());
+            assertEquals(List.of("O1:PARTIALLY_FILLED", "O2:PENDING"), orderStates(emitter.data(1)));
+        }
+    }
+    
+    @Test
+    void anonymousStreamGetsNoOrderUpdates() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = streamContext(Map.of())) {
+            StubEmitter emitter = new StubEmitter();
+            ClientStreamService.ClientStream stream = openStream(context, emitter, Set.of("AAA"), null);
+            stream.onOrderStatus(orderStatus("O1", "alice", OrderStatus.PENDING));
+            stream.onTrade(trade("T1"));
+            
+            assertTrue(emitter.awaitEvents(1));
+            assertEquals(List.of("trades"), emitter.names());
+        }
+    }
+    
+    private static ClientStreamService.ClientStream openStream(AnnotationConfigApplicationContext context, SseEmitter emitter,
+                                                               Set<String> symbols, String username) {
+        return context.getBean(ClientStreamService.class).new ClientStream(emitter, symbols, username);
+    }
+    
+    private static L2Update level(String symbol, OrderSide side, String price, String size) {
+        return new L2Update(symbol, 0L, L2Update.Action.CHANGE, side, new BigDecimal(price), new BigDecimal(size));
+    }
+    
+    private static TradeTick trade(String tradeId) {
+        return new TradeTick(new Trade(tradeId, "AAA", BigDecimal.ONE, new BigDecimal("100.00"), "B1", "S1", "ACC1", "ACC2"),
+                             OrderSide.BUY);
+    }
+    
+    private static OrderStatusEvent orderStatus(String orderId, String username, OrderStatus status) {
+        return new OrderStatusEvent(orderId, username, "ACC1", "AAA", OrderSide.BUY, status, BigDecimal.ZERO,
+                                    BigDecimal.ONE, null);
+    }
+    
+    private static List<String> levels(Object data) {
+        List<String> levels = new ArrayList<>();
+        for (Object item : (List<?>) data) {
+            L2Update update = (L2Update) item;
+            levels.add(update.getSymbol() + ':' + update.getSide() + ':' + update.getPrice().toPlainString() + '='
+                       + update.getSize().toPlainString());
+        }
+        return levels;
+    }
+    
+    private static List<String> tradeIds(Object data) {
+        List<String> tradeIds = new ArrayList<>();
+        for (Object item : (List<?>) data) {
+            tradeIds.add(((TradeTick) item).getTradeId());
+        }
+        return tradeIds;
+    }
+    
+    private static List<String> orderStates(Object data) {
+        List<String> states = new ArrayList<>();
+        for (Object item : (List<?>) data) {
+            OrderStatusEvent event = (OrderStatusEvent) item;
+            states.add(event.getOrderId() + ':' + event.getStatus());
+        }
+        return states;
+    }
+    
+    // The service with the real feed; the engine is only used when a stream is opened over HTTP
+    private static AnnotationConfigApplicationContext streamContext(Map<String, Object> properties) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", new HashMap<>(properties)));
+        context.getBeanFactory().registerSingleton("matchingEngine", new MatchingEngine());
+        context.registerBean(MarketDataFeed.class);
+        context.registerBean(ClientStreamService.class);
+        context.refresh();
+        return context;
+    }
+    
+    /**
+     * Records each event sent and can block the next send, standing in for a client
+     * whose previous write is still in flight.
+     */
+    private static final class StubEmitter extends SseEmitter {
+        
+        private static final Pattern EVENT_NAME = Pattern.compile("event:(\\S+)");
+        
+        private final List<String> names = new ArrayList<>();
+        private final List<Object> data = new ArrayList<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private final CountDownLatch held = new CountDownLatch(1);
+        
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            held.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            String name = null;
+            Object payload = null;
+            for (DataWithMediaType part : builder.build()) {
+                if (MediaType.APPLICATION_JSON.equals(part.getMediaType())) {
+                    payload = part.getData();
+                } else if (name == null) {
+                    Matcher matcher = EVENT_NAME.matcher(part.getData().toString());
+                    name = matcher.find() ? matcher.group(1) : null;
+                }
+            }
+            synchronized (this) {
+                names.add(name);
+                data.add(payload);
+                notifyAll();
+            }
+        }
+        
+        void holdNextSend() {
+            gate = new CountDownLatch(1);
+        }
+        
+        void awaitHeld() throws InterruptedException {
+            assertTrue(held.await(5, TimeUnit.SECONDS), "no send started");
+        }
+        
+        void release() {
+            gate.countDown();
+        }
+        
+        synchronized boolean awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5_000L;
+            while (names.size() < count) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+        
+        synchronized List<String> names() {
+            return new ArrayList<>(names);
+        }
+        
+        synchronized Object data(int index) {
+            return data.get(index);
+        }
+    }
+}
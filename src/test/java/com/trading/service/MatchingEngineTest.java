@@ -0,0 +1,219 @@
+package com.trading.service;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.trading.domain.Order;
+import com.trading.domain.OrderBook;
+import com.trading.domain.OrderSide;
+import com.trading.domain.OrderStatus;
+import com.trading.domain.OrderType;
+import com.trading.domain.TimeInForce;
+
+class MatchingEngineTest {
+    
+    @Test
+    void expiresGoodTillDateOrderFromOffHeapBook() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = engineContext(Map.of(
+                "trading.order-book.off-heap-symbols", "TEST",
+                "trading.matching-engine.expiry-tick-ms", "10"))) {
+            MatchingEngine engine = context.getBean(MatchingEngine.class);
+            Order order = limit("GTD1", OrderSide.BUY, "10", "100.00", "ACC1");
+            order.setTimeInForce(TimeInForce.GTD);
+            order.setExpiresAt(LocalDateTime.now().plusNanos(200_000_000L));
+            engine.processOrder(order);
+            assertTrue(await(engine, book -> book.getOrder("GTD1") != null), "GTD order never rested: " + order.getStatus());
+            assertTrue(await(engine, book -> book.getOrder("GTD1") == null), "GTD order still resting after its deadline");
+        }
+    }
+    
+    @Test
+    void cancelsAStopTriggeredOnArrivalDuringACallPhase() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = engineContext(Map.of())) {
+            MatchingEngine engine = context.getBean(MatchingEngine.class);
+            engine.processOrder(limit("S1", OrderSide.SELL, "1", "100.00", "ACC1"));
+            engine.processOrder(limit("B1", OrderSide.BUY, "1", "100.00", "ACC2"));
+            assertTrue(await(engine, book -> book.getLastTradePrice() == 10000L));
+            
+            engine.startAuction("TEST");
+            Order stop = new Order("BS1", "TEST", OrderSide.BUY, OrderType.STOP, new BigDecimal("1"), null, "ACC2");
+            stop.setStopPrice(new BigDecimal("99.50"));
+            engine.processOrder(stop);
+            // Already reached by the last trade, held back until the uncross
+            assertTrue(await(engine, book -> book.getStop("BS1") != null && book.getStopCount() == 1));
+            
+            engine.cancelOrder("BS1", "TEST");
+            assertTrue(await(engine, book -> book.getStop("BS1") == null && book.getStopCount() == 0));
+        }
+    }
+    
+    @Test
+    void amendsAWaitingStopInPlace() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = engineContext(Map.of())) {
+            MatchingEngine engine = context.getBean(MatchingEngine.class);
+            engine.processOrder(stopLimit("BS1", "101.00", "101.50"));
+            engine.processOrder(stopLimit("BS2", "101.00", "101.50"));
+            assertTrue(await(engine, book -> book.getStopCount() == 2));
+            
+            engine.amendOrder("BS1", "TEST", new BigDecimal("102.00"), new BigDecimal("3"));
+            assertTrue(await(engine, book -> book.getStop("BS1").getPrice() == 10200L));
+            assertTrue(await(engine, book -> book.getStop("BS1").getQuantity() == 30000L));
+            
+            // A trade at 101.00 triggers both; BS1 rests with its new terms and takes all of S2
+            engine.processOrder(limit("S1", OrderSide.SELL, "1", "101.00", "ACC1"));
+            engine.processOrder(limit("B1", OrderSide.BUY, "1", "101.00", "ACC2"));
+            engine.processOrder(limit("S2", OrderSide.SELL, "3", "101.50", "ACC1"));
+            assertTrue(await(engine, book -> book.getStopCount() == 0 && book.getOrder("S2") == null
+                                             && book.getOrder("BS1") == null && book.getOrder("BS2") != null));
+        }
+    }
+    
+    @Test
+    void amendKeepsTimePriorityOnlyForASizeReduction() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = engineContext(Map.of())) {
+            MatchingEngine engine = context.getBean(MatchingEngine.class);
+            for (String orderId : List.of("B1", "B2", "B3")) {
+                engine.processOrder(limit(orderId, OrderSide.BUY, "5", "100.00", "ACC1"));
+            }
+            assertTrue(await(engine, book -> bidIds(book).equals(List.of("B1", "B2", "B3"))));
+            
+            engine.amendOrder("B1", "TEST", new BigDecimal("100.00"), new BigDecimal("3"));
+            assertTrue(await(engine, book -> book.getOrder("B1").getRemainingQuantity() == 30000L
+                                             && bidIds(book).equals(List.of("B1", "B2", "B3"))));
+            
+            engine.amendOrder("B1", "TEST", new BigDecimal("100.00"), new BigDecimal("6"));
+            assertTrue(await(engine, book -> book.getOrder("B1").getRemainingQuantity() == 60000L
+                                             && bidIds(book).equals(List.of("B2", "B3", "B1"))));
+            
+            // Away and back again: the price change alone sends it to the back
+            engine.amendOrder("B2", "TEST", new BigDecimal("99.99"), new BigDecimal("5"));
+            engine.amendOrder("B2", "TEST", new BigDecimal("100.00"), new BigDecimal("5"));
+            assertTrue(await(engine, book -> bidIds(book).equals(List.of("B3", "B1", "B2"))));
+        }
+    }
+    
+    @Test
+    void amendThroughTheOppositeSideTradesBeforeResting() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = engineContext(Map.of())) {
+            MatchingEngine engine = context.getBean(MatchingEngine.class);
+            engine.processOrder(limit("S1", OrderSide.SELL, "2", "101.00", "ACC2"));
+            engine.processOrder(limit("B1", OrderSide.BUY, "5", "100.00", "ACC1"));
+            assertTrue(await(engine, book -> book.getOrder("B1") != null));
+            
+            engine.amendOrder("B1", "TEST", new BigDecimal("101.00"), new BigDecimal("5"));
+            assertTrue(await(engine, book -> book.getOrder("S1") == null && book.getOrder("B1") != null
+                                             && book.getOrder("B1").getPrice() == 10100L));
+            assertTrue(await(engine, book -> book.getOrder("B1").getFilledQuantity() == 20000L
+                                             && book.getOrder("B1").getRemainingQuantity() == 30000L
+                                             && book.getLastTradePrice() == 10100L));
+        }
+    }
+    
+    @Test
+    void ignoresAmendAndCancelOfAnOrderAlreadyGone() throws InterruptedException {
+        try (AnnotationConfigApplicationContext context = engineContext(Map.of())) {
+            MatchingEngine engine = context.getBean(MatchingEngine.class);
+            engine.processOrder(limit("S1", OrderSide.SELL, "1", "100.00", "ACC2"));
+            engine.processOrder(limit("B1", OrderSide.BUY, "1", "100.00", "ACC1"));
+            
+            engine.amendOrder("S1", "TEST", new BigDecimal("99.00"), new BigDecimal("5"));
+            engine.cancelOrder("B1", "TEST");
+            // Applied after both: the book holds only what came after the trade
+            engine.processOrder(limit("B2", OrderSide.BUY, "1", "99.00", "ACC1"));
+            assertTrue(await(engine, book -> book.getOrder("B2") != null));
+            assertTrue(await(engine, book -> book.getOrder("S1") == null && book.getOrder("B1") == null
+                                             && book.getTotalAskOrders() == 0 && bidIds(book).equals(List.of("B2"))));
+        }
+    }
+    
+    private static List<String> bidIds(OrderBook book) {
+        List<String> orderIds = new ArrayList<>();
+        book.forEachOrder(OrderSide.BUY, order -> orderIds.add(order.getOrderId()));
+        return orderIds;
+    }
+    
+    private static Order stopLimit(String orderId, String stopPrice, String price) {
+        Order order = new Order(orderId, "TEST", OrderSide.BUY, OrderType.STOP_LIMIT, new BigDecimal("1"),
+                                new BigDecimal(price), "ACC2");
+        order.setStopPrice(new BigDecimal(stopPrice));
+        return order;
+    }
+    
+    private static Order limit(String orderId, OrderSide side, String quantity, String price, String accountId) {
+        return new Order(orderId, "TEST", side, OrderType.LIMIT, new BigDecimal(quantity), new BigDecimal(price), accountId);
+    }
+    
+    // Polls the TEST book on its owning thread until the condition holds, for up to 5 s
+    private static boolean await(MatchingEngine engine, Predicate<OrderBook> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!engine.queryOrderBook("TEST", book -> book != null && condition.test(book))) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10L);
+        }
+        return true;
+    }
+    
+    // The engine on one shard, so inputs apply in submission order, with persistence that
+    // writes nothing and no Kafka traffic
+    private static AnnotationConfigApplicationContext engineContext(Map<String, Object> properties) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        Map<String, Object> settings = new HashMap<>(properties);
+        settings.putIfAbsent("trading.market-data.enabled", "false");
+        settings.putIfAbsent("trading.matching-engine.mode", "sharded");
+        settings.putIfAbsent("trading.matching-engine.shard-count", "1");
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", settings));
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:engine-test");
+        context.registerBean(JdbcTemplate.class, () -> new JdbcTemplate(dataSource));
+        context.registerBean(PlatformTransactionManager.class, () -> new DataSourceTransactionManager(dataSource));
+        context.registerBean(OrderPersistenceService.class, DiscardingPersistence::new);
+        context.registerBean(MarketDataFeed.class);
+        context.registerBean(KafkaTemplate.class, () -> new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(Map.of())));
+        context.registerBean(MatchingEngine.class);
+        context.refresh();
+        return context;
+    }
+    
+    private static final class DiscardingPersistence extends OrderPersistenceService {
+        
+        @Override
+        public void start() {
+        }
+        
+        @Override
+        public void saveOrder(Order order) {
+        }
+        
+        @Override
+        public void saveOrderState(String orderId, BigDecimal filledQuantity, BigDecimal remainingQuantity,
+                                   OrderStatus status, String reason, LocalDateTime updatedAt,
+                                   LocalDateTime filledAt) {
+        }
+        
+        @Override
+        public void afterPersisted(Runnable acknowledgement) {
+        }
+        
+        @Override
+        public void stop() {
+        }
+    }
+}
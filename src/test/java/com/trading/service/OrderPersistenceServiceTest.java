@@ -0,0 +1,250 @@
+package com.trading.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import com.trading.domain.OrderStatus;
+import com.trading.domain.Trade;
+
+class OrderPersistenceServiceTest {
+    
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    
+    @Test
+    void collapsesChangesOfOneOrderInABatchKeepingAmendedTerms() throws InterruptedException {
+        try (Fixture fixture = new Fixture(Map.of())) {
+            fixture.holdNextCommit("O0");
+            
+            fixture.persistence.saveOrderAmendment("O1", new BigDecimal("101.00"), new BigDecimal("5"), BigDecimal.ZERO,
+                                                   new BigDecimal("5"), OrderStatus.PENDING, LocalDateTime.now(), null);
+            fixture.persistence.saveOrderState("O1", new BigDecimal("2"), new BigDecimal("3"),
+                                               OrderStatus.PARTIALLY_FILLED, null, LocalDateTime.now(), null);
+            // A later amendment brings its own terms and replaces the earlier ones
+            fixture.persistence.saveOrderAmendment("O2", new BigDecimal("99.00"), new BigDecimal("4"), BigDecimal.ZERO,
+                                                   new BigDecimal("4"), OrderStatus.PENDING, LocalDateTime.now(), null);
+            fixture.persistence.saveOrderAmendment("O2", new BigDecimal("98.00"), new BigDecimal("2"), BigDecimal.ZERO,
+                                                   new BigDecimal("2"), OrderStatus.PENDING, LocalDateTime.now(), null);
+            fixture.release();
+            
+            assertTrue(await(() -> "PENDING".equals(fixture.status("O2"))
+                                   && "PARTIALLY_FILLED".equals(fixture.status("O1"))));
+            assertEquals(2, fixture.commits.get(), "both orders should be written in the batch after the held one");
+            assertEquals("101.00|5.00|2.00|3.00", fixture.terms("O1"));
+            assertEquals("98.00|2.00|0.00|2.00", fixture.terms("O2"));
+        }
+    }
+    
+    @Test
+    void flushesTheQueueInBatchesOfAtMostTheMaxBatchSize() throws InterruptedException {
+        try (Fixture fixture = new Fixture(Map.of("trading.persistence.max-batch-size", "2"))) {
+            fixture.holdNextCommit("O0");
+            for (int i = 1; i <= 5; i++) {
+                fixture.persistence.saveOrderState("O" + i, BigDecimal.ZERO, BigDecimal.ONE, OrderStatus.CANCELLED,
+                                                   null, LocalDateTime.now(), null);
+            }
+            fixture.release();
+            
+            assertTrue(await(() -> fixture.countWithStatus("CANCELLED") == 6));
+            assertEquals(1 + 3, fixture.commits.get());
+            assertEquals(0, fixture.persistence.getQueueDepth());
+        }
+    }
+    
+    @Test
+    void writesABatchAsOneQueueItemInOneTransaction() throws InterruptedException {
+        try (Fixture fixture = new Fixture(Map.of("trading.persistence.max-batch-size", "2"))) {
+            fixture.holdNextCommit("O0");
+            OrderPersistenceService.Batch batch = new OrderPersistenceService.Batch();
+            for (int i = 1; i <= 3; i++) {
+                batch.addTrade(trade("T" + i));
+            }
+            batch.addOrderState("O1", new BigDecimal("3"), BigDecimal.ZERO, OrderStatus.FILLED, null,
+                                LocalDateTime.now(), LocalDateTime.now());
+            batch.addOrderState("O2", new BigDecimal("3"), BigDecimal.ZERO, OrderStatus.FILLED, null,
+                                LocalDateTime.now(), LocalDateTime.now());
+            fixture.persistence.saveBatch(batch);
+            fixture.persistence.saveOrderState("O3", BigDecimal.ZERO, BigDecimal.ONE, OrderStatus.CANCELLED, null,
+                                               LocalDateTime.now(), null);
+            assertEquals(2, fixture.persistence.getQueueDepth());
+            fixture.release();
+            
+            assertTrue(await(() -> "CANCELLED".equals(fixture.status("O3"))));
+            assertEquals(3, fixture.countTrades());
+            assertEquals(2, fixture.countWithStatus("FILLED"));
+            assertEquals(2, fixture.commits.get(), "the batch and the state behind it should share one transaction");
+        }
+    }
+    
+    @Test
+    void drainsWhatIsQueuedOnStop() throws InterruptedException {
+        try (Fixture fixture = new Fixture(Map.of())) {
+            fixture.holdNextCommit("O0");
+            fixture.persistence.saveOrderState("O1", BigDecimal.ZERO, BigDecimal.ONE, OrderStatus.CANCELLED, null,
+                                               LocalDateTime.now(), null);
+            fixture.release();
+            fixture.persistence.stop();
+            
+            assertEquals("CANCELLED", fixture.status("O1"));
+        }
+    }
+    
+    @Test
+    void enqueueDurabilityAcknowledgesOnTheCallerBeforeTheWrite() throws InterruptedException {
+        try (Fixture fixture = new Fixture(Map.of("trading.persistence.durability", "enqueue"))) {
+            fixture.holdNextCommit("O1");
+            AtomicReference<Thread> acknowledgedOn = new AtomicReference<>();
+            fixture.persistence.afterPersisted(() -> acknowledgedOn.set(Thread.currentThread()));
+            
+            assertSame(Thread.currentThread(), acknowledgedOn.get());
+            assertEquals("PENDING", fixture.status("O1"), "the state change should still be uncommitted");
+            fixture.release();
+        }
+    }
+    
+    @Test
+    void commitDurabilityAcknowledgesOnceEverythingQueuedBeforeHasCommitted() throws InterruptedException {
+        try (Fixture fixture = new Fixture(Map.of("trading.persistence.durability", "commit"))) {
+            fixture.holdNextCommit("O1");
+            fixture.persistence.saveOrderState("O2", BigDecimal.ZERO, BigDecimal.ONE, OrderStatus.CANCELLED, null,
+                                               LocalDateTime.now(), null);
+            AtomicReference<String> statusOnAcknowledgement = new AtomicReference<>();
+            CountDownLatch acknowledged = new CountDownLatch(1);
+            fixture.persistence.afterPersisted(() -> {
+                statusOnAcknowledgement.set(fixture.status("O2"));
+                acknowledged.countDown();
+            });
+            
+            assertFalse(acknowledged.await(100, TimeUnit.MILLISECONDS), "acknowledged while the write was held");
+            fixture.release();
+            assertTrue(acknowledged.await(5, TimeUnit.SECONDS));
+            assertEquals("CANCELLED", statusOnAcknowledgement.get());
+        }
+    }
+    
+    private static Trade trade(String tradeId) {
+        Trade trade = new Trade(tradeId, "TEST", BigDecimal.ONE, new BigDecimal("100.00"), "O1", "O2", "ACC1", "ACC2");
+        trade.setExecutedAt(LocalDateTime.now());
+        return trade;
+    }
+    
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10L);
+        }
+        return true;
+    }
+    
+    /**
+     * The service on its own H2 database with orders O0..O9 pending, and a transaction
+     * manager that can hold the writer in a commit so later work queues up behind it.
+     */
+    private static final class Fixture implements AutoCloseable {
+        
+        private final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        private final AtomicInteger commits = new AtomicInteger();
+        private final JdbcTemplate jdbcTemplate;
+        private final OrderPersistenceService persistence;
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private final CountDownLatch held = new CountDownLatch(1);
+        
+        Fixture(Map<String, Object> properties) {
+            DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:persistence-test-" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("CREATE TABLE orders (order_id VARCHAR(255) PRIMARY KEY, price DECIMAL(19,2), "
+                                 + "quantity DECIMAL(19,2), filled_quantity DECIMAL(19,2), remaining_quantity DECIMAL(19,2), "
+                                 + "status VARCHAR(255), reason VARCHAR(255), updated_at TIMESTAMP, filled_at TIMESTAMP)");
+            jdbcTemplate.execute("CREATE TABLE trades (trade_id VARCHAR(255) PRIMARY KEY, symbol VARCHAR(255), "
+                                 + "quantity DECIMAL(19,2), price DECIMAL(19,2), total_value DECIMAL(19,2), "
+                                 + "buy_order_id VARCHAR(255), sell_order_id VARCHAR(255), buy_account_id VARCHAR(255), "
+                                 + "sell_account_id VARCHAR(255), executed_at TIMESTAMP, execution_venue VARCHAR(255))");
+            for (int i = 0; i < 10; i++) {
+                jdbcTemplate.update("INSERT INTO orders (order_id, price, quantity, filled_quantity, remaining_quantity, "
+                                    + "status) VALUES (?, 100.00, 1, 0, 1, 'PENDING')", "O" + i);
+            }
+            
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", new HashMap<>(properties)));
+            context.registerBean(JdbcTemplate.class, () -> jdbcTemplate);
+            context.registerBean(PlatformTransactionManager.class, () -> new DataSourceTransactionManager(dataSource) {
+                @Override
+                protected void doCommit(DefaultTransactionStatus status) {
+                    held.countDown();
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    super.doCommit(status);
+                    commits.incrementAndGet();
+                }
+            });
+            context.registerBean(OrderPersistenceService.class);
+            context.refresh();
+            persistence = context.getBean(OrderPersistenceService.class);
+        }
+        
+        // Queues a change of orderId and returns once the writer is blocked committing it
+        void holdNextCommit(String orderId) throws InterruptedException {
+            gate = new CountDownLatch(1);
+            persistence.saveOrderState(orderId, BigDecimal.ZERO, BigDecimal.ONE, OrderStatus.CANCELLED, null,
+                                       LocalDateTime.now(), null);
+            assertTrue(held.await(5, TimeUnit.SECONDS), "writer never reached the commit");
+        }
+        
+        void release() {
+            gate.countDown();
+        }
+        
+        String status(String orderId) {
+            return jdbcTemplate.queryForObject("SELECT status FROM orders WHERE order_id = ?", String.class, orderId);
+        }
+        
+        String terms(String orderId) {
+            return jdbcTemplate.queryForObject(
+                "SELECT price, quantity, filled_quantity, remaining_quantity FROM orders WHERE order_id = ?",
+                (rs, row) -> rs.getBigDecimal(1) + "|" + rs.getBigDecimal(2) + "|" + rs.getBigDecimal(3) + "|"
+                             + rs.getBigDecimal(4), orderId);
+        }
+        
+        int countTrades() {
+            return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM trades", Integer.class);
+        }
+        
+        int countWithStatus(String status) {
+            return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders WHERE status = ?", Integer.class, status);
+        }
+        
+        @Override
+        public void close() {
+            release();
+            context.close();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import { Button } from '@/components/ui/button'
 import { Input } from '@/components/ui/input'
 import { TrendingUp, TrendingDown } from 'lucide-react'
 import axios from 'axios'
+import { BookState, OrderStatusUpdate, openTradingStream } from '@/lib/stream'
 
 interface TradingProps {
   onLogout: () => void
@@ -48,22 +49,50 @@ export default function Trading({ onLogout }: TradingProps) {
   })
 
   useEffect(() => {
-    // Update market data every 2 seconds for faster real-time feel
-    const interval = setInterval(() => {
-      setMarketData(prev => {
-        const updated = { ...prev }
-        Object.keys(updated).forEach(symbol => {
-          const change = (Math.random() - 0.5) * 15 // Larger price movements
-          updated[symbol] = {
-            price: Math.max(updated[symbol].price + change, 1),
-            change: change
-          }
-        })
-        return updated
+    // Prices are pushed by the matching engine: last trade, or the book mid before any trade
+    const books: {[key: string]: BookState} = {}
+    const traded = new Set<string>()
+
+    const setPrice = (symbol: string, price: number | undefined) => {
+      if (price === undefined) return
+      setMarketData(prev => ({
+        ...prev,
+        [symbol]: { price, change: price - (prev[symbol]?.price ?? price) }
+      }))
+    }
+
+    const applyOrderUpdates = (updates: OrderStatusUpdate[]) => {
+      const user = JSON.parse(localStorage.getItem('currentUser') || '{}')
+      const userKey = `tradingData_${user.username}`
+      const existingData = JSON.parse(localStorage.getItem(userKey) || '{"orderHistory": []}')
+      updates.forEach(update => {
+        const order = existingData.orderHistory.find((o: any) => o.orderId === update.orderId)
+        if (order) {
+          order.status = update.status
+        }
       })
-    }, 2000) // Update every 2 seconds instead of 5
-    
-    return () => clearInterval(interval)
+      localStorage.setItem(userKey, JSON.stringify(existingData))
+      window.dispatchEvent(new CustomEvent('portfolioUpdate'))
+    }
+
+    return openTradingStream(availableStocks.map(stock => stock.symbol), {
+      onRefresh: refresh => {
+        books[refresh.symbol] = books[refresh.symbol] || new BookState()
+        books[refresh.symbol].applyRefresh(refresh)
+        if (!traded.has(refresh.symbol)) setPrice(refresh.symbol, books[refresh.symbol].mid())
+      },
+      onBook: updates => {
+        updates.forEach(update => books[update.symbol]?.applyUpdates([update]))
+        new Set(updates.map(update => update.symbol)).forEach(symbol => {
+          if (!traded.has(symbol)) setPrice(symbol, books[symbol]?.mid())
+        })
+      },
+      onTrades: trades => trades.forEach(trade => {
+        traded.add(trade.symbol)
+        setPrice(trade.symbol, trade.price)
+      }),
+      onOrders: applyOrderUpdates
+    }, localStorage.getItem('authToken'))
   }, [])
 
   const handleOrderSubmit = async (e: React.FormEvent) => {
@@ -93,14 +122,12 @@ export default function Trading({ onLogout }: TradingProps) {
       console.log('Order response:', response.data)
 
       if (response.data.orderId) {
-        // Simulate realistic order statuses
-        const orderStatus = Math.random() > 0.7 ? 'PENDING' : 'FILLED' // 30% chance of pending orders
-        
+        // Later status changes arrive on the order stream
         const newOrder = {
           ...orderData,
           orderId: response.data.orderId,
           timestamp: new Date().toISOString(),
-          status: orderStatus
+          status: response.data.status || 'PENDING'
         }
 
         // Save to user's trading data
@@ -227,7 +254,7 @@ export default function Trading({ onLogout }: TradingProps) {
         {/* Market Data */}
         <div className="p-6 rounded-lg">
           <h3 className="text-lg font-semibold text-slate-100 mb-4">Live Market Data</h3>
-          <div className="text-xs text-slate-400 mb-3">Updates every 2 seconds</div>
+          <div className="text-xs text-slate-400 mb-3">Streamed live from the matching engine</div>
           <div className="space-y-2">
             {availableStocks.map((stock) => {
               const data = marketData[stock.symbol]
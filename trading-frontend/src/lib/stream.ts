@@ -0,0 +1,119 @@
+// Server push from the matching engine over server-sent events
+
+export const API_BASE_URL = 'http://localhost:8080'
+
+export type Side = 'BUY' | 'SELL'
+
+export interface L2Refresh {
+  symbol: string
+  sequence: number
+  bids: Record<string, number>
+  asks: Record<string, number>
+}
+
+export interface L2Update {
+  symbol: string
+  sequence: number
+  action: 'ADD' | 'CHANGE' | 'DELETE'
+  side: Side
+  price: number
+  size: number
+}
+
+export interface TradeTick {
+  tradeId: string
+  symbol: string
+  price: number
+  quantity: number
+  aggressorSide: Side
+  executedAt: string
+}
+
+export interface OrderStatusUpdate {
+  orderId: string
+  accountId: string
+  symbol: string
+  side: Side
+  status: string
+  filledQuantity: number
+  remainingQuantity: number
+  reason?: string
+  timestamp: string
+}
+
+export interface StreamHandlers {
+  onRefresh?: (refresh: L2Refresh) => void
+  onBook?: (updates: L2Update[]) => void
+  onTrades?: (trades: TradeTick[]) => void
+  onOrders?: (updates: OrderStatusUpdate[]) => void
+}
+
+/**
+ * Opens one stream for the given symbols; the user's own order updates are included
+ * when a token is passed. Returns a function that closes the stream.
+ * The browser reconnects on its own and every (re)connect starts with a refresh.
+ */
+export function openTradingStream(symbols: string[], handlers: StreamHandlers, token?: string | null): () => void {
+  const params = new URLSearchParams({ symbols: symbols.join(',') })
+  if (token) {
+    params.set('token', token)
+  }
+  const source = new EventSource(`${API_BASE_URL}/api/marketdata/stream?${params}`)
+
+  const listen = <T,>(name: string, handler?: (data: T) => void) => {
+    if (handler) {
+      source.addEventListener(name, (event) => handler(JSON.parse((event as MessageEvent).data)))
+    }
+  }
+  listen('refresh', handlers.onRefresh)
+  listen('book', handlers.onBook)
+  listen('trades', handlers.onTrades)
+  listen('orders', handlers.onOrders)
+
+  return () => source.close()
+}
+
+/**
+ * Client copy of one symbol's aggregated book, kept current from a refresh and the
+ * level updates that follow it.
+ */
+export class BookState {
+  private sequence = 0
+  private bids = new Map<number, number>()
+  private asks = new Map<number, number>()
+
+  applyRefresh(refresh: L2Refresh) {
+    this.sequence = refresh.sequence
+    this.bids = new Map(Object.entries(refresh.bids).map(([price, size]) => [Number(price), size]))
+    this.asks = new Map(Object.entries(refresh.asks).map(([price, size]) => [Number(price), size]))
+  }
+
+  applyUpdates(updates: L2Update[]) {
+    updates.forEach(update => {
+      // Updates already reflected in the last refresh are skipped
+      if (update.sequence <= this.sequence) {
+        return
+      }
+      const levels = update.side === 'BUY' ? this.bids : this.asks
+      if (update.action === 'DELETE') {
+        levels.delete(update.price)
+      } else {
+        levels.set(update.price, update.size)
+      }
+    })
+  }
+
+  bestBid(): number | undefined {
+    return this.bids.size > 0 ? Math.max(...Array.from(this.bids.keys())) : undefined
+  }
+
+  bestAsk(): number | undefined {
+    return this.asks.size > 0 ? Math.min(...Array.from(this.asks.keys())) : undefined
+  }
+
+  mid(): number | undefined {
+    const bid = this.bestBid()
+    const ask = this.bestAsk()
+    return bid !== undefined && ask !== undefined ? (bid + ask) / 2 : undefined
+  }
+}